@@ -40,7 +40,21 @@ CREATE TABLE categories (
     category_id INT NOT NULL AUTO_INCREMENT,
     name VARCHAR(100) NOT NULL,
     description TEXT,
-    PRIMARY KEY (category_id)
+    parent_id INT NULL,
+    PRIMARY KEY (category_id),
+    FOREIGN KEY (parent_id) REFERENCES categories(category_id)
+);
+
+-- every (ancestor, descendant) pair of the category tree, including each category with itself at depth 0,
+-- so a whole subtree is one indexed lookup
+CREATE TABLE category_closure (
+    ancestor_id INT NOT NULL,
+    descendant_id INT NOT NULL,
+    depth INT NOT NULL,
+    PRIMARY KEY (ancestor_id, descendant_id),
+    INDEX idx_category_closure_descendant (descendant_id, ancestor_id),
+    FOREIGN KEY (ancestor_id) REFERENCES categories(category_id) ON DELETE CASCADE,
+    FOREIGN KEY (descendant_id) REFERENCES categories(category_id) ON DELETE CASCADE
 );
 
 CREATE TABLE products (
@@ -54,7 +68,10 @@ CREATE TABLE products (
     stock INT NOT NULL DEFAULT 0,
     featured BOOL NOT NULL DEFAULT 0,
     PRIMARY KEY (product_id),
-    FOREIGN KEY (category_id) REFERENCES categories(category_id)
+    FOREIGN KEY (category_id) REFERENCES categories(category_id),
+    INDEX idx_products_category_price (category_id, price),
+    INDEX idx_products_color_price (color, price),
+    FULLTEXT INDEX ft_products_name_description (name, description)
 );
 
 CREATE TABLE orders (
@@ -111,6 +128,9 @@ VALUES  ('Electronics', 'Explore the latest gadgets and electronic devices.'),
         ('Fashion', 'Discover trendy clothing and accessories for men and women.'),
         ('Home & Kitchen', 'Find everything you need to decorate and equip your home.');
 
+INSERT INTO category_closure (ancestor_id, descendant_id, depth)
+SELECT category_id, category_id, 0 FROM categories;
+
 /* INSERT Products */
 -- electronics
 INSERT INTO products (name, price, category_id, description, image_url, stock, featured, color) 
@@ -0,0 +1,152 @@
+package org.yearup.controllers;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.WebRequest;
+import org.yearup.data.catalog.CatalogEngine;
+import org.yearup.data.catalog.CatalogSnapshot;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Keeps the finished response bodies of hot catalog endpoints, serialized and compressed, per catalog version.
+ * A body is built once after each catalog change and then copied to every client that asks for it;
+ * the next write bumps the catalog version, and the stale body is rebuilt on its next request.
+ * While a write's listeners are still running, the new version is not settled: data they keep may be older than
+ * the version says, so a body built then is sent without a validator and not cached.
+ */
+@Component
+public class CatalogResponseCache
+{
+    static final int MAX_ENTRIES = 10_000;
+
+    private final CatalogEngine catalog;
+    private final ObjectMapper objectMapper;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    public CatalogResponseCache(CatalogEngine catalog, ObjectMapper objectMapper)
+    {
+        this.catalog = catalog;
+        this.objectMapper = objectMapper;
+    }
+
+    private static final class Entry
+    {
+        private final long version;
+        private final byte[] identity;
+        private final byte[] gzip;
+
+        private Entry(long version, byte[] identity, byte[] gzip)
+        {
+            this.version = version;
+            this.identity = identity;
+            this.gzip = gzip;
+        }
+    }
+
+    /**
+     * Answers a catalog GET from the cache.
+     * @param key Identifies the response, e.g. "categories" or "product:12".
+     * @param body Computes the response body on a cache miss. It may throw a ResponseStatusException, which is not cached.
+     * @return the response, or null when the client's copy is current and a 304 has been sent.
+     */
+    public ResponseEntity<byte[]> respond(String key, WebRequest webRequest, Supplier<Object> body)
+    {
+        CatalogSnapshot snapshot = catalog.snapshot();
+        boolean gzip = acceptsGzip(webRequest.getHeader(HttpHeaders.ACCEPT_ENCODING));
+        if (!catalog.isSettled(snapshot)) {
+            return ok(gzip, build(snapshot.getVersion(), body.get()));
+        }
+
+        // the two encodings are different bytes, so each needs its own strong ETag
+        String etag = gzip ? "\"" + snapshot.getVersion() + "-gzip\"" : snapshot.getETag();
+        if (webRequest.checkNotModified(etag, snapshot.getLastModified())) {
+            return null;
+        }
+
+        Entry entry = entries.get(key);
+        if (entry == null || entry.version != snapshot.getVersion()) {
+            entry = build(snapshot.getVersion(), body.get());
+            store(key, entry, snapshot.getVersion());
+        }
+        return ok(gzip, entry);
+    }
+
+    private static ResponseEntity<byte[]> ok(boolean gzip, Entry entry)
+    {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(gzip ? entry.gzip : entry.identity);
+    }
+
+    private Entry build(long version, Object body)
+    {
+        try {
+            byte[] identity = objectMapper.writeValueAsBytes(body);
+
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(identity.length / 4 + 64);
+            try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+                out.write(identity);
+            }
+            return new Entry(version, identity, compressed.toByteArray());
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Error serializing catalog response: " + e.getMessage(), e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void store(String key, Entry entry, long currentVersion)
+    {
+        if (entries.size() >= MAX_ENTRIES && !entries.containsKey(key)) {
+            // make room by dropping what earlier catalog versions left behind; if that is not enough, don't cache
+            entries.values().removeIf(existing -> existing.version != currentVersion);
+            if (entries.size() >= MAX_ENTRIES) {
+                return;
+            }
+        }
+        entries.put(key, entry);
+    }
+
+    // true unless the client refuses gzip with q=0
+    static boolean acceptsGzip(String acceptEncoding)
+    {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String part : acceptEncoding.split(",")) {
+            String[] tokens = part.trim().toLowerCase(Locale.ROOT).split(";");
+            String coding = tokens[0].trim();
+            if (!coding.equals("gzip") && !coding.equals("*")) {
+                continue;
+            }
+            for (int i = 1; i < tokens.length; i++) {
+                String parameter = tokens[i].trim();
+                if (parameter.startsWith("q=")) {
+                    try {
+                        return Double.parseDouble(parameter.substring(2)) > 0;
+                    } catch (NumberFormatException e) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+}
@@ -5,57 +5,191 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException;
 import org.yearup.data.CategoryDao;
+import org.yearup.data.CategoryDeleteProgress;
+import org.yearup.data.CategoryStats;
 import org.yearup.data.ProductDao;
+import org.yearup.data.ProductFilter;
+import org.yearup.data.ProductPage;
+import org.yearup.data.ProductPageRequest;
+import org.yearup.data.catalog.CatalogEngine;
 import org.yearup.models.Category;
-import org.yearup.models.Product;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/categories")
-@CrossOrigin
+@CrossOrigin(exposedHeaders = ProductsController.NEXT_CURSOR_HEADER)
 
 public class CategoriesController
 {
+    static final int EXPANDED_PRODUCTS_LIMIT = 100;
+
     private CategoryDao categoryDao;
     private ProductDao productDao;
+    private CatalogEngine catalog;
+    private CatalogResponseCache responseCache;
 
 
     @Autowired
-    public CategoriesController(CategoryDao categoryDao, ProductDao productDao){
+    public CategoriesController(CategoryDao categoryDao, ProductDao productDao, CatalogEngine catalog, CatalogResponseCache responseCache){
         this.categoryDao = categoryDao;
         this.productDao = productDao;
+        this.catalog = catalog;
+        this.responseCache = responseCache;
     }
 
+    // With expand=products every category carries its first products (EXPANDED_PRODUCTS_LIMIT unless limit says otherwise).
     @PreAuthorize("permitAll()")
     @GetMapping()
-    public List<Category> getAll()
+    public ResponseEntity<byte[]> getAll(@RequestParam(name = "expand", required = false) String expand,
+                                         @RequestParam(name = "sort", required = false) String sort,
+                                         @RequestParam(name = "limit", required = false) Integer limit,
+                                         @RequestParam(name = "fields", required = false) String fields,
+                                         @RequestParam(name = "view", required = false) String view,
+                                         WebRequest webRequest)
     {
-        System.out.println("📦 Fetching all categories...");
-        return categoryDao.getAllCategories();
+        boolean withProducts = expandsProducts(expand);
+        ProductFields projection = withProducts ? ProductsController.productFields(fields, view) : null;
+        ProductPageRequest page = withProducts ? expandedPage(sort, limit, null) : null;
+        String key = "categories" + (withProducts ? expandedKey(sort, limit, null, projection) : "");
+
+        return responseCache.respond(key, webRequest, () -> {
+            System.out.println("📦 Fetching all categories...");
+            Map<Integer, CategoryStats> stats = categoryDao.getStats();
+            List<Map<String, Object>> categories = new ArrayList<>();
+            for (Category category : categoryDao.getAllCategories()) {
+                Map<String, Object> body = categoryBody(category, stats.get(category.getCategoryId()));
+                if (withProducts) {
+                    addProducts(body, category, page, projection);
+                }
+                categories.add(body);
+            }
+            return categories;
+        });
     }
 
+    // With expand=products the category carries a page of its products, and nextCursor when there are more.
     @GetMapping("/{id}")
-    public Category getById(@PathVariable int id)
+    public ResponseEntity<byte[]> getById(@PathVariable int id,
+                                          @RequestParam(name = "expand", required = false) String expand,
+                                          @RequestParam(name = "sort", required = false) String sort,
+                                          @RequestParam(name = "limit", required = false) Integer limit,
+                                          @RequestParam(name = "after", required = false) String after,
+                                          @RequestParam(name = "fields", required = false) String fields,
+                                          @RequestParam(name = "view", required = false) String view,
+                                          WebRequest webRequest)
+    {
+        boolean withProducts = expandsProducts(expand);
+        ProductFields projection = withProducts ? ProductsController.productFields(fields, view) : null;
+        ProductPageRequest page = withProducts ? expandedPage(sort, limit, after) : null;
+        String key = "category:" + id + (withProducts ? expandedKey(sort, limit, after, projection) : "");
+
+        return responseCache.respond(key, webRequest, () -> {
+            System.out.println("DEBUG: CategoriesController.getById called for ID: " + id);
+            Category category = categoryDao.getById(id);
+
+            if (category == null) {
+                System.out.println("DEBUG: Category ID " + id + " not found by DAO. Throwing 404."); // ✅ NEW DEBUG LINE
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Category not found with ID: " + id);
+            }
+            System.out.println("DEBUG: Category ID " + id + " found. Returning 200 OK."); // ✅ NEW DEBUG LINE
+            Map<String, Object> body = categoryBody(category, categoryDao.getStats().get(id));
+            if (withProducts) {
+                addProducts(body, category, page, projection);
+            }
+            return body;
+        });
+    }
+
+    private static boolean expandsProducts(String expand)
+    {
+        if (expand == null || expand.isBlank()) {
+            return false;
+        }
+        if (!expand.trim().equalsIgnoreCase("products")) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "expand only supports products.");
+        }
+        return true;
+    }
+
+    // The same sort, limit and cursor rules as GET /categories/{categoryId}/products, with a default page size.
+    private static ProductPageRequest expandedPage(String sort, Integer limit, String after)
+    {
+        ProductFilter filter = new ProductFilter(null, null, null, null);
+        return ProductsController.pageRequest(sort, limit == null ? EXPANDED_PRODUCTS_LIMIT : limit, after, filter);
+    }
+
+    private static String expandedKey(String sort, Integer limit, String after, ProductFields projection)
     {
-        System.out.println("DEBUG: CategoriesController.getById called for ID: " + id);
-        Category category = categoryDao.getById(id);
+        return ";products;sort=" + sort + ";limit=" + limit + ";after=" + after
+                + ";fields=" + (projection == null ? "" : projection.key());
+    }
 
-        if (category == null) {
-            System.out.println("DEBUG: Category ID " + id + " not found by DAO. Throwing 404."); // ✅ NEW DEBUG LINE
-            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Category not found with ID: " + id);
+    // The category plus its product count, price range and in-stock count, which are maintained as products change.
+    private static Map<String, Object> categoryBody(Category category, CategoryStats stats)
+    {
+        if (stats == null) {
+            stats = CategoryStats.empty(category.getCategoryId());
         }
-        System.out.println("DEBUG: Category ID " + id + " found. Returning 200 OK."); // ✅ NEW DEBUG LINE
-        return category;
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("categoryId", category.getCategoryId());
+        body.put("name", category.getName());
+        body.put("description", category.getDescription());
+        body.put("parentId", category.getParentId());
+        body.put("productCount", stats.getProductCount());
+        body.put("minPrice", stats.getMinPrice());
+        body.put("maxPrice", stats.getMaxPrice());
+        body.put("inStockCount", stats.getInStockCount());
+        return body;
     }
 
+    // Both come from the in-memory catalog, so the category and its products are one lookup rather than two queries.
+    private void addProducts(Map<String, Object> body, Category category, ProductPageRequest page, ProductFields projection)
+    {
+        ProductFilter filter = new ProductFilter(category.getCategoryId(), null, null, null);
+        ProductPage products = productDao.search(filter, page);
+
+        body.put("products", projection == null ? products.getProducts() : projection.project(products.getProducts()));
+        if (products.getNextCursor() != null) {
+            body.put("nextCursor", products.getNextCursor());
+        }
+    }
 
     @GetMapping("/{categoryId}/products")
-    public List<Product> getProductsById(@PathVariable int categoryId)
+    public ResponseEntity<?> getProductsById(@PathVariable int categoryId,
+                                             @RequestParam(name = "sort", required = false) String sort,
+                                             @RequestParam(name = "limit", required = false) Integer limit,
+                                             @RequestParam(name = "after", required = false) String after,
+                                             @RequestParam(name = "fields", required = false) String fields,
+                                             @RequestParam(name = "view", required = false) String view,
+                                             @RequestParam(name = "descendants", defaultValue = "false") boolean descendants,
+                                             WebRequest webRequest)
     {
-        return productDao.listByCategoryId(categoryId);
+        ProductFields projection = ProductsController.productFields(fields, view);
+        if (ProductsController.notModified(webRequest, catalog)) {
+            return null;
+        }
+        // ProductFilter ignores ids <= 0, which would turn this into a search of every category.
+        if (categoryId <= 0) {
+            return ProductFields.apply(projection, ResponseEntity.ok(productDao.listByCategoryId(categoryId)));
+        }
+
+        // descendants=true adds the products of every subcategory, at any depth
+        ProductFilter filter = new ProductFilter(categoryId, null, null, null).withDescendants(descendants);
+        if (sort == null && limit == null && after == null) {
+            return ProductFields.apply(projection, ResponseEntity.ok(descendants
+                    ? productDao.search(filter)
+                    : productDao.listByCategoryId(categoryId)));
+        }
+
+        return ProductFields.apply(projection,
+                ProductsController.pageResponse(productDao.search(filter, ProductsController.pageRequest(sort, limit, after, filter))));
     }
 
     @PostMapping
@@ -63,17 +197,37 @@ public class CategoriesController
     @ResponseStatus(HttpStatus.CREATED)
     public ResponseEntity<Category> addCategory(@RequestBody Category category)
     {
-        Category createdCategory = categoryDao.create(category);
-        return new ResponseEntity<>(createdCategory, HttpStatus.CREATED);
+        try {
+            Category createdCategory = categoryDao.create(category);
+            return new ResponseEntity<>(createdCategory, HttpStatus.CREATED);
+        } catch (IllegalArgumentException ex) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, ex.getMessage());
+        }
     }
 
     @PutMapping("{id}")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     public void updateCategory(@PathVariable int id, @RequestBody Category category)
     {
-        categoryDao.update(id,category);
+        try {
+            categoryDao.update(id,category);
+        } catch (IllegalArgumentException ex) {
+            // an unknown parent, or a parent inside the category's own subtree
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, ex.getMessage());
+        }
     }
 
+    // A large category is deleted a chunk at a time; this shows how far a running (or the latest) deletion got.
+    @GetMapping("{id}/deletion")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public CategoryDeleteProgress getDeleteProgress(@PathVariable int id)
+    {
+        CategoryDeleteProgress progress = categoryDao.getDeleteProgress(id);
+        if (progress == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No deletion of category " + id + " since startup.");
+        }
+        return progress;
+    }
 
     @DeleteMapping("{id}")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
@@ -95,6 +249,9 @@ public class CategoriesController
         } catch (ResponseStatusException ex) {
             System.err.println("ERROR: Propagating ResponseStatusException during delete for ID " + id + ": " + ex.getMessage());
             throw ex;
+        } catch (IllegalStateException ex) {
+            // subcategories have to be deleted or moved first, and ordered products cannot be deleted
+            throw new ResponseStatusException(HttpStatus.CONFLICT, ex.getMessage(), ex);
         } catch (Exception ex) {
             System.err.println("ERROR: Unexpected error deleting category with ID " + id + ": " + ex.getMessage());
             ex.printStackTrace();
@@ -0,0 +1,180 @@
+package org.yearup.controllers;
+
+import org.yearup.models.Product;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The CSV layout of products used by the admin export and bulk import: one header line, then one line per product,
+ * with the columns in the order of the products table. Fields are quoted as RFC 4180 describes.
+ * Imports find the columns by their header name, so they may come in any order and product_id may be left out.
+ */
+final class ProductCsv
+{
+    static final String HEADER = "product_id,name,price,category_id,description,color,stock,featured,image_url";
+
+    private ProductCsv()
+    {
+    }
+
+    static String toLine(Product product)
+    {
+        BigDecimal price = product.getPrice();
+        return product.getProductId() + "," +
+                field(product.getName()) + "," +
+                (price == null ? "" : price.toPlainString()) + "," +
+                product.getCategoryId() + "," +
+                field(product.getDescription()) + "," +
+                field(product.getColor()) + "," +
+                product.getStock() + "," +
+                product.isFeatured() + "," +
+                field(product.getImageUrl());
+    }
+
+    /**
+     * Maps each column name of a header record to its position.
+     */
+    static Map<String, Integer> columns(List<String> header)
+    {
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            columns.put(header.get(i).trim().toLowerCase(Locale.ROOT), i);
+        }
+        for (String required : List.of("name", "price", "category_id")) {
+            if (!columns.containsKey(required)) {
+                throw new IllegalArgumentException("The CSV header has no " + required + " column.");
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * Builds a product from one record.
+     * @throws IllegalArgumentException if a number or boolean cannot be read.
+     */
+    static Product fromRecord(Map<String, Integer> columns, List<String> record)
+    {
+        Product product = new Product();
+        product.setName(value(columns, record, "name"));
+        product.setDescription(value(columns, record, "description"));
+        product.setColor(value(columns, record, "color"));
+        product.setImageUrl(value(columns, record, "image_url"));
+
+        String price = value(columns, record, "price");
+        String categoryId = value(columns, record, "category_id");
+        String stock = value(columns, record, "stock");
+        String featured = value(columns, record, "featured");
+        try {
+            product.setPrice(price == null ? null : new BigDecimal(price.trim()));
+            product.setCategoryId(categoryId == null ? 0 : Integer.parseInt(categoryId.trim()));
+            product.setStock(stock == null ? 0 : Integer.parseInt(stock.trim()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("price, category_id and stock must be numbers");
+        }
+        if (featured != null) {
+            switch (featured.trim().toLowerCase(Locale.ROOT)) {
+                case "true", "1" -> product.setFeatured(true);
+                case "false", "0" -> product.setFeatured(false);
+                default -> throw new IllegalArgumentException("featured must be true or false");
+            }
+        }
+        return product;
+    }
+
+    // null for a missing column or an empty field
+    private static String value(Map<String, Integer> columns, List<String> record, String column)
+    {
+        Integer position = columns.get(column);
+        if (position == null || position >= record.size() || record.get(position).isEmpty()) {
+            return null;
+        }
+        return record.get(position);
+    }
+
+    /**
+     * Reads CSV records one at a time. Quoted fields may contain commas, doubled quotes and line breaks.
+     */
+    static final class RecordReader
+    {
+        private final BufferedReader in;
+        private boolean endOfInput;
+
+        RecordReader(BufferedReader in)
+        {
+            this.in = in;
+        }
+
+        /**
+         * @return the fields of the next non-blank record, or null at the end of the input.
+         */
+        List<String> next() throws IOException
+        {
+            while (!endOfInput) {
+                List<String> record = readRecord();
+                if (record.size() > 1 || !record.get(0).isEmpty()) {
+                    return record;
+                }
+            }
+            return null;
+        }
+
+        private List<String> readRecord() throws IOException
+        {
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+
+            while (true) {
+                int c = in.read();
+                if (c < 0) {
+                    endOfInput = true;
+                    break;
+                }
+                if (quoted) {
+                    if (c == '"') {
+                        in.mark(1);
+                        int nextChar = in.read();
+                        if (nextChar == '"') {
+                            field.append('"');
+                        } else {
+                            quoted = false;
+                            if (nextChar >= 0) in.reset();
+                        }
+                    } else {
+                        field.append((char) c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else if (c == '\n') {
+                    break;
+                } else if (c != '\r') {
+                    field.append((char) c);
+                }
+            }
+            fields.add(field.toString());
+            return fields;
+        }
+    }
+
+    // quote only when needed, doubling any quote inside the value
+    private static String field(String value)
+    {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,132 @@
+package org.yearup.controllers;
+
+import org.springframework.http.ResponseEntity;
+import org.yearup.models.Product;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Which product properties a list response includes, from the fields= and view= parameters.
+ * fields=name,price names them one by one; view=list is every property but the long description, which list pages
+ * never show; view=detail (or neither parameter) is the whole product.
+ * Properties are always written in the order of the Product model, whatever order they were asked for in.
+ */
+final class ProductFields
+{
+    static final List<String> ALL = List.of("productId", "name", "price", "categoryId", "description", "color", "stock",
+            "featured", "imageUrl");
+    static final List<String> LIST_VIEW = List.of("productId", "name", "price", "categoryId", "color", "stock",
+            "featured", "imageUrl");
+
+    private final List<String> fields;
+
+    private ProductFields(List<String> fields)
+    {
+        this.fields = fields;
+    }
+
+    /**
+     * @return the projection, or null when the whole product is wanted.
+     * @throws IllegalArgumentException for an unknown field or view.
+     */
+    static ProductFields parse(String fields, String view)
+    {
+        if (fields != null && !fields.isBlank()) {
+            List<String> requested = new ArrayList<>();
+            for (String field : fields.split(",")) {
+                String name = canonical(field.trim());
+                if (name == null) {
+                    throw new IllegalArgumentException("Unknown product field '" + field.trim() + "'. Fields are " + String.join(", ", ALL) + ".");
+                }
+                requested.add(name);
+            }
+            List<String> ordered = new ArrayList<>(ALL);
+            ordered.retainAll(requested);
+            return ordered.equals(ALL) ? null : new ProductFields(List.copyOf(ordered));
+        }
+        if (view == null || view.isBlank() || view.trim().equalsIgnoreCase("detail")) {
+            return null;
+        }
+        if (view.trim().equalsIgnoreCase("list")) {
+            return new ProductFields(LIST_VIEW);
+        }
+        throw new IllegalArgumentException("view must be list or detail.");
+    }
+
+    /**
+     * Identifies the projection in cache keys.
+     */
+    String key()
+    {
+        return String.join(",", fields);
+    }
+
+    List<Map<String, Object>> project(List<Product> products)
+    {
+        List<Map<String, Object>> projected = new ArrayList<>(products.size());
+        for (Product product : products) {
+            projected.add(project(product));
+        }
+        return projected;
+    }
+
+    Map<String, Object> project(Product product)
+    {
+        Map<String, Object> projected = new LinkedHashMap<>(fields.size() * 2);
+        for (String field : fields) {
+            projected.put(field, value(product, field));
+        }
+        return projected;
+    }
+
+    /**
+     * Swaps the body of a product list response for its projection, keeping the status and headers
+     * (e.g. the next page cursor). Without a projection, the response is returned as it is.
+     */
+    static ResponseEntity<?> apply(ProductFields fields, ResponseEntity<List<Product>> response)
+    {
+        if (fields == null || response == null) {
+            return response;
+        }
+        return ResponseEntity.status(response.getStatusCode())
+                .headers(response.getHeaders())
+                .body(fields.project(response.getBody()));
+    }
+
+    private static String canonical(String field)
+    {
+        for (String name : ALL) {
+            if (name.equalsIgnoreCase(field)) {
+                return name;
+            }
+        }
+        return null;
+    }
+
+    private static Object value(Product product, String field)
+    {
+        switch (field) {
+            case "productId":
+                return product.getProductId();
+            case "name":
+                return product.getName();
+            case "price":
+                return product.getPrice();
+            case "categoryId":
+                return product.getCategoryId();
+            case "description":
+                return product.getDescription();
+            case "color":
+                return product.getColor();
+            case "stock":
+                return product.getStock();
+            case "featured":
+                return product.isFeatured();
+            default:
+                return product.getImageUrl();
+        }
+    }
+}
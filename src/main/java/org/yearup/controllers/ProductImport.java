@@ -0,0 +1,174 @@
+package org.yearup.controllers;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.yearup.data.ProductDao;
+import org.yearup.models.Product;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * One run of POST /products/bulk.
+ * Rows are validated as they are read and collected into chunks; each full chunk is inserted in its own
+ * transaction, so memory use is bounded by the chunk size and a failing chunk does not undo the ones before it.
+ * The outcome is reported as NDJSON events: an "error" for every rejected row, a "progress" after every chunk
+ * and a "summary" at the end.
+ */
+final class ProductImport
+{
+    private final ProductDao productDao;
+    private final ObjectMapper objectMapper;
+    private final Set<Integer> categoryIds;
+    private final int chunkSize;
+    private final OutputStream events;
+
+    private final List<Product> chunk = new ArrayList<>();
+    private int chunkFirstRow;
+    private int rowsRead;
+    private int inserted;
+    private int failed;
+
+    ProductImport(ProductDao productDao, ObjectMapper objectMapper, Set<Integer> categoryIds, int chunkSize, OutputStream events)
+    {
+        this.productDao = productDao;
+        this.objectMapper = objectMapper;
+        this.categoryIds = categoryIds;
+        this.chunkSize = chunkSize;
+        this.events = events;
+    }
+
+    void readNdjson(BufferedReader reader) throws IOException
+    {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            int row = ++rowsRead;
+            try {
+                accept(row, objectMapper.readValue(line, Product.class));
+            } catch (JsonProcessingException e) {
+                rejected(row, "Not a valid product: " + e.getOriginalMessage());
+            }
+        }
+        finish();
+    }
+
+    void readCsv(BufferedReader reader) throws IOException
+    {
+        ProductCsv.RecordReader records = new ProductCsv.RecordReader(reader);
+        List<String> header = records.next();
+        if (header == null) {
+            finish();
+            return;
+        }
+
+        Map<String, Integer> columns;
+        try {
+            columns = ProductCsv.columns(header);
+        } catch (IllegalArgumentException e) {
+            event("error", "row", 0, "message", e.getMessage());
+            finish();
+            return;
+        }
+
+        List<String> record;
+        while ((record = records.next()) != null) {
+            int row = ++rowsRead;
+            try {
+                accept(row, ProductCsv.fromRecord(columns, record));
+            } catch (IllegalArgumentException e) {
+                rejected(row, e.getMessage());
+            }
+        }
+        finish();
+    }
+
+    private void accept(int row, Product product) throws IOException
+    {
+        String problem = validate(product);
+        if (problem != null) {
+            rejected(row, problem);
+            return;
+        }
+
+        if (chunk.isEmpty()) {
+            chunkFirstRow = row;
+        }
+        chunk.add(product);
+        if (chunk.size() >= chunkSize) {
+            flushChunk();
+        }
+    }
+
+    private String validate(Product product)
+    {
+        if (product.getName() == null || product.getName().isBlank()) {
+            return "name is required";
+        }
+        if (product.getPrice() == null || product.getPrice().signum() < 0) {
+            return "price is required and must not be negative";
+        }
+        if (!categoryIds.contains(product.getCategoryId())) {
+            return "category " + product.getCategoryId() + " does not exist";
+        }
+        if (product.getStock() < 0) {
+            return "stock must not be negative";
+        }
+        return null;
+    }
+
+    private void flushChunk() throws IOException
+    {
+        if (chunk.isEmpty()) {
+            return;
+        }
+
+        int lastRow = rowsRead;
+        try {
+            productDao.createAll(chunk);
+            inserted += chunk.size();
+        } catch (RuntimeException e) {
+            // the transaction was rolled back, so none of the chunk's rows were stored
+            failed += chunk.size();
+            event("chunkFailed", "firstRow", chunkFirstRow, "lastRow", lastRow, "rows", chunk.size(), "message", e.getMessage());
+        }
+        chunk.clear();
+
+        event("progress", "rowsRead", rowsRead, "inserted", inserted, "failed", failed);
+        events.flush();
+    }
+
+    private void finish() throws IOException
+    {
+        flushChunk();
+        event("summary", "rowsRead", rowsRead, "inserted", inserted, "failed", failed);
+        events.flush();
+        System.out.println("DEBUG: Bulk import read " + rowsRead + " rows, inserted " + inserted + ", failed " + failed + ".");
+    }
+
+    private void rejected(int row, String message) throws IOException
+    {
+        failed++;
+        event("error", "row", row, "message", message);
+    }
+
+    // writes {"type": type, key: value, ...} followed by a newline
+    private void event(String type, Object... keysAndValues) throws IOException
+    {
+        Map<String, Object> event = new LinkedHashMap<>();
+        event.put("type", type);
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            event.put((String) keysAndValues[i], keysAndValues[i + 1]);
+        }
+        events.write(objectMapper.writeValueAsBytes(event));
+        events.write('\n');
+    }
+}
@@ -1,50 +1,443 @@
 package org.yearup.controllers;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus; // Import HttpStatus
 import org.springframework.http.ResponseEntity; // Import ResponseEntity
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.yearup.data.CategoryDao;
 import org.yearup.data.ProductDao;
+import org.yearup.data.ProductFacets;
+import org.yearup.data.ProductFilter;
+import org.yearup.data.ProductPage;
+import org.yearup.data.ProductPageRequest;
+import org.yearup.data.PriceAdjustment;
+import org.yearup.data.catalog.CatalogEngine;
+import org.yearup.data.catalog.CatalogSnapshot;
+import org.yearup.data.catalog.ProductSearchCache;
+import org.yearup.data.catalog.ProductSuggester;
+import org.yearup.data.catalog.SpellingSuggester;
+import org.yearup.models.Category;
 import org.yearup.models.Product;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException; // Import for 404 handling
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/products") // This controller handles requests starting with /products
-@CrossOrigin
+@CrossOrigin(exposedHeaders = {ProductsController.NEXT_CURSOR_HEADER, ProductsController.DID_YOU_MEAN_HEADER,
+        ProductsController.MISSING_IDS_HEADER})
 public class ProductsController {
 
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    static final String DID_YOU_MEAN_HEADER = "X-Did-You-Mean";
+    static final int MAX_CORRECTIONS = 3;
+    static final String MISSING_IDS_HEADER = "X-Missing-Ids";
+    static final int MAX_IDS = 1000;
+    static final int MAX_PRICE_BUCKETS = 50;
+    static final int MAX_IMPORT_CHUNK_SIZE = 10000;
+
     private ProductDao productDao;
+    private CategoryDao categoryDao;
+    private CatalogEngine catalog;
+    private CatalogResponseCache responseCache;
+    private ProductSearchCache searchCache;
+    private ProductSuggester suggester;
+    private SpellingSuggester spelling;
+    private ObjectMapper objectMapper;
+    private List<BigDecimal> defaultPriceBuckets;
+    private int correctionThreshold;
 
     @Autowired
-    public ProductsController(ProductDao productDao) {
+    public ProductsController(ProductDao productDao, CategoryDao categoryDao, CatalogEngine catalog,
+                              CatalogResponseCache responseCache, ProductSearchCache searchCache, ProductSuggester suggester,
+                              SpellingSuggester spelling, ObjectMapper objectMapper,
+                              @Value("${catalog.facets.price-buckets:0,25,50,100,250,500}") BigDecimal[] defaultPriceBuckets,
+                              @Value("${catalog.spelling.min-results:3}") int correctionThreshold) {
         this.productDao = productDao;
+        this.categoryDao = categoryDao;
+        this.catalog = catalog;
+        this.responseCache = responseCache;
+        this.searchCache = searchCache;
+        this.suggester = suggester;
+        this.spelling = spelling;
+        this.objectMapper = objectMapper;
+        this.defaultPriceBuckets = priceBuckets(Arrays.asList(defaultPriceBuckets));
+        this.correctionThreshold = correctionThreshold;
     }
 
     @GetMapping
     @PreAuthorize("permitAll()")
-    public List<Product> searchProducts(
+    public ResponseEntity<?> searchProducts(
             @RequestParam(name = "cat", required = false) Integer categoryId,
             @RequestParam(name = "minPrice", required = false) BigDecimal minPrice,
             @RequestParam(name = "maxPrice", required = false) BigDecimal maxPrice,
-            @RequestParam(name = "color", required = false) String color
+            @RequestParam(name = "color", required = false) String color,
+            @RequestParam(name = "inStock", required = false) Boolean inStock,
+            @RequestParam(name = "featured", required = false) Boolean featured,
+            @RequestParam(name = "q", required = false) String query,
+            @RequestParam(name = "sort", required = false) String sort,
+            @RequestParam(name = "limit", required = false) Integer limit,
+            @RequestParam(name = "after", required = false) String after,
+            @RequestParam(name = "fields", required = false) String fields,
+            @RequestParam(name = "view", required = false) String view,
+            @RequestParam(name = "descendants", defaultValue = "false") boolean descendants,
+            WebRequest webRequest
     ) {
         System.out.println("DEBUG: ProductController.searchProducts called with: cat=" + categoryId +
-                ", minPrice=" + minPrice + ", maxPrice=" + maxPrice + ", color=" + color);
-        return productDao.search(categoryId, minPrice, maxPrice, color);
+                ", minPrice=" + minPrice + ", maxPrice=" + maxPrice + ", color=" + color +
+                ", inStock=" + inStock + ", featured=" + featured + ", q=" + query +
+                ", sort=" + sort + ", limit=" + limit + ", after=" + after + ", descendants=" + descendants);
+        ProductFields projection = productFields(fields, view);
+        if (notModified(webRequest, catalog)) {
+            return null;
+        }
+        ProductFilter filter = new ProductFilter(categoryId, minPrice, maxPrice, color, inStock, featured).withQuery(query)
+                .withDescendants(descendants);
+
+        // Without paging parameters the endpoint keeps returning every match, as it always has
+        // (best match first when there are keywords).
+        if (sort == null && limit == null && after == null) {
+            List<Product> products = productDao.search(filter);
+            return ProductFields.apply(projection, withCorrections(ResponseEntity.ok(products), filter, products.size()));
+        }
+        if (sort == null && filter.getQuery() != null) {
+            sort = "relevance";
+        }
+        ProductPage page = productDao.search(filter, pageRequest(sort, limit, after, filter));
+        // only a first page that is also the last one can be a search that found little
+        int found = after == null && page.getNextCursor() == null ? page.getProducts().size() : Integer.MAX_VALUE;
+        return ProductFields.apply(projection, withCorrections(pageResponse(page), filter, found));
     }
 
-    @GetMapping("/{id}")
+    // A search that finds little gets spelling corrections for its keywords and color, e.g. "q=wireless headphones",
+    // so the client can offer them instead of guessing variants itself.
+    private ResponseEntity<List<Product>> withCorrections(ResponseEntity<List<Product>> response, ProductFilter filter, int found)
+    {
+        if (found >= correctionThreshold) {
+            return response;
+        }
+        List<String> corrections = new ArrayList<>();
+        if (filter.getQuery() != null) {
+            spelling.correct(filter.getQuery(), MAX_CORRECTIONS).forEach(correction -> corrections.add("q=" + correction));
+        }
+        if (filter.getColor() != null) {
+            spelling.correct(filter.getColor(), MAX_CORRECTIONS).forEach(correction -> corrections.add("color=" + correction));
+        }
+        if (corrections.isEmpty()) {
+            return response;
+        }
+        return ResponseEntity.status(response.getStatusCode())
+                .headers(response.getHeaders())
+                .header(DID_YOU_MEAN_HEADER, String.join(", ", corrections.subList(0, Math.min(corrections.size(), MAX_CORRECTIONS))))
+                .body(response.getBody());
+    }
+
+    // Several products in one request instead of one GET /products/{id} each, e.g. GET /products?ids=3,1,2.
+    @GetMapping(params = "ids")
     @PreAuthorize("permitAll()")
-    public Product getProductById(@PathVariable int id) {
-        Product product = productDao.getById(id);
-        if (product == null) {
-            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Product not found with ID: " + id);
+    public ResponseEntity<?> getProductsByIds(@RequestParam(name = "ids") List<Integer> ids,
+                                              @RequestParam(name = "fields", required = false) String fields,
+                                              @RequestParam(name = "view", required = false) String view,
+                                              WebRequest webRequest) {
+        ProductFields projection = productFields(fields, view);
+        if (notModified(webRequest, catalog)) {
+            return null;
+        }
+        return ProductFields.apply(projection, productsByIds(ids));
+    }
+
+    // The same lookup for lists too long for a URL: the body is a JSON array of ids.
+    @PostMapping("/lookup")
+    @PreAuthorize("permitAll()")
+    public ResponseEntity<?> lookupProducts(@RequestBody List<Integer> ids,
+                                            @RequestParam(name = "fields", required = false) String fields,
+                                            @RequestParam(name = "view", required = false) String view) {
+        return ProductFields.apply(productFields(fields, view), productsByIds(ids));
+    }
+
+    // The products come back in the requested order; ids without a product are listed in a header.
+    private ResponseEntity<List<Product>> productsByIds(List<Integer> ids)
+    {
+        if (ids == null || ids.isEmpty() || ids.size() > MAX_IDS || ids.contains(null)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "ids must list between 1 and " + MAX_IDS + " product ids.");
+        }
+        List<Product> products = productDao.getByIds(ids);
+
+        Set<Integer> found = products.stream().map(Product::getProductId).collect(Collectors.toSet());
+        String missing = ids.stream()
+                .filter(id -> !found.contains(id))
+                .distinct()
+                .map(String::valueOf)
+                .collect(Collectors.joining(","));
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (!missing.isEmpty()) {
+            response.header(MISSING_IDS_HEADER, missing);
         }
-        return product;
+        return response.body(products);
+    }
+
+    // Takes the same filters as searchProducts; priceBuckets lists the lower bound of every bucket, e.g. 0,50,100.
+    @GetMapping("/facets")
+    @PreAuthorize("permitAll()")
+    public ProductFacets getFacets(
+            @RequestParam(name = "cat", required = false) Integer categoryId,
+            @RequestParam(name = "minPrice", required = false) BigDecimal minPrice,
+            @RequestParam(name = "maxPrice", required = false) BigDecimal maxPrice,
+            @RequestParam(name = "color", required = false) String color,
+            @RequestParam(name = "inStock", required = false) Boolean inStock,
+            @RequestParam(name = "featured", required = false) Boolean featured,
+            @RequestParam(name = "q", required = false) String query,
+            @RequestParam(name = "priceBuckets", required = false) List<BigDecimal> priceBuckets,
+            @RequestParam(name = "descendants", defaultValue = "false") boolean descendants,
+            WebRequest webRequest
+    ) {
+        if (notModified(webRequest, catalog)) {
+            return null;
+        }
+        ProductFilter filter = new ProductFilter(categoryId, minPrice, maxPrice, color, inStock, featured).withQuery(query)
+                .withDescendants(descendants);
+        List<BigDecimal> edges = priceBuckets == null ? defaultPriceBuckets : priceBuckets(priceBuckets);
+        return productDao.facets(filter, edges);
+    }
+
+    private static List<BigDecimal> priceBuckets(List<BigDecimal> edges)
+    {
+        if (edges.isEmpty() || edges.size() > MAX_PRICE_BUCKETS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "priceBuckets must list between 1 and " + MAX_PRICE_BUCKETS + " prices");
+        }
+        for (int i = 0; i < edges.size(); i++) {
+            if (edges.get(i) == null || edges.get(i).signum() < 0 || (i > 0 && edges.get(i).compareTo(edges.get(i - 1)) <= 0)) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "priceBuckets must be non-negative and in ascending order");
+            }
+        }
+        return List.copyOf(edges);
+    }
+
+    // Used by CategoriesController as well. Every catalog read is derived from one snapshot, so the snapshot
+    // version is the validator: when the client already holds it, answer 304 before doing any work.
+    static boolean notModified(WebRequest webRequest, CatalogEngine catalog)
+    {
+        CatalogSnapshot snapshot = catalog.snapshot();
+        return webRequest.checkNotModified(snapshot.getETag(), snapshot.getLastModified());
+    }
+
+    // Used by CategoriesController as well: the fields= and view= parameters of the product list endpoints.
+    static ProductFields productFields(String fields, String view)
+    {
+        try {
+            return ProductFields.parse(fields, view);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    // Used by CategoriesController as well: an invalid sort, limit or cursor is the client's mistake.
+    static ProductPageRequest pageRequest(String sort, Integer limit, String after, ProductFilter filter)
+    {
+        try {
+            ProductPageRequest request = ProductPageRequest.parse(sort, limit, after);
+            if (request.getSort() == ProductPageRequest.Sort.RELEVANCE && filter.getQuery() == null) {
+                throw new IllegalArgumentException("sort=relevance needs a search query (q)");
+            }
+            return request;
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    // The body stays a plain list; the token for the next page travels in a header.
+    static ResponseEntity<List<Product>> pageResponse(ProductPage page)
+    {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return response.body(page.getProducts());
+    }
+
+    @GetMapping("/search-cache")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public ProductSearchCache.Stats getSearchCacheStats() {
+        return searchCache.stats();
+    }
+
+    // Typeahead: product and category names completing the prefix, most popular first.
+    @GetMapping("/suggest")
+    @PreAuthorize("permitAll()")
+    public List<ProductSuggester.Suggestion> suggest(@RequestParam(name = "prefix") String prefix,
+                                                     @RequestParam(name = "limit", defaultValue = "" + ProductSuggester.MAX_SUGGESTIONS) int limit,
+                                                     WebRequest webRequest) {
+        if (limit < 1 || limit > ProductSuggester.MAX_SUGGESTIONS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "limit must be between 1 and " + ProductSuggester.MAX_SUGGESTIONS + ".");
+        }
+        // the suggestions only change with the catalog, so its version can answer conditional requests
+        if (notModified(webRequest, catalog)) {
+            return null;
+        }
+        return suggester.suggest(prefix, limit);
+    }
+
+    // Writes each row to the response as it is read, so the export never holds more than one product in memory.
+    @GetMapping("/export")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public void exportProducts(@RequestParam(name = "format", defaultValue = "ndjson") String format,
+                               HttpServletResponse response) throws IOException {
+        boolean csv = switch (format.toLowerCase()) {
+            case "ndjson" -> false;
+            case "csv" -> true;
+            default -> throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "format must be ndjson or csv");
+        };
+
+        response.setContentType(csv ? "text/csv" : "application/x-ndjson");
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader("Content-Disposition", "attachment; filename=\"products." + (csv ? "csv" : "ndjson") + "\"");
+
+        OutputStream out = new BufferedOutputStream(response.getOutputStream());
+        if (csv) {
+            out.write((ProductCsv.HEADER + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+
+        try {
+            productDao.streamAll(product -> {
+                try {
+                    if (csv) {
+                        out.write((ProductCsv.toLine(product) + "\n").getBytes(StandardCharsets.UTF_8));
+                    } else {
+                        out.write(objectMapper.writeValueAsBytes(product));
+                        out.write('\n');
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            // most likely the client went away; stop reading from the database
+            System.err.println("ERROR: Product export aborted: " + e.getCause().getMessage());
+            return;
+        }
+        out.flush();
+    }
+
+    // Reads an NDJSON or CSV body as it arrives and answers with NDJSON progress and error events.
+    // The format comes from the format parameter, or else from the Content-Type (text/csv means CSV).
+    @PostMapping("/bulk")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public void bulkImport(@RequestParam(name = "format", required = false) String format,
+                           @RequestParam(name = "chunkSize", defaultValue = "1000") int chunkSize,
+                           HttpServletRequest request,
+                           HttpServletResponse response) throws IOException {
+        if (format == null) {
+            String contentType = request.getContentType();
+            format = contentType != null && contentType.toLowerCase().startsWith("text/csv") ? "csv" : "ndjson";
+        }
+        boolean csv = switch (format.toLowerCase()) {
+            case "ndjson" -> false;
+            case "csv" -> true;
+            default -> throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "format must be ndjson or csv");
+        };
+        if (chunkSize < 1 || chunkSize > MAX_IMPORT_CHUNK_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "chunkSize must be between 1 and " + MAX_IMPORT_CHUNK_SIZE);
+        }
+
+        Set<Integer> categoryIds = categoryDao.getAllCategories().stream()
+                .map(Category::getCategoryId)
+                .collect(Collectors.toSet());
+
+        response.setContentType("application/x-ndjson");
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        OutputStream out = new BufferedOutputStream(response.getOutputStream());
+        BufferedReader body = new BufferedReader(new InputStreamReader(request.getInputStream(), StandardCharsets.UTF_8));
+
+        ProductImport productImport = new ProductImport(productDao, objectMapper, categoryIds, chunkSize, out);
+        if (csv) {
+            productImport.readCsv(body);
+        } else {
+            productImport.readNdjson(body);
+        }
+    }
+
+    // Seasonal repricing in one request: every product of the category (and/or color) gets the same percentage
+    // or absolute change, applied in chunks of chunkSize products, with one catalog update at the end.
+    @PostMapping("/prices")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public Map<String, Object> adjustPrices(@RequestParam(name = "cat", required = false) Integer categoryId,
+                                            @RequestParam(name = "color", required = false) String color,
+                                            @RequestParam(name = "descendants", defaultValue = "false") boolean descendants,
+                                            @RequestParam(name = "percent", required = false) BigDecimal percent,
+                                            @RequestParam(name = "amount", required = false) BigDecimal amount,
+                                            @RequestParam(name = "chunkSize", defaultValue = "1000") int chunkSize) {
+        if (chunkSize < 1 || chunkSize > MAX_IMPORT_CHUNK_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "chunkSize must be between 1 and " + MAX_IMPORT_CHUNK_SIZE);
+        }
+        if (categoryId == null && color == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Give cat, color or both; repricing the whole catalog is not allowed.");
+        }
+
+        try {
+            PriceAdjustment adjustment = PriceAdjustment.of(
+                    new ProductFilter(categoryId, null, null, color).withDescendants(descendants), percent, amount);
+            List<Integer> adjusted = productDao.adjustPrices(adjustment, chunkSize);
+
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("updated", adjusted.size());
+            result.put("chunks", (adjusted.size() + chunkSize - 1) / chunkSize);
+            return result;
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    // The homepage list: precomputed with every catalog change, and served as ready-made JSON.
+    @GetMapping("/featured")
+    @PreAuthorize("permitAll()")
+    public ResponseEntity<byte[]> getFeaturedProducts(@RequestParam(name = "cat", required = false) Integer categoryId,
+                                                      @RequestParam(name = "fields", required = false) String fields,
+                                                      @RequestParam(name = "view", required = false) String view,
+                                                      WebRequest webRequest) {
+        ProductFields projection = productFields(fields, view);
+        String key = (categoryId == null ? "featured" : "featured:" + categoryId)
+                + (projection == null ? "" : ";fields=" + projection.key());
+        return responseCache.respond(key, webRequest, () -> {
+            if (categoryId != null && categoryDao.getById(categoryId) == null) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Category not found with ID: " + categoryId);
+            }
+            List<Product> featured = productDao.listFeatured(categoryId);
+            return projection == null ? featured : projection.project(featured);
+        });
+    }
+
+    @GetMapping("/{id}")
+    @PreAuthorize("permitAll()")
+    public ResponseEntity<byte[]> getProductById(@PathVariable int id, WebRequest webRequest) {
+        return responseCache.respond("product:" + id, webRequest, () -> {
+            Product product = productDao.getById(id);
+            if (product == null) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Product not found with ID: " + id);
+            }
+            return product;
+        });
     }
 
     @PostMapping // For creating new products
@@ -8,12 +8,17 @@ import org.springframework.web.server.ResponseStatusException;
 import org.yearup.data.ProductDao;
 import org.yearup.data.ShoppingCartDao;
 import org.yearup.data.UserDao;
+import org.yearup.models.CartOperation;
 import org.yearup.models.Product; // Import Product for validation
 import org.yearup.models.ShoppingCart;
 import org.yearup.models.User;
 
 import java.security.Principal; // For getting logged-in user info
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map; // For PUT request body
+import java.util.Set;
 
 // Convert this class to a REST controller
 @RestController
@@ -23,6 +28,8 @@ import java.util.Map; // For PUT request body
 @PreAuthorize("isAuthenticated()") // Requires the user to be authenticated
 public class ShoppingCartController
 {
+    static final int MAX_CART_OPERATIONS = 100;
+
     private final ShoppingCartDao shoppingCartDao;
     private final UserDao userDao;
     private final ProductDao productDao; // Added to verify product existence
@@ -150,6 +157,58 @@ public class ShoppingCartController
         }
     }
 
+    /**
+     * Applies several cart changes at once, e.g. adding a whole outfit or saving a quantities screen.
+     * The operations are applied in order and together: if one is invalid, none is applied.
+     * URL: PATCH http://localhost:8080/cart
+     * Body: [{"op": "add", "productId": 12, "quantity": 2}, {"op": "set", "productId": 7, "quantity": 1}, {"op": "remove", "productId": 3}]
+     *
+     * @param principal The security principal.
+     * @param operations The changes; add defaults to a quantity of 1, and set to 0 removes the product.
+     * @return The ShoppingCart after the changes.
+     */
+    @PatchMapping
+    public ShoppingCart applyOperations(Principal principal, @RequestBody List<CartOperation> operations) {
+        try {
+            if (operations == null || operations.isEmpty() || operations.size() > MAX_CART_OPERATIONS) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Send between 1 and " + MAX_CART_OPERATIONS + " operations.");
+            }
+            Set<Integer> productIds = new HashSet<>();
+            for (CartOperation operation : operations) {
+                if (operation.getOp() == null) {
+                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Every operation needs an op: add, set or remove.");
+                }
+                if (operation.getOp() == CartOperation.Type.ADD && operation.quantityOrDefault() < 1) {
+                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "add needs a quantity of at least 1 (product " + operation.getProductId() + ").");
+                }
+                if (operation.getOp() == CartOperation.Type.SET && (operation.getQuantity() == null || operation.getQuantity() < 0)) {
+                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "set needs a quantity of 0 or more (product " + operation.getProductId() + ").");
+                }
+                productIds.add(operation.getProductId());
+            }
+
+            // one lookup for every product instead of one per operation
+            Set<Integer> found = new HashSet<>();
+            for (Product product : productDao.getByIds(new ArrayList<>(productIds))) {
+                found.add(product.getProductId());
+            }
+            productIds.removeAll(found);
+            if (!productIds.isEmpty()) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Products not found: " + productIds);
+            }
+
+            int userId = userDao.getByUserName(principal.getName()).getId();
+            System.out.println("DEBUG: Applying " + operations.size() + " cart operations for user ID: " + userId);
+            return shoppingCartDao.applyOperations(userId, operations);
+        } catch (ResponseStatusException ex) {
+            throw ex; // Re-throw specific HTTP errors
+        } catch (Exception e) {
+            System.err.println("ERROR: Error applying cart operations: " + e.getMessage());
+            e.printStackTrace();
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Error updating shopping cart.", e);
+        }
+    }
+
     /**
      * Clears all items from the current user's shopping cart.
      * URL: DELETE http://localhost:8080/cart
@@ -3,12 +3,29 @@ package org.yearup.data;
 import org.yearup.models.Category;
 
 import java.util.List;
+import java.util.Map;
 
 public interface CategoryDao
 {
     List<Category> getAllCategories();
     Category getById(int categoryId);
+
+    /**
+     * Returns the product count, price range and in-stock count of every category that has products, by category id.
+     * Categories without products are left out.
+     */
+    Map<Integer, CategoryStats> getStats();
     Category create(Category category);
     void update(int categoryId, Category category);
+
+    /**
+     * Deletes the category with its products and the cart rows that hold them, in chunks.
+     * @throws IllegalStateException if the category has subcategories or products that were ordered; nothing is deleted.
+     */
     void delete(int categoryId);
+
+    /**
+     * @return how far the latest deletion of the category got, or null if it was never deleted since startup.
+     */
+    CategoryDeleteProgress getDeleteProgress(int categoryId);
 }
@@ -0,0 +1,103 @@
+package org.yearup.data;
+
+/**
+ * How far the deletion of a category has got: the category's products and the cart rows that hold them are
+ * removed a chunk at a time, then the category itself.
+ */
+public final class CategoryDeleteProgress
+{
+    public enum Status
+    {
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+
+    private final int categoryId;
+    private final Status status;
+    private final int totalProducts;
+    private final int deletedProducts;
+    private final int deletedCartItems;
+    private final String error;
+
+    private CategoryDeleteProgress(int categoryId, Status status, int totalProducts, int deletedProducts,
+                                   int deletedCartItems, String error)
+    {
+        this.categoryId = categoryId;
+        this.status = status;
+        this.totalProducts = totalProducts;
+        this.deletedProducts = deletedProducts;
+        this.deletedCartItems = deletedCartItems;
+        this.error = error;
+    }
+
+    public static CategoryDeleteProgress started(int categoryId, int totalProducts)
+    {
+        return new CategoryDeleteProgress(categoryId, Status.RUNNING, totalProducts, 0, 0, null);
+    }
+
+    /**
+     * @return this progress with one more committed chunk.
+     */
+    public CategoryDeleteProgress withChunk(int products, int cartItems)
+    {
+        return new CategoryDeleteProgress(categoryId, status, totalProducts, deletedProducts + products,
+                deletedCartItems + cartItems, null);
+    }
+
+    public CategoryDeleteProgress completed()
+    {
+        return new CategoryDeleteProgress(categoryId, Status.COMPLETED, totalProducts, deletedProducts, deletedCartItems, null);
+    }
+
+    /**
+     * @return this progress stopped by an error; the chunks already committed stay deleted.
+     */
+    public CategoryDeleteProgress failed(String error)
+    {
+        return new CategoryDeleteProgress(categoryId, Status.FAILED, totalProducts, deletedProducts, deletedCartItems, error);
+    }
+
+    public int getCategoryId()
+    {
+        return categoryId;
+    }
+
+    public Status getStatus()
+    {
+        return status;
+    }
+
+    /**
+     * @return how many products the category had when the deletion started.
+     */
+    public int getTotalProducts()
+    {
+        return totalProducts;
+    }
+
+    public int getDeletedProducts()
+    {
+        return deletedProducts;
+    }
+
+    public int getDeletedCartItems()
+    {
+        return deletedCartItems;
+    }
+
+    /**
+     * @return why the deletion stopped, or null unless it failed.
+     */
+    public String getError()
+    {
+        return error;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "CategoryDeleteProgress{categoryId=" + categoryId + ", status=" + status + ", totalProducts=" + totalProducts +
+                ", deletedProducts=" + deletedProducts + ", deletedCartItems=" + deletedCartItems + ", error=" + error + '}';
+    }
+}
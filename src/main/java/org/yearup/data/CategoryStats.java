@@ -0,0 +1,92 @@
+package org.yearup.data;
+
+import java.math.BigDecimal;
+
+/**
+ * What the storefront shows about the products of one category: how many there are, the price range
+ * and how many are in stock.
+ */
+public final class CategoryStats
+{
+    private final int categoryId;
+    private final int productCount;
+    private final BigDecimal minPrice;
+    private final BigDecimal maxPrice;
+    private final int inStockCount;
+
+    public CategoryStats(int categoryId, int productCount, BigDecimal minPrice, BigDecimal maxPrice, int inStockCount)
+    {
+        this.categoryId = categoryId;
+        this.productCount = productCount;
+        this.minPrice = minPrice;
+        this.maxPrice = maxPrice;
+        this.inStockCount = inStockCount;
+    }
+
+    /**
+     * @return the figures of a category without products.
+     */
+    public static CategoryStats empty(int categoryId)
+    {
+        return new CategoryStats(categoryId, 0, null, null, 0);
+    }
+
+    public int getCategoryId()
+    {
+        return categoryId;
+    }
+
+    public int getProductCount()
+    {
+        return productCount;
+    }
+
+    /**
+     * @return the lowest price in the category, or null if it has no priced products.
+     */
+    public BigDecimal getMinPrice()
+    {
+        return minPrice;
+    }
+
+    /**
+     * @return the highest price in the category, or null if it has no priced products.
+     */
+    public BigDecimal getMaxPrice()
+    {
+        return maxPrice;
+    }
+
+    /**
+     * @return how many of the category's products have stock.
+     */
+    public int getInStockCount()
+    {
+        return inStockCount;
+    }
+
+    /**
+     * True if both describe the same figures; prices compare by value, so 9.9 and 9.90 are equal.
+     */
+    public boolean sameAs(CategoryStats other)
+    {
+        return other != null
+                && categoryId == other.categoryId
+                && productCount == other.productCount
+                && inStockCount == other.inStockCount
+                && samePrice(minPrice, other.minPrice)
+                && samePrice(maxPrice, other.maxPrice);
+    }
+
+    private static boolean samePrice(BigDecimal a, BigDecimal b)
+    {
+        return a == null ? b == null : b != null && a.compareTo(b) == 0;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "CategoryStats{categoryId=" + categoryId + ", productCount=" + productCount + ", minPrice=" + minPrice +
+                ", maxPrice=" + maxPrice + ", inStockCount=" + inStockCount + '}';
+    }
+}
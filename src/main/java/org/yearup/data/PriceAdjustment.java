@@ -0,0 +1,69 @@
+package org.yearup.data;
+
+import java.math.BigDecimal;
+
+/**
+ * A change to the price of every product that matches a filter: either a percentage (-10 takes 10% off)
+ * or an absolute amount (-5.00 takes five off). New prices are rounded to the cent.
+ */
+public final class PriceAdjustment
+{
+    private final ProductFilter filter;
+    private final BigDecimal percent;
+    private final BigDecimal amount;
+
+    private PriceAdjustment(ProductFilter filter, BigDecimal percent, BigDecimal amount)
+    {
+        if (filter.getQuery() != null) {
+            throw new IllegalArgumentException("Prices cannot be adjusted by keyword search.");
+        }
+        this.filter = filter;
+        this.percent = percent;
+        this.amount = amount;
+    }
+
+    /**
+     * Whether a reduction takes some price below 0.01 depends on the products, so ProductDao.adjustPrices checks that.
+     * @throws IllegalArgumentException unless exactly one of percent and amount is given, or if percent is -100 or less.
+     */
+    public static PriceAdjustment of(ProductFilter filter, BigDecimal percent, BigDecimal amount)
+    {
+        if ((percent == null) == (amount == null)) {
+            throw new IllegalArgumentException("Give either percent or amount.");
+        }
+        if (percent != null && percent.compareTo(new BigDecimal("-100")) <= 0) {
+            throw new IllegalArgumentException("percent must be greater than -100.");
+        }
+        return new PriceAdjustment(filter, percent, amount);
+    }
+
+    /**
+     * @return the products to reprice.
+     */
+    public ProductFilter getFilter()
+    {
+        return filter;
+    }
+
+    /**
+     * @return the percentage to change prices by, or null for an absolute change.
+     */
+    public BigDecimal getPercent()
+    {
+        return percent;
+    }
+
+    /**
+     * @return the amount to add to prices, or null for a percentage change.
+     */
+    public BigDecimal getAmount()
+    {
+        return amount;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "PriceAdjustment{filter=" + filter + ", percent=" + percent + ", amount=" + amount + '}';
+    }
+}
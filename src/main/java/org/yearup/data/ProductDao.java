@@ -4,14 +4,57 @@ import org.yearup.models.Product;
 
 import java.math.BigDecimal;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface ProductDao
 {
     List<Product> search(Integer categoryId, BigDecimal minPrice, BigDecimal maxPrice, String color);
+    List<Product> search(ProductFilter filter);
+    ProductPage search(ProductFilter filter, ProductPageRequest page);
+
+    /**
+     * Counts the products matching the filter by category, color and price bucket.
+     * @param priceEdges The lower bound of every price bucket, in ascending order.
+     */
+    ProductFacets facets(ProductFilter filter, List<BigDecimal> priceEdges);
+    /**
+     * Hands every product to the consumer, in product id order, straight from the database.
+     * Rows are streamed one at a time instead of being collected into a list, so memory use does not grow with the catalog.
+     */
+    void streamAll(Consumer<Product> consumer);
+
     List<Product> listByCategoryId(int categoryId);
+
+    /**
+     * Returns the featured products, ordered by product id.
+     * @param categoryId Only the featured products of this category, or every featured product when null.
+     */
+    List<Product> listFeatured(Integer categoryId);
     Product getById(int productId);
+
+    /**
+     * Looks up several products at once.
+     * @return the products in the order their ids were given, each id at most once. Ids without a product are left out.
+     */
+    List<Product> getByIds(List<Integer> productIds);
     Product create(Product product);
+
+    /**
+     * Inserts the products in a single transaction, with multi-row INSERT statements.
+     * Either every product is inserted or, when an exception is thrown, none is.
+     * @return the same products, with their generated ids set.
+     */
+    List<Product> createAll(List<Product> products);
     void update(int productId, Product product);
+
+    /**
+     * Changes the price of every product that matches the adjustment's filter, chunkSize products per transaction.
+     * @return the ids of the repriced products.
+     * No price goes below 0.01, even for a product repriced while the adjustment runs.
+     * @throws IllegalArgumentException if the reduction would take a matching product below 0.01, after rounding to the
+     * cent; nothing is changed.
+     */
+    List<Integer> adjustPrices(PriceAdjustment adjustment, int chunkSize);
     void delete(int productId);
     void deleteProductsByCategoryId(int categoryId);
 }
@@ -0,0 +1,86 @@
+package org.yearup.data;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * How many of the products matching a search fall into each category, color and price bucket.
+ * Only non-zero counts are listed, except for price buckets which are always all present.
+ */
+public final class ProductFacets
+{
+    private final int total;
+    private final Map<Integer, Integer> categories;
+    private final Map<String, Integer> colors;
+    private final List<PriceBucket> prices;
+
+    public ProductFacets(int total, Map<Integer, Integer> categories, Map<String, Integer> colors, List<PriceBucket> prices)
+    {
+        this.total = total;
+        this.categories = categories;
+        this.colors = colors;
+        this.prices = prices;
+    }
+
+    /**
+     * @return the number of products matching the search.
+     */
+    public int getTotal()
+    {
+        return total;
+    }
+
+    /**
+     * @return product counts by category id, in category id order.
+     */
+    public Map<Integer, Integer> getCategories()
+    {
+        return categories;
+    }
+
+    /**
+     * @return product counts by color, most common first. Colors are grouped ignoring case, like MySQL does.
+     */
+    public Map<String, Integer> getColors()
+    {
+        return colors;
+    }
+
+    public List<PriceBucket> getPrices()
+    {
+        return prices;
+    }
+
+    /**
+     * The products priced from min (inclusive) up to max (exclusive). The last bucket has no max.
+     */
+    public static final class PriceBucket
+    {
+        private final BigDecimal min;
+        private final BigDecimal max;
+        private final int count;
+
+        public PriceBucket(BigDecimal min, BigDecimal max, int count)
+        {
+            this.min = min;
+            this.max = max;
+            this.count = count;
+        }
+
+        public BigDecimal getMin()
+        {
+            return min;
+        }
+
+        public BigDecimal getMax()
+        {
+            return max;
+        }
+
+        public int getCount()
+        {
+            return count;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package org.yearup.data;
+
+import java.math.BigDecimal;
+import java.util.Objects;
+
+/**
+ * The filters accepted by ProductDao.search.
+ * Values that the search ignores (a category id of 0 or less, a negative price, a blank color)
+ * are normalized to null, so two filters that select the same products are equal.
+ */
+public final class ProductFilter
+{
+    private final Integer categoryId;
+    private final BigDecimal minPrice;
+    private final BigDecimal maxPrice;
+    private final String color;
+    private final Boolean inStock;
+    private final Boolean featured;
+    private final String query;
+    private final boolean descendants;
+
+    public ProductFilter(Integer categoryId, BigDecimal minPrice, BigDecimal maxPrice, String color)
+    {
+        this(categoryId, minPrice, maxPrice, color, null, null);
+    }
+
+    public ProductFilter(Integer categoryId, BigDecimal minPrice, BigDecimal maxPrice, String color, Boolean inStock, Boolean featured)
+    {
+        this(categoryId, minPrice, maxPrice, color, inStock, featured, null, false);
+    }
+
+    private ProductFilter(Integer categoryId, BigDecimal minPrice, BigDecimal maxPrice, String color, Boolean inStock, Boolean featured,
+                          String query, boolean descendants)
+    {
+        this.categoryId = (categoryId != null && categoryId > 0) ? categoryId : null;
+        this.minPrice = normalizePrice(minPrice);
+        this.maxPrice = normalizePrice(maxPrice);
+        this.color = (color != null && !color.trim().isEmpty()) ? color.trim() : null;
+        this.inStock = inStock;
+        this.featured = featured;
+        this.query = (query != null && !query.trim().isEmpty()) ? query.trim().replaceAll("\\s+", " ") : null;
+        this.descendants = descendants && this.categoryId != null;
+    }
+
+    /**
+     * @return a copy of this filter that also requires the products to match the keyword query.
+     */
+    public ProductFilter withQuery(String query)
+    {
+        return new ProductFilter(categoryId, minPrice, maxPrice, color, inStock, featured, query, descendants);
+    }
+
+    /**
+     * @return a copy of this filter whose category also matches the products of all its subcategories, when descendants is true.
+     */
+    public ProductFilter withDescendants(boolean descendants)
+    {
+        return new ProductFilter(categoryId, minPrice, maxPrice, color, inStock, featured, query, descendants);
+    }
+
+    public Integer getCategoryId()
+    {
+        return categoryId;
+    }
+
+    public BigDecimal getMinPrice()
+    {
+        return minPrice;
+    }
+
+    public BigDecimal getMaxPrice()
+    {
+        return maxPrice;
+    }
+
+    public String getColor()
+    {
+        return color;
+    }
+
+    /**
+     * @return true for products with stock, false for sold-out products, null for both.
+     */
+    public Boolean getInStock()
+    {
+        return inStock;
+    }
+
+    public Boolean getFeatured()
+    {
+        return featured;
+    }
+
+    /**
+     * @return true if the category filter includes the category's subcategories, at any depth.
+     */
+    public boolean isDescendants()
+    {
+        return descendants;
+    }
+
+    /**
+     * @return the keywords to look for in product names and descriptions, or null.
+     */
+    public String getQuery()
+    {
+        return query;
+    }
+
+    // Negative prices were always ignored by the search; stripping trailing zeros makes 80 and 80.00 the same filter.
+    private static BigDecimal normalizePrice(BigDecimal price)
+    {
+        if (price == null || price.signum() < 0) {
+            return null;
+        }
+        return price.signum() == 0 ? BigDecimal.ZERO : price.stripTrailingZeros();
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ProductFilter that = (ProductFilter) o;
+        return Objects.equals(categoryId, that.categoryId) &&
+                Objects.equals(minPrice, that.minPrice) &&
+                Objects.equals(maxPrice, that.maxPrice) &&
+                (color == null ? that.color == null : color.equalsIgnoreCase(that.color)) &&
+                Objects.equals(inStock, that.inStock) &&
+                Objects.equals(featured, that.featured) &&
+                (query == null ? that.query == null : query.equalsIgnoreCase(that.query)) &&
+                descendants == that.descendants;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Objects.hash(categoryId, minPrice, maxPrice, color == null ? null : color.toLowerCase(), inStock, featured,
+                query == null ? null : query.toLowerCase(), descendants);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ProductFilter{" +
+                "categoryId=" + categoryId +
+                ", minPrice=" + minPrice +
+                ", maxPrice=" + maxPrice +
+                ", color='" + color + '\'' +
+                ", inStock=" + inStock +
+                ", featured=" + featured +
+                ", query='" + query + '\'' +
+                ", descendants=" + descendants +
+                '}';
+    }
+}
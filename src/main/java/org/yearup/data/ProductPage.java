@@ -0,0 +1,33 @@
+package org.yearup.data;
+
+import org.yearup.models.Product;
+
+import java.util.List;
+
+/**
+ * One page of products plus the cursor for the page after it.
+ */
+public final class ProductPage
+{
+    private final List<Product> products;
+    private final String nextCursor;
+
+    public ProductPage(List<Product> products, String nextCursor)
+    {
+        this.products = products;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<Product> getProducts()
+    {
+        return products;
+    }
+
+    /**
+     * @return the token to pass as "after" for the next page, or null if this is the last page.
+     */
+    public String getNextCursor()
+    {
+        return nextCursor;
+    }
+}
@@ -0,0 +1,215 @@
+package org.yearup.data;
+
+import org.yearup.models.Product;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Locale;
+
+/**
+ * One page of a keyset-paginated product search: the sort order, the page size and the
+ * position after which the page starts. The position is an opaque cursor holding the sort value
+ * and product id of the last row of the previous page, so the next page is found with a seek
+ * predicate instead of an OFFSET.
+ */
+public final class ProductPageRequest
+{
+    public static final int MAX_LIMIT = 1000;
+
+    public enum Sort
+    {
+        ID, NAME, PRICE,
+        /** Best text match first, ties by product id. Only valid for searches with keywords, and only descending. */
+        RELEVANCE
+    }
+
+    private final Sort sort;
+    private final boolean descending;
+    private final Integer limit;
+    private final Cursor after;
+
+    public ProductPageRequest(Sort sort, boolean descending, Integer limit, Cursor after)
+    {
+        if (limit != null && (limit < 1 || limit > MAX_LIMIT)) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_LIMIT);
+        }
+        if (sort == Sort.RELEVANCE && !descending) {
+            throw new IllegalArgumentException("relevance can only be sorted descending");
+        }
+        if (after != null && (after.getSort() != sort || after.isDescending() != descending)) {
+            throw new IllegalArgumentException("The cursor was issued for a different sort order.");
+        }
+        this.sort = sort;
+        this.descending = descending;
+        this.limit = limit;
+        this.after = after;
+    }
+
+    /**
+     * Builds a page request from the query parameters of a listing endpoint.
+     * @param sort "id", "name", "price" or "relevance", optionally followed by ",asc" or ",desc".
+     *             Defaults to "id,asc"; "relevance" defaults to, and only allows, descending.
+     * @param limit The page size, or null for no limit.
+     * @param after A cursor returned with the previous page, or null for the first page.
+     * @throws IllegalArgumentException if any of the values is invalid.
+     */
+    public static ProductPageRequest parse(String sort, Integer limit, String after)
+    {
+        Sort field = Sort.ID;
+        boolean descending = false;
+
+        if (sort != null && !sort.isBlank()) {
+            String[] parts = sort.trim().toLowerCase(Locale.ROOT).split(",");
+            if (parts.length > 2) {
+                throw new IllegalArgumentException("sort must look like 'price' or 'price,desc'");
+            }
+            try {
+                field = Sort.valueOf(parts[0].trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("sort must be one of id, name, price or relevance");
+            }
+            descending = field == Sort.RELEVANCE;
+            if (parts.length == 2) {
+                switch (parts[1].trim()) {
+                    case "asc" -> descending = false;
+                    case "desc" -> descending = true;
+                    default -> throw new IllegalArgumentException("sort direction must be asc or desc");
+                }
+            }
+        }
+
+        Cursor cursor = (after == null || after.isBlank()) ? null : Cursor.decode(after.trim());
+        return new ProductPageRequest(field, descending, limit, cursor);
+    }
+
+    public Sort getSort()
+    {
+        return sort;
+    }
+
+    public boolean isDescending()
+    {
+        return descending;
+    }
+
+    /**
+     * @return the page size, or null when every matching product should be returned.
+     */
+    public Integer getLimit()
+    {
+        return limit;
+    }
+
+    public Cursor getAfter()
+    {
+        return after;
+    }
+
+    /**
+     * @return the cursor that starts the page following the given product.
+     */
+    public Cursor cursorAfter(Product last)
+    {
+        String value = switch (sort) {
+            case ID -> null;
+            case NAME -> last.getName();
+            case PRICE -> last.getPrice().toPlainString();
+            case RELEVANCE -> throw new IllegalStateException("A relevance cursor needs the score of the last product.");
+        };
+        return new Cursor(sort, descending, last.getProductId(), value);
+    }
+
+    /**
+     * @return the cursor that starts the page following the given product, for RELEVANCE sorts.
+     */
+    public Cursor cursorAfter(Product last, double score)
+    {
+        return new Cursor(sort, descending, last.getProductId(), Double.toString(score));
+    }
+
+    /**
+     * The sort key of the last row of a page.
+     */
+    public static final class Cursor
+    {
+        private final Sort sort;
+        private final boolean descending;
+        private final int productId;
+        private final String value;
+
+        public Cursor(Sort sort, boolean descending, int productId, String value)
+        {
+            this.sort = sort;
+            this.descending = descending;
+            this.productId = productId;
+            this.value = value;
+        }
+
+        public Sort getSort()
+        {
+            return sort;
+        }
+
+        public boolean isDescending()
+        {
+            return descending;
+        }
+
+        public int getProductId()
+        {
+            return productId;
+        }
+
+        /**
+         * @return the product name for NAME sorts, the price for PRICE sorts, the score for RELEVANCE sorts,
+         * or null for ID sorts.
+         */
+        public String getValue()
+        {
+            return value;
+        }
+
+        public BigDecimal getPrice()
+        {
+            return new BigDecimal(value);
+        }
+
+        public double getScore()
+        {
+            return Double.parseDouble(value);
+        }
+
+        public String encode()
+        {
+            String raw = sort.name() + "," + (descending ? "desc" : "asc") + "," + productId + (value == null ? "" : "," + value);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        public static Cursor decode(String token)
+        {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+                // the value goes last because a product name may itself contain commas
+                String[] parts = raw.split(",", 4);
+                Sort sort = Sort.valueOf(parts[0]);
+                boolean descending = "desc".equals(parts[1]);
+                int productId = Integer.parseInt(parts[2]);
+                String value = parts.length == 4 ? parts[3] : null;
+
+                if (sort != Sort.ID && value == null) {
+                    throw new IllegalArgumentException("missing sort value");
+                }
+                if (sort == Sort.PRICE) {
+                    new BigDecimal(value);
+                }
+                if (sort == Sort.RELEVANCE) {
+                    Double.parseDouble(value);
+                }
+                return new Cursor(sort, descending, productId, value);
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid cursor: " + token);
+            }
+        }
+    }
+}
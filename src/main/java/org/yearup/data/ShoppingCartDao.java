@@ -1,5 +1,6 @@
 package org.yearup.data;
 
+import org.yearup.models.CartOperation;
 import org.yearup.models.ShoppingCartItem;
 import org.yearup.models.ShoppingCart;
 
@@ -8,7 +9,12 @@ import java.util.List; // Keep if you use List in any of your models/DAOs, other
 public interface ShoppingCartDao
 {
     // New method added to support cascading delete from products
-    void deleteShoppingCartItemsByCategoryId(int categoryId);
+
+    /**
+     * Removes the given products from every user's cart, for products that are being deleted.
+     * @param productIds The IDs of the products to remove.
+     */
+    void deleteShoppingCartItemsByProductIds(List<Integer> productIds);
 
     // Methods needed to support ShoppingCartController functionality
 
@@ -31,6 +37,8 @@ public interface ShoppingCartDao
     /**
      * Adds a product to the user's shopping cart. If the product already exists,
      * its quantity is incremented by 1. If not, it's added with quantity 1.
+     * The increment is atomic, so concurrent adds are all counted, and the quantity never exceeds the product's
+     * stock: a product out of stock is not added, and is removed if it was in the cart.
      * @param userId The ID of the user.
      * @param productId The ID of the product to add/increment.
      */
@@ -39,6 +47,7 @@ public interface ShoppingCartDao
     /**
      * Updates the quantity of a specific product in the user's shopping cart.
      * If the quantity is 0 or less, the item should be removed from the cart.
+     * A quantity above the product's stock is lowered to the stock; with no stock left, the item is removed.
      * @param userId The ID of the user.
      * @param productId The ID of the product to update.
      * @param quantity The new quantity for the product.
@@ -57,4 +66,14 @@ public interface ShoppingCartDao
      * @param productId The ID of the product to remove from the cart.
      */
     void deleteProductFromCart(int userId, int productId);
+
+    /**
+     * Applies several changes to the user's cart, in order, as one unit: either all of them take effect or none does.
+     * Unlike updateProductQuantity, a set operation also adds a product that is not in the cart yet.
+     * Quantities are clamped to the stock as in addProductToCart and updateProductQuantity.
+     * @param userId The ID of the user.
+     * @param operations The changes; quantities must already be validated (add at least 1, set at least 0).
+     * @return The cart after the changes.
+     */
+    ShoppingCart applyOperations(int userId, List<CartOperation> operations);
 }
@@ -0,0 +1,342 @@
+package org.yearup.data.cart;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of cart changes, so carts held in memory survive a crash until they are written to MySQL.
+ * Every change is recorded as the line's resulting quantity (0 for a removed line) or as a cleared cart, so
+ * replaying a record twice does no harm. Lines changed together are written as one batch, whose records all carry
+ * the BATCH type except the last: a batch cut short by a crash ends in a BATCH record and is dropped on replay.
+ * Records go into one of two memory-mapped segment files. A flush seals the active segment and switches to the
+ * other; once the flush has reached MySQL, the sealed segment is emptied by raising the lowest sequence number its
+ * header accepts, so no record is ever moved or rewritten.
+ * sync() makes the records appended so far durable. A caller that finds another thread already forcing waits for it
+ * and usually finds its own record forced too, so concurrent changes share one fsync.
+ */
+@Component
+public class CartJournal
+{
+    static final int HEADER_SIZE = 16;
+    static final int RECORD_SIZE = 32;
+    private static final int MAGIC = 0x43415254; // "CART"
+    private static final int SET = 1;
+    private static final int CLEAR = 2;
+    private static final int BATCH = 3;
+
+    private final Segment[] segments = new Segment[2];
+    private final boolean fsync;
+    private final Object syncLock = new Object();
+    private final List<Record> recovered;
+    private int active;
+    private Segment sealed;
+    private long nextSequence;
+
+    public CartJournal(@Value("${cart.journal.directory:cart-journal}") String directory,
+                       @Value("${cart.journal.segment-bytes:16777216}") int segmentBytes,
+                       @Value("${cart.journal.fsync:true}") boolean fsync)
+    {
+        this.fsync = fsync;
+        try {
+            Path path = Paths.get(directory);
+            Files.createDirectories(path);
+            segments[0] = new Segment(path.resolve("cart-journal-0.log"), segmentBytes);
+            segments[1] = new Segment(path.resolve("cart-journal-1.log"), segmentBytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open the cart journal in " + directory, e);
+        }
+
+        List<Record> records = new ArrayList<>(segments[0].records);
+        records.addAll(segments[1].records);
+        records.sort(Comparator.comparingLong(record -> record.sequence));
+        this.recovered = List.copyOf(records);
+
+        nextSequence = Math.max(segments[0].minSequence, segments[1].minSequence);
+        if (!records.isEmpty()) {
+            nextSequence = Math.max(nextSequence, records.get(records.size() - 1).sequence + 1);
+        }
+        // keep appending where the newest records are; records left in the other segment belong to a flush that
+        // never completed, so it counts as sealed until the next flush reaches MySQL
+        active = last(segments[1]) > last(segments[0]) ? 1 : 0;
+        if (!segments[1 - active].records.isEmpty()) {
+            sealed = segments[1 - active];
+        }
+    }
+
+    /**
+     * One change as it was journaled.
+     */
+    public static final class Record
+    {
+        private final int type;
+        private final long sequence;
+        private final int userId;
+        private final int productId;
+        private final int quantity;
+
+        private Record(int type, long sequence, int userId, int productId, int quantity)
+        {
+            this.type = type;
+            this.sequence = sequence;
+            this.userId = userId;
+            this.productId = productId;
+            this.quantity = quantity;
+        }
+
+        /**
+         * @return true if the whole cart was cleared; otherwise one line was set to getQuantity().
+         */
+        public boolean isClear()
+        {
+            return type == CLEAR;
+        }
+
+        public int getUserId()
+        {
+            return userId;
+        }
+
+        public int getProductId()
+        {
+            return productId;
+        }
+
+        public int getQuantity()
+        {
+            return quantity;
+        }
+    }
+
+    /**
+     * @return the records found when the journal was opened, oldest first: changes that may not have reached MySQL.
+     */
+    public List<Record> recovered()
+    {
+        return recovered;
+    }
+
+    /**
+     * Records that the user's cart now holds quantity of the product; 0 means the line was removed.
+     */
+    public synchronized void set(int userId, int productId, int quantity)
+    {
+        segments[active].append(new Record(SET, nextSequence++, userId, productId, quantity));
+    }
+
+    /**
+     * Records several lines of the user's cart at once; on replay either all of them are found or none is.
+     */
+    public synchronized void setAll(int userId, Map<Integer, Integer> quantities)
+    {
+        int remaining = quantities.size();
+        for (Map.Entry<Integer, Integer> line : quantities.entrySet()) {
+            segments[active].append(new Record(--remaining == 0 ? SET : BATCH, nextSequence++, userId, line.getKey(),
+                    line.getValue()));
+        }
+    }
+
+    public synchronized void clear(int userId)
+    {
+        segments[active].append(new Record(CLEAR, nextSequence++, userId, 0, 0));
+    }
+
+    /**
+     * Returns once every record appended before the call is on disk.
+     */
+    public void sync()
+    {
+        if (!fsync) {
+            return;
+        }
+        synchronized (syncLock) {
+            for (Segment segment : segments) {
+                int end;
+                synchronized (this) {
+                    end = segment.position;
+                }
+                segment.force(end);
+            }
+        }
+    }
+
+    /**
+     * Starts a flush: the records appended so far are set aside and new ones go to the other segment.
+     * A segment left sealed by a flush that never finished, before a crash, stays sealed until a flush releases it.
+     */
+    public synchronized void seal()
+    {
+        if (sealed != null) {
+            return;
+        }
+        sealed = segments[active];
+        active = 1 - active;
+    }
+
+    /**
+     * Ends a flush that reached MySQL: the sealed segment is emptied.
+     */
+    public void release()
+    {
+        synchronized (syncLock) {
+            synchronized (this) {
+                if (sealed == null) {
+                    return;
+                }
+                sealed.reset(nextSequence);
+                sealed = null;
+            }
+        }
+    }
+
+    @PreDestroy
+    public void close()
+    {
+        sync();
+        for (Segment segment : segments) {
+            segment.close();
+        }
+    }
+
+    private static long last(Segment segment)
+    {
+        return segment.records.isEmpty() ? -1 : segment.records.get(segment.records.size() - 1).sequence;
+    }
+
+    private static int checksum(MappedByteBuffer buffer, int offset, int length)
+    {
+        CRC32 crc = new CRC32();
+        for (int i = offset; i < offset + length; i++) {
+            crc.update(buffer.get(i));
+        }
+        return (int) crc.getValue();
+    }
+
+    // One file: a header holding the lowest sequence number that counts, then fixed-size records.
+    private final class Segment
+    {
+        private final FileChannel channel;
+        private volatile MappedByteBuffer buffer;
+        private long minSequence;
+        private int position = HEADER_SIZE;
+        private int forced = HEADER_SIZE;
+        private final List<Record> records = new ArrayList<>();
+
+        private Segment(Path path, int size) throws IOException
+        {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(size, channel.size()));
+            if (buffer.getInt(8) == MAGIC && buffer.getInt(12) == checksum(buffer, 0, 12)) {
+                minSequence = buffer.getLong(0);
+            } else {
+                writeHeader(0);
+            }
+            scan();
+            forced = position;
+        }
+
+        // Reads records until the first one that is torn, older than the header allows, or out of order
+        // (a leftover from before the segment was last emptied). A batch left unfinished there is dropped, and the
+        // next record is appended where it began.
+        private void scan()
+        {
+            long previous = minSequence - 1;
+            int batchStart = -1;
+            while (position + RECORD_SIZE <= buffer.capacity()) {
+                int type = buffer.getInt(position);
+                long sequence = buffer.getLong(position + 4);
+                if ((type != SET && type != CLEAR && type != BATCH) || sequence <= previous
+                        || buffer.getInt(position + 24) != checksum(buffer, position, 24)) {
+                    break;
+                }
+                if (type == BATCH && batchStart < 0) {
+                    batchStart = position;
+                } else if (type != BATCH) {
+                    batchStart = -1;
+                }
+                records.add(new Record(type, sequence, buffer.getInt(position + 12), buffer.getInt(position + 16),
+                        buffer.getInt(position + 20)));
+                previous = sequence;
+                position += RECORD_SIZE;
+            }
+            if (batchStart >= 0) {
+                records.subList((batchStart - HEADER_SIZE) / RECORD_SIZE, records.size()).clear();
+                position = batchStart;
+            }
+        }
+
+        private void append(Record record)
+        {
+            if (position + RECORD_SIZE > buffer.capacity()) {
+                grow();
+            }
+            buffer.putInt(position, record.type);
+            buffer.putLong(position + 4, record.sequence);
+            buffer.putInt(position + 12, record.userId);
+            buffer.putInt(position + 16, record.productId);
+            buffer.putInt(position + 20, record.quantity);
+            buffer.putInt(position + 24, checksum(buffer, position, 24));
+            position += RECORD_SIZE;
+        }
+
+        // Between two flushes the segment holds every change; a burst larger than the file maps a larger file.
+        private void grow()
+        {
+            try {
+                buffer.force();
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) buffer.capacity() * 2);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not grow the cart journal", e);
+            }
+        }
+
+        private void force(int end)
+        {
+            if (end > forced) {
+                buffer.force(forced, end - forced);
+                forced = end;
+            }
+        }
+
+        private void reset(long sequence)
+        {
+            writeHeader(sequence);
+            position = HEADER_SIZE;
+            forced = HEADER_SIZE;
+        }
+
+        private void writeHeader(long sequence)
+        {
+            minSequence = sequence;
+            buffer.putLong(0, sequence);
+            buffer.putInt(8, MAGIC);
+            buffer.putInt(12, checksum(buffer, 0, 12));
+            if (fsync) {
+                buffer.force(0, HEADER_SIZE);
+            }
+        }
+
+        private void close()
+        {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                System.err.println("ERROR: Could not close the cart journal: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,409 @@
+package org.yearup.data.cart;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.yearup.data.ShoppingCartDao;
+import org.yearup.data.catalog.CatalogEngine;
+import org.yearup.data.catalog.CatalogSnapshot;
+import org.yearup.data.mysql.MySqlShoppingCartDao;
+import org.yearup.models.CartOperation;
+import org.yearup.models.Product;
+import org.yearup.models.ShoppingCart;
+import org.yearup.models.ShoppingCartItem;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ShoppingCartDao that keeps the carts in use in memory and writes their changes to MySQL later.
+ * A cart is read from MySQL the first time it is used; after that, reads and changes touch only memory, and the
+ * products come from the in-memory catalog. Changed lines are written for every cart at once, in batched upserts,
+ * every cart.write-behind.flush-interval-ms and when the application shuts down.
+ * Every change is appended to the CartJournal, and made durable there, before the call returns, so a crash loses no
+ * cart: the journal is replayed when the application starts, and emptied as its changes reach MySQL. Replaying needs
+ * no database; the replayed carts are written by the first flush, which keeps the journal and retries while MySQL is
+ * unreachable.
+ * Carts that have been written and not used for cart.write-behind.idle-ms are dropped from memory.
+ * Every change runs under its cart's lock, so concurrent adds are never lost, and quantities are clamped to the
+ * product's stock in the catalog: a product out of stock is not added, and a line clamped to 0 is removed.
+ * The carts live on the node that served them, so several nodes need requests of a user to reach the same node.
+ */
+@Component
+@Primary
+public class WriteBehindShoppingCartDao implements ShoppingCartDao
+{
+    private final MySqlShoppingCartDao delegate;
+    private final CatalogEngine catalog;
+    private final CartJournal journal;
+    private final long idleMillis;
+    private final Map<Integer, Cart> carts = new ConcurrentHashMap<>();
+    // journaled changes of carts not read from MySQL since the restart; a cart applies its own as it is read
+    private final Map<Integer, List<CartJournal.Record>> replay = new ConcurrentHashMap<>();
+    private final Object flushLock = new Object();
+
+    public WriteBehindShoppingCartDao(MySqlShoppingCartDao delegate, CatalogEngine catalog, CartJournal journal,
+                                      @Value("${cart.write-behind.idle-ms:1800000}") long idleMillis)
+    {
+        this.delegate = delegate;
+        this.catalog = catalog;
+        this.journal = journal;
+        this.idleMillis = idleMillis;
+    }
+
+    // One user's cart. Guarded by its own monitor; dirty holds the products changed since the last flush.
+    private static final class Cart
+    {
+        private final int userId;
+        private final Map<Integer, Integer> quantities;
+        private final Set<Integer> dirty = new HashSet<>();
+        private long lastUsed = System.currentTimeMillis();
+        private boolean evicted;
+
+        private Cart(int userId, Map<Integer, Integer> quantities)
+        {
+            this.userId = userId;
+            this.quantities = quantities;
+        }
+
+        private void set(int productId, int quantity)
+        {
+            if (quantity > 0) {
+                quantities.put(productId, quantity);
+            } else {
+                quantities.remove(productId);
+            }
+            dirty.add(productId);
+        }
+    }
+
+    private interface Change<T>
+    {
+        T apply(Cart cart);
+    }
+
+    // Runs the change on the user's cart, reading it from MySQL first if it is not in memory.
+    // A cart evicted between the lookup and the lock is looked up again, so no change lands on a dropped cart.
+    private <T> T withCart(int userId, Change<T> change)
+    {
+        while (true) {
+            Cart cart = carts.computeIfAbsent(userId, this::load);
+            synchronized (cart) {
+                if (!cart.evicted) {
+                    cart.lastUsed = System.currentTimeMillis();
+                    return change.apply(cart);
+                }
+            }
+        }
+    }
+
+    private Cart load(int userId)
+    {
+        Cart cart = new Cart(userId, new LinkedHashMap<>(delegate.getQuantities(userId)));
+        List<CartJournal.Record> records = replay.remove(userId);
+        if (records != null) {
+            for (CartJournal.Record record : records) {
+                if (record.isClear()) {
+                    new ArrayList<>(cart.quantities.keySet()).forEach(productId -> cart.set(productId, 0));
+                } else {
+                    cart.set(record.getProductId(), record.getQuantity());
+                }
+            }
+        }
+        return cart;
+    }
+
+    // A change is journaled under the cart's lock, in the order it is applied, and synced after the lock is released,
+    // so changes to other carts can share the fsync.
+    private void change(int userId, Change<Void> change)
+    {
+        withCart(userId, change);
+        journal.sync();
+    }
+
+    private void set(Cart cart, int productId, int quantity)
+    {
+        cart.set(productId, quantity);
+        journal.set(cart.userId, productId, Math.max(quantity, 0));
+    }
+
+    // Sets the line to the quantity, at most the product's stock; a line that would drop to 0 without being in
+    // the cart is left alone.
+    private void setClamped(Cart cart, int productId, int quantity)
+    {
+        Integer clamped = clamped(cart.quantities, productId, quantity);
+        if (clamped != null) {
+            set(cart, productId, clamped);
+        }
+    }
+
+    // The quantity the line is set to, at most the product's stock, or null if it stays out of the cart.
+    private Integer clamped(Map<Integer, Integer> quantities, int productId, int quantity)
+    {
+        Product product = catalog.snapshot().getProduct(productId);
+        int clamped = Math.min(quantity, product == null ? 0 : product.getStock());
+        return clamped > 0 || quantities.containsKey(productId) ? clamped : null;
+    }
+
+    /**
+     * Takes the changes left in the journal by the previous run, to be applied to each cart as it is read from
+     * MySQL. Touches no database, so the application starts even when MySQL is unreachable.
+     */
+    @PostConstruct
+    public void recover()
+    {
+        List<CartJournal.Record> records = journal.recovered();
+        if (records.isEmpty()) {
+            return;
+        }
+        for (CartJournal.Record record : records) {
+            replay.computeIfAbsent(record.getUserId(), id -> new ArrayList<>()).add(record);
+        }
+        System.out.println("DEBUG: Replaying " + records.size() + " journaled shopping cart changes of " + replay.size() + " users.");
+    }
+
+    /**
+     * Writes the replayed carts to MySQL once the application is up. On failure the journal is kept and the
+     * scheduled flush tries again.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void flushRecovered()
+    {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            System.err.println("ERROR: Could not write the replayed shopping carts, will retry: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public ShoppingCart getByUserId(int userId)
+    {
+        return toShoppingCart(withCart(userId, cart -> new LinkedHashMap<>(cart.quantities)));
+    }
+
+    private ShoppingCart toShoppingCart(Map<Integer, Integer> quantities)
+    {
+        CatalogSnapshot snapshot = catalog.snapshot();
+        ShoppingCart shoppingCart = new ShoppingCart();
+        quantities.forEach((productId, quantity) -> {
+            Product product = snapshot.getProduct(productId);
+            if (product != null) {
+                shoppingCart.addOrUpdateItem(new ShoppingCartItem(product, quantity));
+            }
+        });
+        return shoppingCart;
+    }
+
+    @Override
+    public ShoppingCartItem getCartItemByUserIdAndProductId(int userId, int productId)
+    {
+        Integer quantity = withCart(userId, cart -> cart.quantities.get(productId));
+        Product product = catalog.snapshot().getProduct(productId);
+        return quantity == null || product == null ? null : new ShoppingCartItem(product, quantity);
+    }
+
+    @Override
+    public void addProductToCart(int userId, int productId)
+    {
+        change(userId, cart -> {
+            setClamped(cart, productId, cart.quantities.getOrDefault(productId, 0) + 1);
+            return null;
+        });
+    }
+
+    @Override
+    public void updateProductQuantity(int userId, int productId, int quantity)
+    {
+        change(userId, cart -> {
+            if (!cart.quantities.containsKey(productId)) {
+                System.out.println("WARN: Attempted to update non-existent cart item for user " + userId + ", product " + productId);
+                return null;
+            }
+            setClamped(cart, productId, quantity);
+            return null;
+        });
+    }
+
+    @Override
+    public void deleteProductFromCart(int userId, int productId)
+    {
+        change(userId, cart -> {
+            if (cart.quantities.containsKey(productId)) {
+                set(cart, productId, 0);
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public void clearShoppingCart(int userId)
+    {
+        change(userId, cart -> {
+            journal.clear(userId);
+            for (Integer productId : new ArrayList<>(cart.quantities.keySet())) {
+                cart.set(productId, 0);
+            }
+            return null;
+        });
+    }
+
+    // All operations run under the cart's lock, so no other request sees the cart halfway through. The resulting
+    // lines are worked out first and journaled as one batch, so a crash part way replays all of them or none, and
+    // synced once. The cart returned is the one the operations produced.
+    @Override
+    public ShoppingCart applyOperations(int userId, List<CartOperation> operations)
+    {
+        Map<Integer, Integer> quantities = withCart(userId, cart -> {
+            Map<Integer, Integer> result = new LinkedHashMap<>(cart.quantities);
+            Map<Integer, Integer> lines = new LinkedHashMap<>();
+            for (CartOperation operation : operations) {
+                int productId = operation.getProductId();
+                Integer quantity;
+                switch (operation.getOp()) {
+                    case ADD:
+                        quantity = clamped(result, productId, result.getOrDefault(productId, 0) + operation.quantityOrDefault());
+                        break;
+                    case SET:
+                        quantity = clamped(result, productId, operation.quantityOrDefault());
+                        break;
+                    default:
+                        quantity = 0;
+                }
+                if (quantity != null) {
+                    lines.put(productId, quantity);
+                    if (quantity > 0) {
+                        result.put(productId, quantity);
+                    } else {
+                        result.remove(productId);
+                    }
+                }
+            }
+            journal.setAll(userId, lines);
+            lines.forEach(cart::set);
+            return result;
+        });
+        journal.sync();
+        return toShoppingCart(quantities);
+    }
+
+    // The rows go from MySQL straight away; the carts in memory drop the lines too, or the next flush would
+    // write them back.
+    @Override
+    public void deleteShoppingCartItemsByProductIds(List<Integer> productIds)
+    {
+        for (Cart cart : carts.values()) {
+            synchronized (cart) {
+                for (Integer productId : productIds) {
+                    if (cart.quantities.containsKey(productId)) {
+                        set(cart, productId, 0);
+                    }
+                }
+            }
+        }
+        journal.sync();
+        delegate.deleteShoppingCartItemsByProductIds(productIds);
+    }
+
+    /**
+     * Writes the changed lines of every cart to MySQL in one batch, then drops the carts that are written and idle.
+     * The journal is sealed first, so every journaled change up to that point is in the batch, and it is emptied
+     * afterwards. If the batch fails, each user's lines are written on their own, so one bad row holds back only
+     * its own cart; lines that still fail stay changed for the next flush and are journaled again before the
+     * sealed records are dropped.
+     * Carts still waiting for their journaled changes are read first; if MySQL cannot be read, the flush stops
+     * before the journal is sealed, so nothing is dropped.
+     */
+    @Scheduled(fixedDelayString = "${cart.write-behind.flush-interval-ms:1000}")
+    public void flush()
+    {
+        synchronized (flushLock) {
+            for (Integer userId : new ArrayList<>(replay.keySet())) {
+                withCart(userId, cart -> null);
+            }
+            journal.seal();
+            CatalogSnapshot snapshot = catalog.snapshot();
+            Map<Integer, Map<Integer, Integer>> batch = new HashMap<>();
+            for (Map.Entry<Integer, Cart> entry : carts.entrySet()) {
+                Cart cart = entry.getValue();
+                synchronized (cart) {
+                    if (cart.dirty.isEmpty()) {
+                        continue;
+                    }
+                    Map<Integer, Integer> lines = new HashMap<>();
+                    for (Integer productId : cart.dirty) {
+                        // a product deleted since it was added can only be deleted from the cart
+                        if (snapshot.getProduct(productId) == null) {
+                            cart.quantities.remove(productId);
+                        }
+                        lines.put(productId, cart.quantities.getOrDefault(productId, 0));
+                    }
+                    cart.dirty.clear();
+                    batch.put(entry.getKey(), lines);
+                }
+            }
+
+            if (!batch.isEmpty()) {
+                try {
+                    delegate.saveQuantities(batch);
+                    System.out.println("DEBUG: Flushed shopping cart changes of " + batch.size() + " users.");
+                } catch (RuntimeException e) {
+                    System.err.println("ERROR: Failed to flush shopping carts, writing each user on its own: " + e.getMessage());
+                    batch.forEach(this::flushUser);
+                    journal.sync();
+                }
+            }
+
+            journal.release();
+            evictIdle();
+        }
+    }
+
+    private void flushUser(int userId, Map<Integer, Integer> lines)
+    {
+        try {
+            delegate.saveQuantities(Map.of(userId, lines));
+        } catch (RuntimeException e) {
+            System.err.println("ERROR: Failed to flush the shopping cart of user " + userId + ", will retry: " + e.getMessage());
+            Cart cart = carts.get(userId);
+            synchronized (cart) {
+                // the cart's current quantities, so no newer change that is already journaled is undone on replay
+                for (Integer productId : lines.keySet()) {
+                    cart.dirty.add(productId);
+                    journal.set(userId, productId, cart.quantities.getOrDefault(productId, 0));
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown()
+    {
+        flush();
+    }
+
+    private void evictIdle()
+    {
+        long idleSince = System.currentTimeMillis() - idleMillis;
+        for (Map.Entry<Integer, Cart> entry : carts.entrySet()) {
+            Cart cart = entry.getValue();
+            synchronized (cart) {
+                if (cart.dirty.isEmpty() && cart.lastUsed < idleSince) {
+                    cart.evicted = true;
+                    carts.remove(entry.getKey(), cart);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package org.yearup.data.catalog;
+
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+import org.yearup.data.CategoryDao;
+import org.yearup.data.CategoryDeleteProgress;
+import org.yearup.data.CategoryStats;
+import org.yearup.data.ShoppingCartDao;
+import org.yearup.data.mysql.MySqlCategoryDao;
+import org.yearup.models.Category;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * CategoryDao that serves reads from the in-memory catalog and passes writes through to MySQL.
+ */
+@Component
+@Primary
+public class CatalogCategoryDao implements CategoryDao
+{
+    private final MySqlCategoryDao delegate;
+    private final CatalogEngine catalog;
+    private final CategoryAggregates aggregates;
+    private final ShoppingCartDao shoppingCartDao;
+
+    public CatalogCategoryDao(MySqlCategoryDao delegate, CatalogEngine catalog, CategoryAggregates aggregates,
+                              ShoppingCartDao shoppingCartDao)
+    {
+        this.delegate = delegate;
+        this.catalog = catalog;
+        this.aggregates = aggregates;
+        this.shoppingCartDao = shoppingCartDao;
+    }
+
+    @Override
+    public List<Category> getAllCategories()
+    {
+        return catalog.snapshot().getCategories();
+    }
+
+    @Override
+    public Category getById(int categoryId)
+    {
+        return catalog.snapshot().getCategory(categoryId);
+    }
+
+    // Kept up to date by CategoryAggregates, so no aggregate query runs.
+    @Override
+    public Map<Integer, CategoryStats> getStats()
+    {
+        catalog.snapshot(); // the figures are built when the catalog loads
+        return aggregates.getStats();
+    }
+
+    @Override
+    public Category create(Category category)
+    {
+        Category created = delegate.create(category);
+        catalog.categorySaved(created);
+        return created;
+    }
+
+    @Override
+    public void update(int categoryId, Category category)
+    {
+        delegate.update(categoryId, category);
+
+        Category stored = delegate.getById(categoryId);
+        if (stored != null) {
+            catalog.categorySaved(stored);
+        }
+    }
+
+    // Each committed chunk of products leaves the catalog and the carts at once, so no cart writes back a line
+    // whose product MySQL no longer has while the rest of the category is still being deleted.
+    @Override
+    public void delete(int categoryId)
+    {
+        try {
+            delegate.delete(categoryId, productIds -> {
+                catalog.productsDeleted(productIds);
+                shoppingCartDao.deleteShoppingCartItemsByProductIds(productIds);
+            });
+        } catch (IllegalStateException e) {
+            throw e; // refused before anything was deleted
+        } catch (RuntimeException e) {
+            // some chunks of products may already be gone
+            catalog.reload();
+            throw e;
+        }
+        catalog.categoryDeleted(categoryId);
+    }
+
+    @Override
+    public CategoryDeleteProgress getDeleteProgress(int categoryId)
+    {
+        return delegate.getDeleteProgress(categoryId);
+    }
+}
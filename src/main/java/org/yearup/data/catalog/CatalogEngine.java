@@ -0,0 +1,222 @@
+package org.yearup.data.catalog;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.yearup.data.mysql.MySqlCatalogLoader;
+import org.yearup.models.Category;
+import org.yearup.models.Product;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Owns the current CatalogSnapshot.
+ * Reads take the current snapshot without locking. Writes are serialized, build a new snapshot
+ * from the previous one plus the change, and publish it with a single volatile write.
+ * CatalogListeners are told about every change after it is published; once they all have been, the version
+ * counts as settled, and only then may data kept by listeners be cached under it (see isSettled).
+ */
+@Component
+public class CatalogEngine
+{
+    private final MySqlCatalogLoader loader;
+    private final List<CatalogListener> listeners;
+    private volatile CatalogSnapshot snapshot;
+    private volatile long settledVersion = Long.MIN_VALUE;
+
+    public CatalogEngine(MySqlCatalogLoader loader, List<CatalogListener> listeners)
+    {
+        this.loader = loader;
+        this.listeners = listeners;
+    }
+
+    /**
+     * Returns the current snapshot, loading it from the database on first use.
+     */
+    public CatalogSnapshot snapshot()
+    {
+        CatalogSnapshot current = snapshot;
+        if (current == null) {
+            synchronized (this) {
+                if (snapshot == null) {
+                    publishLoad();
+                }
+                current = snapshot;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * @return true if every listener has applied the changes up to the snapshot's version. Until then, data kept by
+     * listeners (e.g. CategoryAggregates) may still be older than the snapshot.
+     */
+    public boolean isSettled(CatalogSnapshot snapshot)
+    {
+        return settledVersion >= snapshot.getVersion();
+    }
+
+    // Build the catalog and its listeners' indexes at startup instead of on the first request.
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp()
+    {
+        try {
+            snapshot();
+        } catch (Exception e) {
+            System.err.println("ERROR: Could not load the catalog at startup, it will be loaded on first use: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Rebuilds the snapshot from the database.
+     * Runs periodically so that every application node converges on writes made by the others. A reload that finds
+     * the catalog unchanged keeps the current snapshot, so its version, and everything cached under it, stays valid.
+     */
+    @Scheduled(fixedDelayString = "${catalog.refresh-interval-ms:300000}", initialDelayString = "${catalog.refresh-interval-ms:300000}")
+    public synchronized void reload()
+    {
+        try {
+            publishLoad();
+        } catch (Exception e) {
+            System.err.println("ERROR: Failed to reload the catalog, keeping the previous snapshot: " + e.getMessage());
+        }
+    }
+
+    public synchronized void productSaved(Product product)
+    {
+        Product saved = copyOf(product);
+        Product before = snapshot().getProduct(saved.getProductId());
+        snapshot = snapshot.withProduct(saved);
+        listeners.forEach(listener -> listener.productChanged(before, saved));
+        settle();
+    }
+
+    // One new snapshot for the whole batch rather than one per product.
+    public synchronized void productsSaved(List<Product> products)
+    {
+        List<Product> saved = products.stream().map(CatalogEngine::copyOf).toList();
+        CatalogSnapshot previous = snapshot();
+        snapshot = previous.withProducts(saved);
+        List<Product> before = new ArrayList<>(saved.size());
+        for (Product product : saved) {
+            before.add(previous.getProduct(product.getProductId()));
+        }
+        listeners.forEach(listener -> listener.productsChanged(before, saved));
+        settle();
+    }
+
+    public synchronized void productDeleted(int productId)
+    {
+        Product before = snapshot().getProduct(productId);
+        if (before == null) {
+            return;
+        }
+        snapshot = snapshot.withoutProduct(productId);
+        listeners.forEach(listener -> listener.productChanged(before, null));
+        settle();
+    }
+
+    // One new snapshot for the whole batch rather than one per product.
+    public synchronized void productsDeleted(List<Integer> productIds)
+    {
+        CatalogSnapshot previous = snapshot();
+        snapshot = previous.withoutProducts(productIds);
+        List<Product> before = new ArrayList<>(productIds.size());
+        for (Integer productId : productIds) {
+            Product product = previous.getProduct(productId);
+            if (product != null) {
+                before.add(product);
+            }
+        }
+        deleted(before);
+        settle();
+    }
+
+    public synchronized void productsDeletedByCategory(int categoryId)
+    {
+        List<Product> removed = snapshot().getProductsByCategory(categoryId);
+        snapshot = snapshot.withoutCategoryProducts(categoryId);
+        deleted(removed);
+        settle();
+    }
+
+    private void deleted(List<Product> removed)
+    {
+        if (!removed.isEmpty()) {
+            List<Product> after = Collections.nCopies(removed.size(), null);
+            listeners.forEach(listener -> listener.productsChanged(removed, after));
+        }
+    }
+
+    public synchronized void categorySaved(Category category)
+    {
+        Category saved = copyOf(category);
+        Category before = snapshot().getCategory(saved.getCategoryId());
+        snapshot = snapshot.withCategory(saved);
+        listeners.forEach(listener -> listener.categoryChanged(before, saved));
+        settle();
+    }
+
+    public synchronized void categoryDeleted(int categoryId)
+    {
+        productsDeletedByCategory(categoryId);
+
+        Category before = snapshot.getCategory(categoryId);
+        if (before == null) {
+            return;
+        }
+        snapshot = snapshot.withoutCategory(categoryId);
+        listeners.forEach(listener -> listener.categoryChanged(before, null));
+        settle();
+    }
+
+    // Data kept by a listener changed without a catalog write, so responses cached for this version are stale.
+    @EventListener
+    public synchronized void categoryStatsCorrected(CategoryStatsCorrectedEvent event)
+    {
+        snapshot = snapshot().withNextVersion();
+        settle();
+    }
+
+    private void publishLoad()
+    {
+        List<Category> categories = loader.loadCategories();
+        List<Product> products = loader.loadProducts();
+        if (snapshot != null && snapshot.hasContents(categories, products)) {
+            System.out.println("DEBUG: Catalog reloaded unchanged, keeping version " + snapshot.getVersion() + ".");
+            return;
+        }
+
+        // Versions start from the clock so that they keep increasing across restarts, and a reload that finds
+        // changes, e.g. writes made on another node, always gets a new version.
+        long now = System.currentTimeMillis();
+        long version = snapshot == null ? now : Math.max(snapshot.getVersion() + 1, now);
+        long lastModified = snapshot == null ? now : Math.max(snapshot.getLastModified(), now);
+        CatalogSnapshot loaded = new CatalogSnapshot(categories, products, version, lastModified);
+        System.out.println("DEBUG: Catalog loaded with " + loaded.getCategories().size() + " categories and "
+                + loaded.getProducts().size() + " products.");
+        snapshot = loaded;
+        listeners.forEach(listener -> listener.catalogLoaded(loaded));
+        settle();
+    }
+
+    private void settle()
+    {
+        settledVersion = snapshot.getVersion();
+    }
+
+    // The caller keeps its own instance (e.g. the request body), so the snapshot stores a private copy.
+    private static Product copyOf(Product product)
+    {
+        return new Product(product.getProductId(), product.getName(), product.getPrice(), product.getCategoryId(),
+                product.getDescription(), product.getColor(), product.getStock(), product.isFeatured(), product.getImageUrl());
+    }
+
+    private static Category copyOf(Category category)
+    {
+        return new Category(category.getCategoryId(), category.getName(), category.getDescription(), category.getParentId());
+    }
+}
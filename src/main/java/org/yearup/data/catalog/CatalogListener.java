@@ -0,0 +1,52 @@
+package org.yearup.data.catalog;
+
+import org.yearup.models.Category;
+import org.yearup.models.Product;
+
+import java.util.List;
+
+/**
+ * Receives every change CatalogEngine applies, so that structures which are cheaper to
+ * maintain incrementally than to rebuild can follow the catalog.
+ * Callbacks run on the writing thread, one at a time, after the new snapshot has been published.
+ */
+public interface CatalogListener
+{
+    /**
+     * The whole catalog was (re)loaded from the database. Listeners should rebuild from the snapshot.
+     */
+    default void catalogLoaded(CatalogSnapshot snapshot)
+    {
+    }
+
+    /**
+     * A product was created, updated or deleted.
+     * @param before The product as it was, or null if it was just created.
+     * @param after The product as it is now, or null if it was deleted.
+     */
+    default void productChanged(Product before, Product after)
+    {
+    }
+
+    /**
+     * Several products were created, updated or deleted in one write. Listeners for which a batch is cheaper than
+     * the same changes one by one override this; by default each change goes to productChanged.
+     * @param before The products as they were, null for one just created.
+     * @param after The same products as they are now, in the same order, null for one deleted.
+     */
+    default void productsChanged(List<Product> before, List<Product> after)
+    {
+        for (int i = 0; i < before.size(); i++) {
+            productChanged(before.get(i), after.get(i));
+        }
+    }
+
+    /**
+     * A category was created, updated or deleted.
+     * @param before The category as it was, or null if it was just created.
+     * @param after The category as it is now, or null if it was deleted.
+     */
+    default void categoryChanged(Category before, Category after)
+    {
+    }
+}
@@ -0,0 +1,270 @@
+package org.yearup.data.catalog;
+
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+import org.yearup.data.ProductDao;
+import org.yearup.data.ProductFacets;
+import org.yearup.data.ProductFilter;
+import org.yearup.data.ProductPage;
+import org.yearup.data.ProductPageRequest;
+import org.yearup.data.PriceAdjustment;
+import org.yearup.data.mysql.MySqlProductDao;
+import org.yearup.models.Product;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * ProductDao that serves reads from the in-memory catalog and passes writes through to MySQL.
+ * Every successful write is applied to the catalog so the next read sees it.
+ */
+@Component
+@Primary
+public class CatalogProductDao implements ProductDao
+{
+    private final MySqlProductDao delegate;
+    private final CatalogEngine catalog;
+    private final ProductTextIndex textIndex;
+    private final ProductSearchCache searchCache;
+
+    public CatalogProductDao(MySqlProductDao delegate, CatalogEngine catalog, ProductTextIndex textIndex, ProductSearchCache searchCache)
+    {
+        this.delegate = delegate;
+        this.catalog = catalog;
+        this.textIndex = textIndex;
+        this.searchCache = searchCache;
+    }
+
+    @Override
+    public List<Product> search(Integer categoryId, BigDecimal minPrice, BigDecimal maxPrice, String color)
+    {
+        return search(new ProductFilter(categoryId, minPrice, maxPrice, color));
+    }
+
+    @Override
+    public List<Product> search(ProductFilter filter)
+    {
+        return searchCache.search(filter, () -> searchIndex(filter));
+    }
+
+    @Override
+    public ProductPage search(ProductFilter filter, ProductPageRequest page)
+    {
+        String pageKey = page.getSort() + "," + page.isDescending() + "," + page.getLimit() + ","
+                + (page.getAfter() == null ? "" : page.getAfter().encode());
+        return searchCache.page(filter, pageKey, () -> searchIndex(filter, page));
+    }
+
+    private List<Product> searchIndex(ProductFilter filter)
+    {
+        ProductSearchIndex index = catalog.snapshot().getSearchIndex();
+        if (filter.getQuery() == null) {
+            return index.search(filter);
+        }
+
+        List<Product> products = new ArrayList<>();
+        for (Ranked ranked : rank(index, filter)) {
+            products.add(ranked.product);
+        }
+        return products;
+    }
+
+    private ProductPage searchIndex(ProductFilter filter, ProductPageRequest page)
+    {
+        ProductSearchIndex index = catalog.snapshot().getSearchIndex();
+        if (filter.getQuery() == null) {
+            return index.page(filter, page);
+        }
+
+        List<Ranked> ranked = rank(index, filter);
+        if (page.getSort() != ProductPageRequest.Sort.RELEVANCE) {
+            return index.page(ordinals(ranked, index), page);
+        }
+
+        // ranked is already in relevance order: skip up to the cursor, then take one row more than the page
+        int start = 0;
+        ProductPageRequest.Cursor cursor = page.getAfter();
+        if (cursor != null) {
+            while (start < ranked.size() && !isAfter(ranked.get(start), cursor)) {
+                start++;
+            }
+        }
+        int end = page.getLimit() == null ? ranked.size() : (int) Math.min(ranked.size(), (long) start + page.getLimit());
+
+        List<Product> products = new ArrayList<>(end - start);
+        for (int i = start; i < end; i++) {
+            products.add(ranked.get(i).product);
+        }
+
+        String nextCursor = null;
+        if (end < ranked.size()) {
+            Ranked last = ranked.get(end - 1);
+            nextCursor = page.cursorAfter(last.product, last.score).encode();
+        }
+        return new ProductPage(products, nextCursor);
+    }
+
+    @Override
+    public ProductFacets facets(ProductFilter filter, List<BigDecimal> priceEdges)
+    {
+        ProductSearchIndex index = catalog.snapshot().getSearchIndex();
+        BitSet matches = filter.getQuery() == null ? index.match(filter) : ordinals(rank(index, filter), index);
+        return index.facets(matches, priceEdges);
+    }
+
+    // Exports read MySQL directly: the catalog may be up to one refresh interval behind other nodes' writes.
+    @Override
+    public void streamAll(Consumer<Product> consumer)
+    {
+        delegate.streamAll(consumer);
+    }
+
+    @Override
+    public List<Product> listByCategoryId(int categoryId)
+    {
+        return catalog.snapshot().getProductsByCategory(categoryId);
+    }
+
+    // Precomputed in the snapshot, so this is a lookup rather than a scan.
+    @Override
+    public List<Product> listFeatured(Integer categoryId)
+    {
+        CatalogSnapshot snapshot = catalog.snapshot();
+        return categoryId == null ? snapshot.getFeatured() : snapshot.getFeaturedByCategory(categoryId);
+    }
+
+    @Override
+    public Product getById(int productId)
+    {
+        return catalog.snapshot().getProduct(productId);
+    }
+
+    @Override
+    public List<Product> getByIds(List<Integer> productIds)
+    {
+        // one snapshot for every id, so the result is consistent even if a write lands meanwhile
+        CatalogSnapshot snapshot = catalog.snapshot();
+        List<Product> products = new ArrayList<>(productIds.size());
+        for (int productId : new LinkedHashSet<>(productIds)) {
+            Product product = snapshot.getProduct(productId);
+            if (product != null) {
+                products.add(product);
+            }
+        }
+        return products;
+    }
+
+    @Override
+    public Product create(Product product)
+    {
+        Product created = delegate.create(product);
+        if (created != null) {
+            catalog.productSaved(created);
+        }
+        return created;
+    }
+
+    @Override
+    public List<Product> createAll(List<Product> products)
+    {
+        List<Product> created = delegate.createAll(products);
+        if (!created.isEmpty()) {
+            catalog.productsSaved(created);
+        }
+        return created;
+    }
+
+    // The repriced rows are read back in one query and swapped into the catalog as one new snapshot,
+    // rather than one per product.
+    @Override
+    public List<Integer> adjustPrices(PriceAdjustment adjustment, int chunkSize)
+    {
+        List<Integer> adjusted;
+        try {
+            adjusted = delegate.adjustPrices(adjustment, chunkSize);
+        } catch (IllegalArgumentException e) {
+            throw e; // refused before anything changed
+        } catch (RuntimeException e) {
+            // the chunks committed before the failure are repriced
+            catalog.reload();
+            throw e;
+        }
+        if (!adjusted.isEmpty()) {
+            catalog.productsSaved(delegate.getByIds(adjusted));
+        }
+        return adjusted;
+    }
+
+    @Override
+    public void update(int productId, Product product)
+    {
+        delegate.update(productId, product);
+
+        // Re-read the row so the catalog holds exactly what MySQL stored.
+        Product stored = delegate.getById(productId);
+        if (stored != null) {
+            catalog.productSaved(stored);
+        } else {
+            catalog.productDeleted(productId);
+        }
+    }
+
+    @Override
+    public void delete(int productId)
+    {
+        delegate.delete(productId);
+        catalog.productDeleted(productId);
+    }
+
+    @Override
+    public void deleteProductsByCategoryId(int categoryId)
+    {
+        delegate.deleteProductsByCategoryId(categoryId);
+        catalog.productsDeletedByCategory(categoryId);
+    }
+
+    // The text matches that also pass the filter's other conditions, best first.
+    private List<Ranked> rank(ProductSearchIndex index, ProductFilter filter)
+    {
+        BitSet matches = index.match(filter);
+        List<Ranked> ranked = new ArrayList<>();
+        for (ProductTextIndex.Match match : textIndex.search(filter.getQuery())) {
+            int ordinal = index.ordinalOf(match.getProductId());
+            if (ordinal >= 0 && matches.get(ordinal)) {
+                ranked.add(new Ranked(ordinal, index.product(ordinal), match.getScore()));
+            }
+        }
+        return ranked;
+    }
+
+    private static BitSet ordinals(List<Ranked> ranked, ProductSearchIndex index)
+    {
+        BitSet ordinals = new BitSet(index.size());
+        ranked.forEach(match -> ordinals.set(match.ordinal));
+        return ordinals;
+    }
+
+    private static boolean isAfter(Ranked ranked, ProductPageRequest.Cursor cursor)
+    {
+        int comparison = Double.compare(cursor.getScore(), ranked.score);
+        return comparison > 0 || (comparison == 0 && ranked.product.getProductId() > cursor.getProductId());
+    }
+
+    private static final class Ranked
+    {
+        private final int ordinal;
+        private final Product product;
+        private final double score;
+
+        private Ranked(int ordinal, Product product, double score)
+        {
+            this.ordinal = ordinal;
+            this.product = product;
+            this.score = score;
+        }
+    }
+}
@@ -0,0 +1,352 @@
+package org.yearup.data.catalog;
+
+import org.yearup.models.Category;
+import org.yearup.models.Product;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An immutable, read-optimized view of the whole catalog.
+ * A snapshot is never changed after it is built; writers build a new one and swap it in.
+ * The Product and Category instances it hands out are shared between requests and must be treated as read-only.
+ * Every snapshot carries a version that is higher than that of the snapshot it replaced, which makes it a
+ * validator for HTTP caching: equal versions mean equal catalog contents. The content hash lets a reload that finds
+ * the same data keep the snapshot, and its version, instead of replacing it.
+ */
+public final class CatalogSnapshot
+{
+    private final List<Category> categories;
+    private final Map<Integer, Category> categoriesById;
+    private final Map<Integer, List<Integer>> childrenByCategory;
+    private final Map<Integer, List<Integer>> subtreeByCategory;
+    private final List<Product> products;
+    private final Map<Integer, Product> productsById;
+    private final Map<Integer, List<Product>> productsByCategory;
+    private final List<Product> featured;
+    private final Map<Integer, List<Product>> featuredByCategory;
+    private final ProductSearchIndex searchIndex;
+    private final long version;
+    private final long lastModified;
+    private volatile byte[] contentHash; // worked out on first use; reloads are the only callers
+
+    CatalogSnapshot(Collection<Category> categories, Collection<Product> products, long version, long lastModified)
+    {
+        List<Category> sortedCategories = new ArrayList<>(categories);
+        sortedCategories.sort(Comparator.comparingInt(Category::getCategoryId));
+
+        List<Product> sortedProducts = new ArrayList<>(products);
+        sortedProducts.sort(Comparator.comparingInt(Product::getProductId));
+
+        Map<Integer, Category> categoryIndex = new HashMap<>();
+        Map<Integer, List<Integer>> children = new HashMap<>();
+        for (Category category : sortedCategories) {
+            categoryIndex.put(category.getCategoryId(), category);
+            if (category.getParentId() != null) {
+                children.computeIfAbsent(category.getParentId(), id -> new ArrayList<>()).add(category.getCategoryId());
+            }
+        }
+        children.replaceAll((id, list) -> Collections.unmodifiableList(list));
+
+        // every category's subtree, worked out once here so a descendants query is a lookup
+        Map<Integer, List<Integer>> subtrees = new HashMap<>();
+        for (Category category : sortedCategories) {
+            subtrees.put(category.getCategoryId(), Collections.unmodifiableList(subtree(category.getCategoryId(), children)));
+        }
+
+        Map<Integer, Product> productIndex = new HashMap<>();
+        Map<Integer, List<Product>> categoryProducts = new HashMap<>();
+        List<Product> featuredProducts = new ArrayList<>();
+        Map<Integer, List<Product>> categoryFeatured = new HashMap<>();
+        for (Product product : sortedProducts) {
+            productIndex.put(product.getProductId(), product);
+            categoryProducts.computeIfAbsent(product.getCategoryId(), id -> new ArrayList<>()).add(product);
+            if (product.isFeatured()) {
+                featuredProducts.add(product);
+                categoryFeatured.computeIfAbsent(product.getCategoryId(), id -> new ArrayList<>()).add(product);
+            }
+        }
+        categoryProducts.replaceAll((id, list) -> Collections.unmodifiableList(list));
+        categoryFeatured.replaceAll((id, list) -> Collections.unmodifiableList(list));
+
+        this.categories = Collections.unmodifiableList(sortedCategories);
+        this.categoriesById = Collections.unmodifiableMap(categoryIndex);
+        this.childrenByCategory = Collections.unmodifiableMap(children);
+        this.subtreeByCategory = Collections.unmodifiableMap(subtrees);
+        this.products = Collections.unmodifiableList(sortedProducts);
+        this.productsById = Collections.unmodifiableMap(productIndex);
+        this.productsByCategory = Collections.unmodifiableMap(categoryProducts);
+        this.featured = Collections.unmodifiableList(featuredProducts);
+        this.featuredByCategory = Collections.unmodifiableMap(categoryFeatured);
+        this.searchIndex = new ProductSearchIndex(this.products, this.subtreeByCategory);
+        this.version = version;
+        this.lastModified = lastModified;
+    }
+
+    // The same contents under the next version, sharing every structure of this snapshot.
+    private CatalogSnapshot(CatalogSnapshot contents, long version, long lastModified)
+    {
+        this.categories = contents.categories;
+        this.categoriesById = contents.categoriesById;
+        this.childrenByCategory = contents.childrenByCategory;
+        this.subtreeByCategory = contents.subtreeByCategory;
+        this.products = contents.products;
+        this.productsById = contents.productsById;
+        this.productsByCategory = contents.productsByCategory;
+        this.featured = contents.featured;
+        this.featuredByCategory = contents.featuredByCategory;
+        this.searchIndex = contents.searchIndex;
+        this.version = version;
+        this.lastModified = lastModified;
+        this.contentHash = contents.contentHash;
+    }
+
+    public long getVersion()
+    {
+        return version;
+    }
+
+    /**
+     * @return when this snapshot was built, in epoch milliseconds.
+     */
+    public long getLastModified()
+    {
+        return lastModified;
+    }
+
+    /**
+     * @return a strong entity tag for any response computed from this snapshot.
+     */
+    public String getETag()
+    {
+        return "\"" + version + "\"";
+    }
+
+    /**
+     * @return true if the categories and products, in any order, are the ones this snapshot holds.
+     */
+    boolean hasContents(Collection<Category> categories, Collection<Product> products)
+    {
+        byte[] hash = contentHash;
+        if (hash == null) {
+            hash = contentHash(this.categories, this.products);
+            contentHash = hash;
+        }
+        return MessageDigest.isEqual(hash, contentHash(categories, products));
+    }
+
+    // SHA-256 over every field, in id order, each value length-prefixed so that no two different catalogs encode
+    // the same. Prices are compared by value, so 9.9 and 9.90 count as the same.
+    private static byte[] contentHash(Collection<Category> categories, Collection<Product> products)
+    {
+        List<Category> sortedCategories = new ArrayList<>(categories);
+        sortedCategories.sort(Comparator.comparingInt(Category::getCategoryId));
+        List<Product> sortedProducts = new ArrayList<>(products);
+        sortedProducts.sort(Comparator.comparingInt(Product::getProductId));
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(sortedCategories.size());
+            for (Category category : sortedCategories) {
+                out.writeInt(category.getCategoryId());
+                writeString(out, category.getName());
+                writeString(out, category.getDescription());
+                writeString(out, category.getParentId() == null ? null : category.getParentId().toString());
+                digest.update(bytes.toByteArray());
+                bytes.reset();
+            }
+            out.writeInt(sortedProducts.size());
+            for (Product product : sortedProducts) {
+                out.writeInt(product.getProductId());
+                writeString(out, product.getName());
+                writeString(out, product.getPrice() == null ? null : product.getPrice().stripTrailingZeros().toPlainString());
+                out.writeInt(product.getCategoryId());
+                writeString(out, product.getDescription());
+                writeString(out, product.getColor());
+                out.writeInt(product.getStock());
+                out.writeBoolean(product.isFeatured());
+                writeString(out, product.getImageUrl());
+                digest.update(bytes.toByteArray());
+                bytes.reset();
+            }
+            return digest.digest();
+        } catch (IOException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Could not hash the catalog", e);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException
+    {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(utf8.length);
+        out.write(utf8);
+    }
+
+    public List<Category> getCategories()
+    {
+        return categories;
+    }
+
+    public Category getCategory(int categoryId)
+    {
+        return categoriesById.get(categoryId);
+    }
+
+    /**
+     * @return the ids of the direct subcategories of a category, in id order, or an empty list.
+     */
+    public List<Integer> getChildren(int categoryId)
+    {
+        return childrenByCategory.getOrDefault(categoryId, List.of());
+    }
+
+    /**
+     * @return the category's id followed by the ids of all its subcategories, at any depth, parents before children.
+     */
+    public List<Integer> getSubtree(int categoryId)
+    {
+        return subtreeByCategory.getOrDefault(categoryId, List.of(categoryId));
+    }
+
+    /**
+     * @return every product, ordered by product id.
+     */
+    public List<Product> getProducts()
+    {
+        return products;
+    }
+
+    public Product getProduct(int productId)
+    {
+        return productsById.get(productId);
+    }
+
+    /**
+     * @return the products of one category ordered by product id, or an empty list.
+     */
+    public List<Product> getProductsByCategory(int categoryId)
+    {
+        return productsByCategory.getOrDefault(categoryId, List.of());
+    }
+
+    /**
+     * @return the featured products ordered by product id, worked out when the snapshot was built.
+     */
+    public List<Product> getFeatured()
+    {
+        return featured;
+    }
+
+    /**
+     * @return the featured products of one category ordered by product id, or an empty list.
+     */
+    public List<Product> getFeaturedByCategory(int categoryId)
+    {
+        return featuredByCategory.getOrDefault(categoryId, List.of());
+    }
+
+    public ProductSearchIndex getSearchIndex()
+    {
+        return searchIndex;
+    }
+
+    CatalogSnapshot withProduct(Product product)
+    {
+        return withProducts(List.of(product));
+    }
+
+    CatalogSnapshot withProducts(Collection<Product> saved)
+    {
+        Map<Integer, Product> changed = new HashMap<>(productsById);
+        for (Product product : saved) {
+            changed.put(product.getProductId(), product);
+        }
+        return new CatalogSnapshot(categories, changed.values(), version + 1, nextLastModified());
+    }
+
+    CatalogSnapshot withoutProduct(int productId)
+    {
+        return withoutProducts(List.of(productId));
+    }
+
+    CatalogSnapshot withoutProducts(Collection<Integer> productIds)
+    {
+        Map<Integer, Product> changed = new HashMap<>(productsById);
+        productIds.forEach(changed::remove);
+        return new CatalogSnapshot(categories, changed.values(), version + 1, nextLastModified());
+    }
+
+    CatalogSnapshot withoutCategoryProducts(int categoryId)
+    {
+        List<Product> remaining = new ArrayList<>(products);
+        remaining.removeIf(product -> product.getCategoryId() == categoryId);
+        return new CatalogSnapshot(categories, remaining, version + 1, nextLastModified());
+    }
+
+    CatalogSnapshot withNextVersion()
+    {
+        return new CatalogSnapshot(this, version + 1, nextLastModified());
+    }
+
+    CatalogSnapshot withCategory(Category category)
+    {
+        Map<Integer, Category> changed = new HashMap<>(categoriesById);
+        changed.put(category.getCategoryId(), category);
+        return new CatalogSnapshot(changed.values(), products, version + 1, nextLastModified());
+    }
+
+    CatalogSnapshot withoutCategory(int categoryId)
+    {
+        Map<Integer, Category> changed = new HashMap<>(categoriesById);
+        changed.remove(categoryId);
+        return new CatalogSnapshot(changed.values(), products, version + 1, nextLastModified());
+    }
+
+    // Depth-first from the root; a category seen twice (a cycle in bad data) is not followed again.
+    private static List<Integer> subtree(int root, Map<Integer, List<Integer>> children)
+    {
+        List<Integer> subtree = new ArrayList<>();
+        Set<Integer> seen = new HashSet<>();
+        Deque<Integer> pending = new ArrayDeque<>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            int categoryId = pending.pop();
+            if (!seen.add(categoryId)) {
+                continue;
+            }
+            subtree.add(categoryId);
+            List<Integer> direct = children.getOrDefault(categoryId, List.of());
+            for (int i = direct.size() - 1; i >= 0; i--) {
+                pending.push(direct.get(i));
+            }
+        }
+        return subtree;
+    }
+
+    // Last-Modified must not move backwards even if the clock does
+    private long nextLastModified()
+    {
+        return Math.max(lastModified, System.currentTimeMillis());
+    }
+}
@@ -0,0 +1,202 @@
+package org.yearup.data.catalog;
+
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.yearup.data.CategoryStats;
+import org.yearup.data.mysql.MySqlCatalogLoader;
+import org.yearup.models.Category;
+import org.yearup.models.Product;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Per-category product count, price range and in-stock count, kept up to date as products change
+ * instead of being recomputed with an aggregate query.
+ * Each category keeps how many of its products have each price, so the range stays exact when the cheapest
+ * or dearest product is deleted.
+ * The figures are periodically compared with a GROUP BY over MySQL; a category that has drifted
+ * (e.g. because of a write made outside this application) is rebuilt from its rows, and a
+ * CategoryStatsCorrectedEvent moves the catalog version on.
+ */
+@Component
+public class CategoryAggregates implements CatalogListener
+{
+    private final MySqlCatalogLoader loader;
+    private final ApplicationEventPublisher events;
+    private Map<Integer, Aggregate> aggregates = new HashMap<>();
+
+    // increases with every change, so a reconciliation can tell whether a write raced with its queries
+    private long changes;
+
+    public CategoryAggregates(MySqlCatalogLoader loader, ApplicationEventPublisher events)
+    {
+        this.loader = loader;
+        this.events = events;
+    }
+
+    private static final class Aggregate
+    {
+        private int productCount;
+        private int inStockCount;
+        private final TreeMap<BigDecimal, Integer> prices = new TreeMap<>();
+
+        private void add(Product product)
+        {
+            productCount++;
+            if (product.getStock() > 0) {
+                inStockCount++;
+            }
+            if (product.getPrice() != null) {
+                prices.merge(product.getPrice(), 1, Integer::sum);
+            }
+        }
+
+        private void remove(Product product)
+        {
+            productCount--;
+            if (product.getStock() > 0) {
+                inStockCount--;
+            }
+            if (product.getPrice() != null) {
+                prices.computeIfPresent(product.getPrice(), (price, count) -> count == 1 ? null : count - 1);
+            }
+        }
+
+        private CategoryStats toStats(int categoryId)
+        {
+            return new CategoryStats(categoryId, productCount,
+                    prices.isEmpty() ? null : prices.firstKey(),
+                    prices.isEmpty() ? null : prices.lastKey(),
+                    inStockCount);
+        }
+    }
+
+    /**
+     * @return the figures of every category that has products, by category id.
+     */
+    public synchronized Map<Integer, CategoryStats> getStats()
+    {
+        Map<Integer, CategoryStats> stats = new HashMap<>();
+        aggregates.forEach((categoryId, aggregate) -> stats.put(categoryId, aggregate.toStats(categoryId)));
+        return stats;
+    }
+
+    public synchronized CategoryStats getStats(int categoryId)
+    {
+        Aggregate aggregate = aggregates.get(categoryId);
+        return aggregate == null ? CategoryStats.empty(categoryId) : aggregate.toStats(categoryId);
+    }
+
+    @Override
+    public synchronized void catalogLoaded(CatalogSnapshot snapshot)
+    {
+        aggregates = build(snapshot.getProducts());
+        changes++;
+    }
+
+    @Override
+    public synchronized void productChanged(Product before, Product after)
+    {
+        if (before != null) {
+            Aggregate aggregate = aggregates.get(before.getCategoryId());
+            if (aggregate != null) {
+                aggregate.remove(before);
+                if (aggregate.productCount <= 0) {
+                    aggregates.remove(before.getCategoryId());
+                }
+            }
+        }
+        if (after != null) {
+            aggregates.computeIfAbsent(after.getCategoryId(), id -> new Aggregate()).add(after);
+        }
+        changes++;
+    }
+
+    @Override
+    public synchronized void categoryChanged(Category before, Category after)
+    {
+        if (after == null) {
+            aggregates.remove(before.getCategoryId());
+            changes++;
+        }
+    }
+
+    /**
+     * Compares the figures with MySQL and rebuilds the categories that differ.
+     * The queries run without holding the lock; if a product changes meanwhile, the result is discarded
+     * and the next run tries again.
+     */
+    @Scheduled(fixedDelayString = "${catalog.aggregates.reconcile-interval-ms:600000}",
+            initialDelayString = "${catalog.aggregates.reconcile-interval-ms:600000}")
+    public void reconcile()
+    {
+        try {
+            long started;
+            synchronized (this) {
+                started = changes;
+            }
+
+            Map<Integer, CategoryStats> stored = loader.loadCategoryStats();
+            Map<Integer, CategoryStats> current = getStats();
+
+            List<Integer> drifted = new ArrayList<>();
+            for (Map.Entry<Integer, CategoryStats> entry : stored.entrySet()) {
+                if (!entry.getValue().sameAs(current.get(entry.getKey()))) {
+                    drifted.add(entry.getKey());
+                }
+            }
+            for (Integer categoryId : current.keySet()) {
+                if (!stored.containsKey(categoryId)) {
+                    drifted.add(categoryId);
+                }
+            }
+            if (drifted.isEmpty()) {
+                return;
+            }
+
+            Map<Integer, Aggregate> rebuilt = new HashMap<>();
+            for (Integer categoryId : drifted) {
+                Aggregate aggregate = build(loader.loadProductsByCategory(categoryId)).get(categoryId);
+                rebuilt.put(categoryId, aggregate);
+            }
+
+            synchronized (this) {
+                if (changes != started) {
+                    System.out.println("DEBUG: Products changed during category reconciliation, retrying on the next run.");
+                    return;
+                }
+                for (Integer categoryId : drifted) {
+                    System.out.println("DEBUG: Category " + categoryId + " figures drifted from MySQL: had "
+                            + current.get(categoryId) + ", MySQL has " + stored.get(categoryId));
+                    Aggregate aggregate = rebuilt.get(categoryId);
+                    if (aggregate == null) {
+                        aggregates.remove(categoryId);
+                    } else {
+                        aggregates.put(categoryId, aggregate);
+                    }
+                }
+                changes++;
+            }
+            // outside the lock: the catalog takes its own lock, which it holds while it calls this listener
+            events.publishEvent(new CategoryStatsCorrectedEvent(drifted));
+        } catch (Exception e) {
+            System.err.println("ERROR: Failed to reconcile category figures with MySQL: " + e.getMessage());
+        }
+    }
+
+    private static Map<Integer, Aggregate> build(Collection<Product> products)
+    {
+        Map<Integer, Aggregate> built = new HashMap<>();
+        for (Product product : products) {
+            built.computeIfAbsent(product.getCategoryId(), id -> new Aggregate()).add(product);
+        }
+        return built;
+    }
+}
@@ -0,0 +1,22 @@
+package org.yearup.data.catalog;
+
+import java.util.List;
+
+/**
+ * Published when a reconciliation with MySQL corrected the figures of some categories, which no catalog write
+ * announced, so the catalog version has to move on for cached responses to pick them up.
+ */
+public final class CategoryStatsCorrectedEvent
+{
+    private final List<Integer> categoryIds;
+
+    public CategoryStatsCorrectedEvent(List<Integer> categoryIds)
+    {
+        this.categoryIds = List.copyOf(categoryIds);
+    }
+
+    public List<Integer> getCategoryIds()
+    {
+        return categoryIds;
+    }
+}
@@ -0,0 +1,242 @@
+package org.yearup.data.catalog;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.yearup.data.ProductFilter;
+import org.yearup.data.ProductPage;
+import org.yearup.models.Category;
+import org.yearup.models.Product;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * Caches search results by their normalized ProductFilter (plus the page, for paged searches).
+ * Caffeine evicts with W-TinyLFU, and entries are weighed by how many products they hold,
+ * so the bound is on products kept in memory rather than on the number of searches.
+ * A product change invalidates only the searches of the categories it left or entered, plus the searches
+ * that span every category or a whole category subtree; moving a category in the tree invalidates the subtree searches.
+ * This listener runs after the indexes it caches results of, so a search computed after an invalidation
+ * always sees the updated indexes.
+ */
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE)
+public class ProductSearchCache implements CatalogListener
+{
+    private final Cache<Key, Entry> cache;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    // Every change takes the next generation. An entry is current if it was started at or after the
+    // generation of the last change that could affect it.
+    private final AtomicLong generation = new AtomicLong();
+    private final Map<Integer, Long> categoryChangedAt = new ConcurrentHashMap<>();
+    private volatile long anyProductChangedAt;
+    private volatile long treeChangedAt;
+    private volatile long reloadedAt;
+
+    public ProductSearchCache(@Value("${catalog.search-cache.max-products:100000}") long maxProducts)
+    {
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxProducts)
+                .weigher((Key key, Entry entry) -> entry.weight)
+                .recordStats()
+                .build();
+    }
+
+    private static final class Key
+    {
+        private final ProductFilter filter;
+        private final String page;
+
+        private Key(ProductFilter filter, String page)
+        {
+            this.filter = filter;
+            this.page = page;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return filter.equals(key.filter) && Objects.equals(page, key.page);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(filter, page);
+        }
+    }
+
+    private static final class Entry
+    {
+        private final long generation;
+        private final Object value;
+        private final int weight;
+
+        private Entry(long generation, Object value, int weight)
+        {
+            this.generation = generation;
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * Hit and miss counts since startup, for monitoring.
+     */
+    public static final class Stats
+    {
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final long entries;
+
+        Stats(long hits, long misses, long evictions, long entries)
+        {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.entries = entries;
+        }
+
+        public long getHits()
+        {
+            return hits;
+        }
+
+        public long getMisses()
+        {
+            return misses;
+        }
+
+        public double getHitRate()
+        {
+            long requests = hits + misses;
+            return requests == 0 ? 0 : (double) hits / requests;
+        }
+
+        public long getEvictions()
+        {
+            return evictions;
+        }
+
+        public long getEntries()
+        {
+            return entries;
+        }
+    }
+
+    // The cached list is handed to every caller that asks for the same search, so nobody may change it.
+    public List<Product> search(ProductFilter filter, Supplier<List<Product>> search)
+    {
+        return get(new Key(filter, null), filter, () -> Collections.unmodifiableList(search.get()), List::size);
+    }
+
+    /**
+     * @param page Identifies the page within the search, e.g. the sort, limit and cursor.
+     */
+    public ProductPage page(ProductFilter filter, String page, Supplier<ProductPage> search)
+    {
+        return get(new Key(filter, page), filter, search, result -> result.getProducts().size());
+    }
+
+    public Stats stats()
+    {
+        return new Stats(hits.sum(), misses.sum(), cache.stats().evictionCount(), cache.estimatedSize());
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T get(Key key, ProductFilter filter, Supplier<T> search, ToIntFunction<T> size)
+    {
+        // read before searching: if a change lands meanwhile, the entry is already stale when stored
+        long started = generation.get();
+
+        Entry entry = cache.getIfPresent(key);
+        if (entry != null && isCurrent(entry, filter)) {
+            hits.increment();
+            return (T) entry.value;
+        }
+
+        misses.increment();
+        T result = search.get();
+        cache.put(key, new Entry(started, result, size.applyAsInt(result) + 1));
+        return result;
+    }
+
+    private boolean isCurrent(Entry entry, ProductFilter filter)
+    {
+        long changedAt = filter.getCategoryId() == null
+                ? anyProductChangedAt
+                : filter.isDescendants()
+                ? Math.max(anyProductChangedAt, treeChangedAt)
+                : categoryChangedAt.getOrDefault(filter.getCategoryId(), 0L);
+        return entry.generation >= reloadedAt && entry.generation >= changedAt;
+    }
+
+    @Override
+    public void catalogLoaded(CatalogSnapshot snapshot)
+    {
+        reloadedAt = generation.incrementAndGet();
+        cache.invalidateAll();
+    }
+
+    @Override
+    public void productChanged(Product before, Product after)
+    {
+        productsChanged(Collections.singletonList(before), Collections.singletonList(after));
+    }
+
+    // The whole batch takes one generation and one pass over the cache.
+    @Override
+    public void productsChanged(List<Product> before, List<Product> after)
+    {
+        if (before.isEmpty()) {
+            return;
+        }
+        Set<Integer> categories = new HashSet<>();
+        for (int i = 0; i < before.size(); i++) {
+            if (before.get(i) != null) categories.add(before.get(i).getCategoryId());
+            if (after.get(i) != null) categories.add(after.get(i).getCategoryId());
+        }
+
+        long changed = generation.incrementAndGet();
+        categories.forEach(category -> categoryChangedAt.put(category, changed));
+        anyProductChangedAt = changed;
+
+        // drop the affected entries now rather than waiting for eviction
+        cache.asMap().keySet().removeIf(key -> {
+            Integer category = key.filter.getCategoryId();
+            return category == null || key.filter.isDescendants() || categories.contains(category);
+        });
+    }
+
+    @Override
+    public void categoryChanged(Category before, Category after)
+    {
+        Integer beforeParent = before == null ? null : before.getParentId();
+        Integer afterParent = after == null ? null : after.getParentId();
+        if (Objects.equals(beforeParent, afterParent) && before != null && after != null) {
+            return;
+        }
+
+        treeChangedAt = generation.incrementAndGet();
+        cache.asMap().keySet().removeIf(key -> key.filter.isDescendants());
+    }
+}
@@ -0,0 +1,421 @@
+package org.yearup.data.catalog;
+
+import org.yearup.data.ProductFacets;
+import org.yearup.data.ProductFilter;
+import org.yearup.data.ProductPage;
+import org.yearup.data.ProductPageRequest;
+import org.yearup.models.Product;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Filter index over one CatalogSnapshot.
+ * Each product is addressed by its ordinal, its position in the snapshot's id-ordered product list.
+ * Because ordinals are dense, a plain BitSet per category and per color costs one bit per product,
+ * and filters are combined with word-wide ANDs. Prices are kept as cents in a sorted primitive array
+ * so a price range is two binary searches.
+ * Category and color are also kept as dictionary-encoded columns, so facet counts are one pass over the matches.
+ */
+public final class ProductSearchIndex
+{
+    private static final BitSet EMPTY = new BitSet();
+
+    private final List<Product> products;
+    private final Map<Integer, List<Integer>> subtrees;
+    private final Map<Integer, BitSet> byCategory = new HashMap<>();
+    private final Map<String, BitSet> byColor = new HashMap<>();
+    private final BitSet inStock = new BitSet();
+    private final BitSet featured = new BitSet();
+    private final BitSet hasPrice = new BitSet();
+
+    // category and color of every ordinal as a small code, plus the value behind each code
+    private final int[] categoryCodeByOrdinal;
+    private final int[] categoryIds;
+    private final int[] colorCodeByOrdinal;
+    private final String[] colorNames;
+
+    // price of every ordinal; every ordinal sorted by price (unpriced first), and the sorted prices of the priced ones
+    private final long[] priceCentsByOrdinal;
+    private final int[] ordinalsByPrice;
+    private final int firstPriced;
+    private final long[] sortedPriceCents;
+
+    // every ordinal sorted by name, case-insensitively like MySQL
+    private final int[] ordinalsByName;
+
+    ProductSearchIndex(List<Product> products)
+    {
+        this(products, Map.of());
+    }
+
+    /**
+     * @param subtrees Every category's own id plus its subcategories' ids, for filters that include descendants.
+     */
+    ProductSearchIndex(List<Product> products, Map<Integer, List<Integer>> subtrees)
+    {
+        this.products = products;
+        this.subtrees = subtrees;
+        this.priceCentsByOrdinal = new long[products.size()];
+
+        List<Integer> priced = new ArrayList<>();
+        List<Integer> unpriced = new ArrayList<>();
+        for (int ordinal = 0; ordinal < products.size(); ordinal++) {
+            Product product = products.get(ordinal);
+
+            byCategory.computeIfAbsent(product.getCategoryId(), id -> new BitSet()).set(ordinal);
+            String color = colorKey(product.getColor());
+            if (color != null) {
+                byColor.computeIfAbsent(color, key -> new BitSet()).set(ordinal);
+            }
+            if (product.getStock() > 0) {
+                inStock.set(ordinal);
+            }
+            if (product.isFeatured()) {
+                featured.set(ordinal);
+            }
+            if (product.getPrice() != null) {
+                priceCentsByOrdinal[ordinal] = toCents(product.getPrice(), RoundingMode.HALF_UP);
+                hasPrice.set(ordinal);
+                priced.add(ordinal);
+            } else {
+                unpriced.add(ordinal);
+            }
+        }
+
+        // List.sort is stable and ordinals are in id order, so ties stay ordered by id
+        priced.sort(Comparator.comparingLong(ordinal -> priceCentsByOrdinal[ordinal]));
+        this.firstPriced = unpriced.size();
+        this.ordinalsByPrice = IntStream.concat(unpriced.stream().mapToInt(Integer::intValue), priced.stream().mapToInt(Integer::intValue)).toArray();
+        this.sortedPriceCents = priced.stream().mapToLong(ordinal -> priceCentsByOrdinal[ordinal]).toArray();
+
+        this.categoryIds = byCategory.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+        this.categoryCodeByOrdinal = new int[products.size()];
+        for (int code = 0; code < categoryIds.length; code++) {
+            BitSet members = byCategory.get(categoryIds[code]);
+            for (int ordinal = members.nextSetBit(0); ordinal >= 0; ordinal = members.nextSetBit(ordinal + 1)) {
+                categoryCodeByOrdinal[ordinal] = code;
+            }
+        }
+
+        // a color is shown the way the lowest product id spells it
+        this.colorNames = new String[byColor.size()];
+        this.colorCodeByOrdinal = new int[products.size()];
+        Arrays.fill(colorCodeByOrdinal, -1);
+        int colorCode = 0;
+        for (BitSet members : byColor.values()) {
+            colorNames[colorCode] = products.get(members.nextSetBit(0)).getColor().trim();
+            for (int ordinal = members.nextSetBit(0); ordinal >= 0; ordinal = members.nextSetBit(ordinal + 1)) {
+                colorCodeByOrdinal[ordinal] = colorCode;
+            }
+            colorCode++;
+        }
+
+        this.ordinalsByName = IntStream.range(0, products.size()).boxed()
+                .sorted(Comparator.comparing((Integer ordinal) -> nameOf(ordinal), String.CASE_INSENSITIVE_ORDER))
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
+    public int size()
+    {
+        return products.size();
+    }
+
+    public Product product(int ordinal)
+    {
+        return products.get(ordinal);
+    }
+
+    /**
+     * @return the ordinal of the product with the given id, or -1 if it is not in the index.
+     */
+    public int ordinalOf(int productId)
+    {
+        int low = 0, high = products.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int id = products.get(mid).getProductId();
+            if (id < productId) low = mid + 1;
+            else if (id > productId) high = mid - 1;
+            else return mid;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the ordinals of every product matching the filter. The caller owns the returned set.
+     */
+    public BitSet match(ProductFilter filter)
+    {
+        BitSet result = new BitSet(products.size());
+        result.set(0, products.size());
+
+        if (filter.getCategoryId() != null && filter.isDescendants()) {
+            BitSet inSubtree = new BitSet(products.size());
+            for (int categoryId : subtrees.getOrDefault(filter.getCategoryId(), List.of(filter.getCategoryId()))) {
+                inSubtree.or(byCategory.getOrDefault(categoryId, EMPTY));
+            }
+            result.and(inSubtree);
+        } else if (filter.getCategoryId() != null) {
+            result.and(byCategory.getOrDefault(filter.getCategoryId(), EMPTY));
+        }
+        if (filter.getColor() != null) {
+            result.and(byColor.getOrDefault(colorKey(filter.getColor()), EMPTY));
+        }
+        if (filter.getInStock() != null) {
+            if (filter.getInStock()) result.and(inStock);
+            else result.andNot(inStock);
+        }
+        if (filter.getFeatured() != null) {
+            if (filter.getFeatured()) result.and(featured);
+            else result.andNot(featured);
+        }
+        if (filter.getMinPrice() != null || filter.getMaxPrice() != null) {
+            applyPriceRange(result, filter.getMinPrice(), filter.getMaxPrice());
+        }
+        return result;
+    }
+
+    public List<Product> search(ProductFilter filter)
+    {
+        BitSet matches = match(filter);
+        List<Product> result = new ArrayList<>(matches.cardinality());
+        for (int ordinal = matches.nextSetBit(0); ordinal >= 0; ordinal = matches.nextSetBit(ordinal + 1)) {
+            result.add(products.get(ordinal));
+        }
+        return result;
+    }
+
+    /**
+     * Returns one keyset page of the products matching the filter.
+     * The sort orders are precomputed, so a page is a binary search to the cursor
+     * followed by a walk that keeps the ordinals present in the filter bitmap.
+     */
+    public ProductPage page(ProductFilter filter, ProductPageRequest request)
+    {
+        return page(match(filter), request);
+    }
+
+    /**
+     * Returns one keyset page of the products whose ordinals are set in matches.
+     */
+    public ProductPage page(BitSet matches, ProductPageRequest request)
+    {
+        if (request.getSort() == ProductPageRequest.Sort.RELEVANCE) {
+            throw new IllegalArgumentException("Sorting by relevance needs a text query.");
+        }
+
+        Integer limit = request.getLimit();
+        int wanted = limit == null ? Integer.MAX_VALUE : limit + 1;
+        int step = request.isDescending() ? -1 : 1;
+
+        List<Product> rows = new ArrayList<>();
+        for (int position = startPosition(request); position >= 0 && position < products.size() && rows.size() < wanted; position += step) {
+            int ordinal = ordinalAt(request.getSort(), position);
+            if (matches.get(ordinal)) {
+                rows.add(products.get(ordinal));
+            }
+        }
+
+        if (limit == null || rows.size() <= limit) {
+            return new ProductPage(rows, null);
+        }
+        rows.remove(rows.size() - 1);
+        return new ProductPage(rows, request.cursorAfter(rows.get(rows.size() - 1)).encode());
+    }
+
+    /**
+     * Counts the products whose ordinals are set in matches by category, color and price bucket, in a single pass.
+     * @param priceEdges The lower bound of every price bucket, in ascending order.
+     */
+    public ProductFacets facets(BitSet matches, List<BigDecimal> priceEdges)
+    {
+        // price >= edge means price >= ceil(edge) in cents
+        long[] edges = priceEdges.stream().mapToLong(edge -> toCents(edge, RoundingMode.CEILING)).toArray();
+
+        int total = 0;
+        int[] categoryCounts = new int[categoryIds.length];
+        int[] colorCounts = new int[colorNames.length];
+        int[] priceCounts = new int[edges.length];
+
+        for (int ordinal = matches.nextSetBit(0); ordinal >= 0; ordinal = matches.nextSetBit(ordinal + 1)) {
+            total++;
+            categoryCounts[categoryCodeByOrdinal[ordinal]]++;
+            if (colorCodeByOrdinal[ordinal] >= 0) {
+                colorCounts[colorCodeByOrdinal[ordinal]]++;
+            }
+            if (hasPrice.get(ordinal)) {
+                int bucket = bucketOf(edges, priceCentsByOrdinal[ordinal]);
+                if (bucket >= 0) {
+                    priceCounts[bucket]++;
+                }
+            }
+        }
+
+        Map<Integer, Integer> categories = new LinkedHashMap<>();
+        for (int code = 0; code < categoryIds.length; code++) {
+            if (categoryCounts[code] > 0) {
+                categories.put(categoryIds[code], categoryCounts[code]);
+            }
+        }
+
+        List<Integer> colorCodes = new ArrayList<>();
+        for (int code = 0; code < colorNames.length; code++) {
+            if (colorCounts[code] > 0) {
+                colorCodes.add(code);
+            }
+        }
+        colorCodes.sort(Comparator.comparingInt((Integer code) -> -colorCounts[code])
+                .thenComparing(code -> colorNames[code], String.CASE_INSENSITIVE_ORDER));
+        Map<String, Integer> colors = new LinkedHashMap<>();
+        colorCodes.forEach(code -> colors.put(colorNames[code], colorCounts[code]));
+
+        List<ProductFacets.PriceBucket> prices = new ArrayList<>(edges.length);
+        for (int bucket = 0; bucket < edges.length; bucket++) {
+            BigDecimal max = bucket + 1 < edges.length ? priceEdges.get(bucket + 1) : null;
+            prices.add(new ProductFacets.PriceBucket(priceEdges.get(bucket), max, priceCounts[bucket]));
+        }
+
+        return new ProductFacets(total, categories, colors, prices);
+    }
+
+    // index of the last edge <= cents, or -1 when the price is below the first edge
+    private static int bucketOf(long[] edges, long cents)
+    {
+        int low = 0, high = edges.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (edges[mid] <= cents) low = mid + 1;
+            else high = mid;
+        }
+        return low - 1;
+    }
+
+    // Position, in ascending sort order, of the first row of the page.
+    private int startPosition(ProductPageRequest request)
+    {
+        ProductPageRequest.Cursor cursor = request.getAfter();
+        if (cursor == null) {
+            return request.isDescending() ? products.size() - 1 : 0;
+        }
+
+        // ascending: the first row after the cursor; descending: the last row before it
+        int low = 0, high = products.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int comparison = compareToCursor(ordinalAt(request.getSort(), mid), cursor);
+            if (comparison < 0 || (comparison == 0 && !request.isDescending())) low = mid + 1;
+            else high = mid;
+        }
+        return request.isDescending() ? low - 1 : low;
+    }
+
+    private int ordinalAt(ProductPageRequest.Sort sort, int position)
+    {
+        return switch (sort) {
+            case ID -> position;
+            case NAME -> ordinalsByName[position];
+            case PRICE -> ordinalsByPrice[position];
+            case RELEVANCE -> throw new IllegalArgumentException("Sorting by relevance needs a text query.");
+        };
+    }
+
+    private int compareToCursor(int ordinal, ProductPageRequest.Cursor cursor)
+    {
+        int comparison = switch (cursor.getSort()) {
+            case ID, RELEVANCE -> 0;
+            case NAME -> String.CASE_INSENSITIVE_ORDER.compare(nameOf(ordinal), cursor.getValue());
+            case PRICE -> products.get(ordinal).getPrice() == null
+                    ? -1
+                    : Long.compare(priceCentsByOrdinal[ordinal], toCents(cursor.getPrice(), RoundingMode.HALF_UP));
+        };
+        return comparison != 0 ? comparison : Integer.compare(products.get(ordinal).getProductId(), cursor.getProductId());
+    }
+
+    private String nameOf(int ordinal)
+    {
+        String name = products.get(ordinal).getName();
+        return name == null ? "" : name;
+    }
+
+    private void applyPriceRange(BitSet candidates, BigDecimal minPrice, BigDecimal maxPrice)
+    {
+        // price >= min means price >= ceil(min) in cents, price <= max means price <= floor(max)
+        long min = minPrice == null ? Long.MIN_VALUE : toCents(minPrice, RoundingMode.CEILING);
+        long max = maxPrice == null ? Long.MAX_VALUE : toCents(maxPrice, RoundingMode.FLOOR);
+
+        int from = lowerBound(min);
+        int to = upperBound(max);
+        int rangeSize = Math.max(0, to - from);
+
+        // Walk whichever side is smaller: the surviving candidates, or the slice of the price array.
+        int candidateCount = candidates.cardinality();
+        if (candidateCount <= rangeSize) {
+            for (int ordinal = candidates.nextSetBit(0); ordinal >= 0; ordinal = candidates.nextSetBit(ordinal + 1)) {
+                long price = priceCentsByOrdinal[ordinal];
+                if (products.get(ordinal).getPrice() == null || price < min || price > max) {
+                    candidates.clear(ordinal);
+                }
+            }
+        } else {
+            BitSet inRange = new BitSet(products.size());
+            for (int i = from; i < to; i++) {
+                inRange.set(ordinalsByPrice[firstPriced + i]);
+            }
+            candidates.and(inRange);
+        }
+    }
+
+    // first index whose price is >= cents
+    private int lowerBound(long cents)
+    {
+        int low = 0, high = sortedPriceCents.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sortedPriceCents[mid] < cents) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    // first index whose price is > cents
+    private int upperBound(long cents)
+    {
+        int low = 0, high = sortedPriceCents.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sortedPriceCents[mid] <= cents) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    static long toCents(BigDecimal price, RoundingMode roundingMode)
+    {
+        BigDecimal cents = price.movePointRight(2).setScale(0, roundingMode);
+        // clamp absurd filter values instead of overflowing
+        if (cents.compareTo(BigDecimal.valueOf(Long.MAX_VALUE)) > 0) return Long.MAX_VALUE;
+        if (cents.compareTo(BigDecimal.valueOf(Long.MIN_VALUE)) < 0) return Long.MIN_VALUE;
+        return cents.longValue();
+    }
+
+    // MySQL compares colors case-insensitively, so the index does too.
+    static String colorKey(String color)
+    {
+        if (color == null || color.trim().isEmpty()) {
+            return null;
+        }
+        return color.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,433 @@
+package org.yearup.data.catalog;
+
+import org.springframework.stereotype.Component;
+import org.yearup.data.mysql.MySqlCatalogLoader;
+import org.yearup.models.Category;
+import org.yearup.models.Product;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Typeahead over product and category names, served from a prefix trie.
+ * A name can be completed from the start of any of its words, so "lam" finds "Desk Lamp".
+ * Every trie node keeps its best MAX_SUGGESTIONS completions, so a lookup is one walk down the prefix
+ * and never visits the subtree below it. Completions are ranked by popularity: units ordered for a product,
+ * and units ordered across its products for a category.
+ * The trie is built when the catalog loads and is then patched one name at a time as products and categories change;
+ * only the nodes on the changed names' paths recompute their best completions.
+ */
+@Component
+public class ProductSuggester implements CatalogListener
+{
+    public static final int MAX_SUGGESTIONS = 10;
+
+    private static final char[] NO_LABELS = new char[0];
+    private static final Node[] NO_CHILDREN = new Node[0];
+    private static final Suggestion[] NO_SUGGESTIONS = new Suggestion[0];
+
+    private static final Comparator<Suggestion> RANKING = Comparator
+            .comparingLong(Suggestion::getPopularity).reversed()
+            .thenComparingInt(suggestion -> suggestion.getText().length())
+            .thenComparing(Suggestion::getText, String.CASE_INSENSITIVE_ORDER)
+            .thenComparing(Suggestion::getType)
+            .thenComparingInt(Suggestion::getId);
+
+    private final MySqlCatalogLoader loader;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Node root = new Node();
+    private Map<Integer, Suggestion> products = new HashMap<>();
+    private Map<Integer, Suggestion> categories = new HashMap<>();
+    private Map<Integer, Long> unitsSold = new HashMap<>();
+    private Map<Integer, Long> categoryUnitsSold = new HashMap<>();
+
+    public ProductSuggester(MySqlCatalogLoader loader)
+    {
+        this.loader = loader;
+    }
+
+    /**
+     * A product or category name that completes what the user typed.
+     */
+    public static final class Suggestion
+    {
+        public static final String PRODUCT = "product";
+        public static final String CATEGORY = "category";
+
+        private final String type;
+        private final int id;
+        private final String text;
+        private final long popularity;
+
+        Suggestion(String type, int id, String text, long popularity)
+        {
+            this.type = type;
+            this.id = id;
+            this.text = text;
+            this.popularity = popularity;
+        }
+
+        public String getType()
+        {
+            return type;
+        }
+
+        public int getId()
+        {
+            return id;
+        }
+
+        public String getText()
+        {
+            return text;
+        }
+
+        public long getPopularity()
+        {
+            return popularity;
+        }
+    }
+
+    // Children are kept in two parallel arrays sorted by label, which is much smaller than a map per node.
+    private static final class Node
+    {
+        private char[] labels = NO_LABELS;
+        private Node[] children = NO_CHILDREN;
+        private List<Suggestion> completions;
+        private Suggestion[] best = NO_SUGGESTIONS;
+
+        private Node child(char label)
+        {
+            int index = Arrays.binarySearch(labels, label);
+            return index < 0 ? null : children[index];
+        }
+
+        private Node addChild(char label)
+        {
+            int index = Arrays.binarySearch(labels, label);
+            if (index >= 0) {
+                return children[index];
+            }
+            int at = -index - 1;
+            char[] newLabels = new char[labels.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(labels, 0, newLabels, 0, at);
+            System.arraycopy(children, 0, newChildren, 0, at);
+            newLabels[at] = label;
+            newChildren[at] = new Node();
+            System.arraycopy(labels, at, newLabels, at + 1, labels.length - at);
+            System.arraycopy(children, at, newChildren, at + 1, children.length - at);
+            labels = newLabels;
+            children = newChildren;
+            return newChildren[at];
+        }
+
+        private void removeChild(char label)
+        {
+            int at = Arrays.binarySearch(labels, label);
+            if (at < 0) {
+                return;
+            }
+            char[] newLabels = new char[labels.length - 1];
+            Node[] newChildren = new Node[children.length - 1];
+            System.arraycopy(labels, 0, newLabels, 0, at);
+            System.arraycopy(children, 0, newChildren, 0, at);
+            System.arraycopy(labels, at + 1, newLabels, at, labels.length - at - 1);
+            System.arraycopy(children, at + 1, newChildren, at, children.length - at - 1);
+            labels = newLabels;
+            children = newChildren;
+        }
+
+        private boolean isEmpty()
+        {
+            return labels.length == 0 && (completions == null || completions.isEmpty());
+        }
+
+        // the best completions of this node are the best of its own and of its children's best
+        private void rank()
+        {
+            List<Suggestion> candidates = new ArrayList<>();
+            if (completions != null) {
+                candidates.addAll(completions);
+            }
+            for (Node child : children) {
+                candidates.addAll(Arrays.asList(child.best));
+            }
+            candidates.sort(RANKING);
+
+            List<Suggestion> ranked = new ArrayList<>(Math.min(candidates.size(), MAX_SUGGESTIONS));
+            for (Suggestion candidate : candidates) {
+                // a name reachable from several of its words is still one suggestion
+                if (ranked.size() == MAX_SUGGESTIONS) {
+                    break;
+                }
+                if (!containsSame(ranked, candidate)) {
+                    ranked.add(candidate);
+                }
+            }
+            best = ranked.toArray(NO_SUGGESTIONS);
+        }
+    }
+
+    /**
+     * Returns the most popular product and category names that complete the prefix, best first.
+     * @param limit At most this many suggestions, capped at MAX_SUGGESTIONS.
+     */
+    public List<Suggestion> suggest(String prefix, int limit)
+    {
+        String key = normalize(prefix);
+        if (key.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            Node node = root;
+            for (int i = 0; i < key.length() && node != null; i++) {
+                node = node.child(key.charAt(i));
+            }
+            if (node == null) {
+                return List.of();
+            }
+            return List.of(Arrays.copyOf(node.best, Math.min(limit, node.best.length)));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void catalogLoaded(CatalogSnapshot snapshot)
+    {
+        Map<Integer, Long> loadedUnitsSold;
+        try {
+            loadedUnitsSold = loader.loadUnitsSold();
+        } catch (Exception e) {
+            System.err.println("ERROR: Could not load units sold for suggestions, keeping the previous counts: " + e.getMessage());
+            loadedUnitsSold = unitsSold;
+        }
+
+        // build everything aside and swap it in, so lookups keep using the old trie meanwhile
+        Map<Integer, Long> loadedCategoryUnitsSold = new HashMap<>();
+        for (Product product : snapshot.getProducts()) {
+            loadedCategoryUnitsSold.merge(product.getCategoryId(), loadedUnitsSold.getOrDefault(product.getProductId(), 0L), Long::sum);
+        }
+
+        Node loadedRoot = new Node();
+        Map<Integer, Suggestion> loadedProducts = new HashMap<>();
+        Map<Integer, Suggestion> loadedCategories = new HashMap<>();
+        for (Product product : snapshot.getProducts()) {
+            Suggestion suggestion = new Suggestion(Suggestion.PRODUCT, product.getProductId(), product.getName(),
+                    loadedUnitsSold.getOrDefault(product.getProductId(), 0L));
+            loadedProducts.put(product.getProductId(), suggestion);
+            add(loadedRoot, suggestion);
+        }
+        for (Category category : snapshot.getCategories()) {
+            Suggestion suggestion = new Suggestion(Suggestion.CATEGORY, category.getCategoryId(), category.getName(),
+                    loadedCategoryUnitsSold.getOrDefault(category.getCategoryId(), 0L));
+            loadedCategories.put(category.getCategoryId(), suggestion);
+            add(loadedRoot, suggestion);
+        }
+        // ranking once at the end is far cheaper than re-ranking every path on every insert
+        rankAll(loadedRoot);
+
+        lock.writeLock().lock();
+        try {
+            root = loadedRoot;
+            products = loadedProducts;
+            categories = loadedCategories;
+            unitsSold = loadedUnitsSold;
+            categoryUnitsSold = loadedCategoryUnitsSold;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void productChanged(Product before, Product after)
+    {
+        lock.writeLock().lock();
+        try {
+            int productId = before != null ? before.getProductId() : after.getProductId();
+            long sold = unitsSold.getOrDefault(productId, 0L);
+
+            Suggestion previous = products.remove(productId);
+            if (previous != null) {
+                remove(root, previous);
+            }
+            if (after != null) {
+                Suggestion suggestion = new Suggestion(Suggestion.PRODUCT, productId, after.getName(), sold);
+                products.put(productId, suggestion);
+                insert(root, suggestion);
+            }
+
+            // a product that has sold carries its sales to the category it is now in
+            Integer beforeCategory = before == null ? null : before.getCategoryId();
+            Integer afterCategory = after == null ? null : after.getCategoryId();
+            if (sold > 0 && !Objects.equals(beforeCategory, afterCategory)) {
+                if (beforeCategory != null) rerankCategory(beforeCategory, -sold);
+                if (afterCategory != null) rerankCategory(afterCategory, sold);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void categoryChanged(Category before, Category after)
+    {
+        lock.writeLock().lock();
+        try {
+            int categoryId = before != null ? before.getCategoryId() : after.getCategoryId();
+
+            Suggestion previous = categories.remove(categoryId);
+            if (previous != null) {
+                remove(root, previous);
+            }
+            if (after != null) {
+                Suggestion suggestion = new Suggestion(Suggestion.CATEGORY, categoryId, after.getName(),
+                        categoryUnitsSold.getOrDefault(categoryId, 0L));
+                categories.put(categoryId, suggestion);
+                insert(root, suggestion);
+            } else {
+                categoryUnitsSold.remove(categoryId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void rerankCategory(int categoryId, long soldDelta)
+    {
+        long sold = categoryUnitsSold.merge(categoryId, soldDelta, Long::sum);
+        Suggestion previous = categories.get(categoryId);
+        if (previous == null) {
+            return;
+        }
+        remove(root, previous);
+        Suggestion suggestion = new Suggestion(Suggestion.CATEGORY, categoryId, previous.getText(), sold);
+        categories.put(categoryId, suggestion);
+        insert(root, suggestion);
+    }
+
+    private static void insert(Node root, Suggestion suggestion)
+    {
+        for (String key : keys(suggestion.getText())) {
+            rankPath(add(root, key, suggestion));
+        }
+    }
+
+    // adds the suggestion without ranking; the caller ranks afterwards
+    private static void add(Node root, Suggestion suggestion)
+    {
+        for (String key : keys(suggestion.getText())) {
+            add(root, key, suggestion);
+        }
+    }
+
+    private static Node[] add(Node root, String key, Suggestion suggestion)
+    {
+        Node[] path = new Node[key.length() + 1];
+        path[0] = root;
+        for (int i = 0; i < key.length(); i++) {
+            path[i + 1] = path[i].addChild(key.charAt(i));
+        }
+
+        Node last = path[key.length()];
+        if (last.completions == null) {
+            last.completions = new ArrayList<>(1);
+        }
+        last.completions.add(suggestion);
+        return path;
+    }
+
+    private static void remove(Node root, Suggestion suggestion)
+    {
+        for (String key : keys(suggestion.getText())) {
+            Node[] path = new Node[key.length() + 1];
+            path[0] = root;
+            for (int i = 0; i < key.length() && path[i] != null; i++) {
+                path[i + 1] = path[i].child(key.charAt(i));
+            }
+
+            Node last = path[key.length()];
+            if (last == null || last.completions == null) {
+                continue;
+            }
+            last.completions.removeIf(completion -> completion == suggestion);
+
+            // prune the nodes that no longer lead anywhere
+            for (int i = key.length(); i > 0 && path[i].isEmpty(); i--) {
+                path[i - 1].removeChild(key.charAt(i - 1));
+                path[i] = null;
+            }
+            rankPath(path);
+        }
+    }
+
+    private static void rankAll(Node node)
+    {
+        for (Node child : node.children) {
+            rankAll(child);
+        }
+        node.rank();
+    }
+
+    private static void rankPath(Node[] path)
+    {
+        for (int i = path.length - 1; i >= 0; i--) {
+            if (path[i] != null) {
+                path[i].rank();
+            }
+        }
+    }
+
+    // the whole normalized name, plus the rest of it from the start of each later word
+    static List<String> keys(String text)
+    {
+        String name = normalize(text);
+        List<String> keys = new ArrayList<>();
+        if (name.isEmpty()) {
+            return keys;
+        }
+        keys.add(name);
+        for (int i = 1; i < name.length(); i++) {
+            if (isWordChar(name.charAt(i)) && !isWordChar(name.charAt(i - 1))) {
+                String key = name.substring(i);
+                if (!keys.contains(key)) {
+                    keys.add(key);
+                }
+            }
+        }
+        return keys;
+    }
+
+    static String normalize(String text)
+    {
+        if (text == null) {
+            return "";
+        }
+        return TextAnalyzer.fold(text).trim().replaceAll("\\s+", " ");
+    }
+
+    private static boolean isWordChar(char c)
+    {
+        return Character.isLetterOrDigit(c);
+    }
+
+    private static boolean containsSame(List<Suggestion> suggestions, Suggestion suggestion)
+    {
+        for (Suggestion existing : suggestions) {
+            if (existing == suggestion) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
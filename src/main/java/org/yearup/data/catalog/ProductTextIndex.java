@@ -0,0 +1,299 @@
+package org.yearup.data.catalog;
+
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.yearup.models.Product;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Inverted index over product names and descriptions, ranked with BM25F.
+ * Each term keeps the positions where it occurs in every product's name and description,
+ * which is enough for both term frequencies and phrase matching.
+ * The index is built when the catalog loads and is then patched one product at a time as products change.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class ProductTextIndex implements CatalogListener
+{
+    // BM25 saturation and length normalization, plus how much a name hit is worth compared to a description hit
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final double NAME_WEIGHT = 3.0;
+    private static final double DESCRIPTION_WEIGHT = 1.0;
+
+    // multipliers for products that contain the whole query as a phrase
+    private static final double NAME_PHRASE_BOOST = 2.0;
+    private static final double DESCRIPTION_PHRASE_BOOST = 1.5;
+
+    private static final int[] NO_POSITIONS = new int[0];
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Map<String, Map<Integer, Posting>> postings = new HashMap<>();
+    private Map<Integer, Document> documents = new HashMap<>();
+    private long nameLengthTotal;
+    private long descriptionLengthTotal;
+
+    /**
+     * A product id and how well it matched a query.
+     */
+    public static final class Match
+    {
+        private final int productId;
+        private final double score;
+
+        Match(int productId, double score)
+        {
+            this.productId = productId;
+            this.score = score;
+        }
+
+        public int getProductId()
+        {
+            return productId;
+        }
+
+        public double getScore()
+        {
+            return score;
+        }
+    }
+
+    private static final class Posting
+    {
+        private final int[] namePositions;
+        private final int[] descriptionPositions;
+
+        private Posting(int[] namePositions, int[] descriptionPositions)
+        {
+            this.namePositions = namePositions;
+            this.descriptionPositions = descriptionPositions;
+        }
+    }
+
+    private static final class Document
+    {
+        private final int nameLength;
+        private final int descriptionLength;
+        private final Set<String> terms;
+
+        private Document(int nameLength, int descriptionLength, Set<String> terms)
+        {
+            this.nameLength = nameLength;
+            this.descriptionLength = descriptionLength;
+            this.terms = terms;
+        }
+    }
+
+    @Override
+    public void catalogLoaded(CatalogSnapshot snapshot)
+    {
+        // Build the replacement off to the side so searches keep using the old index meanwhile.
+        ProductTextIndex rebuilt = new ProductTextIndex();
+        for (Product product : snapshot.getProducts()) {
+            rebuilt.add(product);
+        }
+
+        lock.writeLock().lock();
+        try {
+            postings = rebuilt.postings;
+            documents = rebuilt.documents;
+            nameLengthTotal = rebuilt.nameLengthTotal;
+            descriptionLengthTotal = rebuilt.descriptionLengthTotal;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void productChanged(Product before, Product after)
+    {
+        lock.writeLock().lock();
+        try {
+            if (before != null) {
+                remove(before.getProductId());
+            }
+            if (after != null) {
+                add(after);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the products matching any term of the query, best match first (ties by product id).
+     * Products containing the whole query as a phrase are boosted.
+     */
+    public List<Match> search(String query)
+    {
+        List<String> terms = TextAnalyzer.queryTerms(query);
+        List<String> phrase = phraseTerms(query);
+        if (terms.isEmpty()) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            int documentCount = documents.size();
+            if (documentCount == 0) {
+                return List.of();
+            }
+            double averageNameLength = Math.max(1.0, (double) nameLengthTotal / documentCount);
+            double averageDescriptionLength = Math.max(1.0, (double) descriptionLengthTotal / documentCount);
+
+            Map<Integer, Double> scores = new HashMap<>();
+            for (String term : terms) {
+                Map<Integer, Posting> termPostings = postings.get(term);
+                if (termPostings == null) {
+                    continue;
+                }
+
+                double documentFrequency = termPostings.size();
+                double idf = Math.log(1 + (documentCount - documentFrequency + 0.5) / (documentFrequency + 0.5));
+
+                for (Map.Entry<Integer, Posting> entry : termPostings.entrySet()) {
+                    Document document = documents.get(entry.getKey());
+                    Posting posting = entry.getValue();
+
+                    // BM25F: length-normalize and weight each field's frequency, then saturate the sum once
+                    double frequency =
+                            NAME_WEIGHT * posting.namePositions.length / (1 - B + B * document.nameLength / averageNameLength)
+                            + DESCRIPTION_WEIGHT * posting.descriptionPositions.length / (1 - B + B * document.descriptionLength / averageDescriptionLength);
+                    double score = idf * frequency * (K1 + 1) / (frequency + K1);
+
+                    scores.merge(entry.getKey(), score, Double::sum);
+                }
+            }
+
+            List<Match> matches = new ArrayList<>(scores.size());
+            for (Map.Entry<Integer, Double> entry : scores.entrySet()) {
+                double score = entry.getValue();
+                if (phrase.size() > 1) {
+                    if (containsPhrase(entry.getKey(), phrase, true)) score *= NAME_PHRASE_BOOST;
+                    else if (containsPhrase(entry.getKey(), phrase, false)) score *= DESCRIPTION_PHRASE_BOOST;
+                }
+                matches.add(new Match(entry.getKey(), score));
+            }
+
+            matches.sort((a, b) -> a.score != b.score
+                    ? Double.compare(b.score, a.score)
+                    : Integer.compare(a.productId, b.productId));
+            return matches;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // The query terms in order, with stop words kept as null gaps ("case for phone" must not match "phone case").
+    private static List<String> phraseTerms(String query)
+    {
+        List<String> phrase = new ArrayList<>(TextAnalyzer.analyze(query));
+        while (!phrase.isEmpty() && phrase.get(0) == null) phrase.remove(0);
+        while (!phrase.isEmpty() && phrase.get(phrase.size() - 1) == null) phrase.remove(phrase.size() - 1);
+        return phrase;
+    }
+
+    private boolean containsPhrase(int productId, List<String> phrase, boolean inName)
+    {
+        int[] starts = positions(phrase.get(0), productId, inName);
+        for (int start : starts) {
+            boolean matched = true;
+            for (int offset = 1; offset < phrase.size() && matched; offset++) {
+                String term = phrase.get(offset);
+                if (term != null) {
+                    matched = contains(positions(term, productId, inName), start + offset);
+                }
+            }
+            if (matched) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int[] positions(String term, int productId, boolean inName)
+    {
+        Map<Integer, Posting> termPostings = postings.get(term);
+        Posting posting = termPostings == null ? null : termPostings.get(productId);
+        if (posting == null) {
+            return NO_POSITIONS;
+        }
+        return inName ? posting.namePositions : posting.descriptionPositions;
+    }
+
+    private static boolean contains(int[] sortedPositions, int position)
+    {
+        return Arrays.binarySearch(sortedPositions, position) >= 0;
+    }
+
+    // callers hold the write lock, or own the instance
+    private void add(Product product)
+    {
+        List<String> name = TextAnalyzer.analyze(product.getName());
+        List<String> description = TextAnalyzer.analyze(product.getDescription());
+
+        Map<String, List<Integer>> namePositions = positionsByTerm(name);
+        Map<String, List<Integer>> descriptionPositions = positionsByTerm(description);
+
+        Set<String> terms = new HashSet<>(namePositions.keySet());
+        terms.addAll(descriptionPositions.keySet());
+
+        for (String term : terms) {
+            Posting posting = new Posting(
+                    toArray(namePositions.get(term)),
+                    toArray(descriptionPositions.get(term)));
+            postings.computeIfAbsent(term, key -> new HashMap<>()).put(product.getProductId(), posting);
+        }
+
+        documents.put(product.getProductId(), new Document(name.size(), description.size(), terms));
+        nameLengthTotal += name.size();
+        descriptionLengthTotal += description.size();
+    }
+
+    private void remove(int productId)
+    {
+        Document document = documents.remove(productId);
+        if (document == null) {
+            return;
+        }
+
+        for (String term : document.terms) {
+            Map<Integer, Posting> termPostings = postings.get(term);
+            if (termPostings != null) {
+                termPostings.remove(productId);
+                if (termPostings.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+        nameLengthTotal -= document.nameLength;
+        descriptionLengthTotal -= document.descriptionLength;
+    }
+
+    private static Map<String, List<Integer>> positionsByTerm(List<String> terms)
+    {
+        Map<String, List<Integer>> positions = new HashMap<>();
+        for (int position = 0; position < terms.size(); position++) {
+            String term = terms.get(position);
+            if (term != null) {
+                positions.computeIfAbsent(term, key -> new ArrayList<>()).add(position);
+            }
+        }
+        return positions;
+    }
+
+    private static int[] toArray(List<Integer> positions)
+    {
+        return positions == null ? NO_POSITIONS : positions.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
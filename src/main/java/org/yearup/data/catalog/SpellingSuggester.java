@@ -0,0 +1,272 @@
+package org.yearup.data.catalog;
+
+import org.springframework.stereotype.Component;
+import org.yearup.models.Product;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * "Did you mean" corrections for search words, using symmetric delete spelling correction.
+ * The vocabulary is every word of the product names and colors, weighted by how many products use it.
+ * Each word is indexed under every variant with up to MAX_EDIT_DISTANCE characters deleted, so a misspelling is
+ * looked up by generating its own deletes: two words within the edit distance always share a delete.
+ * Only the first PREFIX_LENGTH characters are used for the deletes, which keeps the index small; candidates are
+ * then checked against the whole word.
+ * The vocabulary is built when the catalog loads and is then adjusted one product at a time as products change.
+ */
+@Component
+public class SpellingSuggester implements CatalogListener
+{
+    static final int MAX_EDIT_DISTANCE = 2;
+    static final int PREFIX_LENGTH = 7;
+
+    // words this short have too many neighbours for a correction to mean anything
+    private static final int MIN_WORD_LENGTH = 3;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Map<String, Integer> wordCounts = new HashMap<>();
+    private Map<String, Integer> stemCounts = new HashMap<>();
+    private Map<String, Set<String>> deletes = new HashMap<>();
+
+    /**
+     * Returns up to max versions of the text with its unknown words corrected, best first.
+     * Returns an empty list when every word is known, or when an unknown word has no close match.
+     */
+    public List<String> correct(String text, int max)
+    {
+        List<String> words = words(text);
+        if (words.isEmpty() || max <= 0) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            List<List<String>> options = new ArrayList<>();
+            boolean anyCorrected = false;
+            for (String word : words) {
+                if (isKnown(word)) {
+                    options.add(List.of(word));
+                    continue;
+                }
+                List<String> corrections = lookup(word, max);
+                if (corrections.isEmpty()) {
+                    return List.of();
+                }
+                options.add(corrections);
+                anyCorrected = true;
+            }
+            if (!anyCorrected) {
+                return List.of();
+            }
+
+            // the best correction of every word first, then each runner-up swapped in on its own
+            Set<String> results = new LinkedHashSet<>();
+            results.add(join(options, -1, 0));
+            for (int rank = 1; rank < max && results.size() < max; rank++) {
+                for (int i = 0; i < options.size() && results.size() < max; i++) {
+                    if (options.get(i).size() > rank) {
+                        results.add(join(options, i, rank));
+                    }
+                }
+            }
+            return new ArrayList<>(results);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the known words within MAX_EDIT_DISTANCE of the word: closest first, then the most used.
+     */
+    List<String> lookup(String word, int max)
+    {
+        Set<String> candidates = new HashSet<>();
+        for (String variant : variants(word)) {
+            Set<String> words = deletes.get(variant);
+            if (words != null) {
+                candidates.addAll(words);
+            }
+        }
+
+        List<String> matches = new ArrayList<>();
+        Map<String, Integer> distances = new HashMap<>();
+        for (String candidate : candidates) {
+            int distance = distance(word, candidate);
+            if (distance <= MAX_EDIT_DISTANCE) {
+                matches.add(candidate);
+                distances.put(candidate, distance);
+            }
+        }
+        matches.sort(Comparator.<String>comparingInt(distances::get)
+                .thenComparing(candidate -> -wordCounts.get(candidate))
+                .thenComparing(Comparator.naturalOrder()));
+        return matches.size() > max ? matches.subList(0, max) : matches;
+    }
+
+    @Override
+    public void catalogLoaded(CatalogSnapshot snapshot)
+    {
+        Map<String, Integer> loadedWordCounts = new HashMap<>();
+        Map<String, Integer> loadedStemCounts = new HashMap<>();
+        Map<String, Set<String>> loadedDeletes = new HashMap<>();
+        for (Product product : snapshot.getProducts()) {
+            for (String word : vocabulary(product)) {
+                add(word, loadedWordCounts, loadedStemCounts, loadedDeletes);
+            }
+        }
+
+        lock.writeLock().lock();
+        try {
+            wordCounts = loadedWordCounts;
+            stemCounts = loadedStemCounts;
+            deletes = loadedDeletes;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void productChanged(Product before, Product after)
+    {
+        lock.writeLock().lock();
+        try {
+            if (before != null) {
+                for (String word : vocabulary(before)) {
+                    remove(word);
+                }
+            }
+            if (after != null) {
+                for (String word : vocabulary(after)) {
+                    add(word, wordCounts, stemCounts, deletes);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // A word counts once per product, however often the product repeats it.
+    private static Set<String> vocabulary(Product product)
+    {
+        Set<String> words = new HashSet<>(words(product.getName()));
+        words.addAll(words(product.getColor()));
+        return words;
+    }
+
+    private static void add(String word, Map<String, Integer> wordCounts, Map<String, Integer> stemCounts,
+                            Map<String, Set<String>> deletes)
+    {
+        stemCounts.merge(TextAnalyzer.stem(word), 1, Integer::sum);
+        if (wordCounts.merge(word, 1, Integer::sum) == 1) {
+            for (String variant : variants(word)) {
+                deletes.computeIfAbsent(variant, key -> new HashSet<>(2)).add(word);
+            }
+        }
+    }
+
+    private void remove(String word)
+    {
+        stemCounts.computeIfPresent(TextAnalyzer.stem(word), (stem, count) -> count == 1 ? null : count - 1);
+        Integer remaining = wordCounts.computeIfPresent(word, (key, count) -> count == 1 ? null : count - 1);
+        if (remaining == null) {
+            for (String variant : variants(word)) {
+                Set<String> words = deletes.get(variant);
+                if (words != null) {
+                    words.remove(word);
+                    if (words.isEmpty()) {
+                        deletes.remove(variant);
+                    }
+                }
+            }
+        }
+    }
+
+    // The search stems words, so "headphone" is not a typo when the catalog says "Headphones".
+    private boolean isKnown(String word)
+    {
+        return word.length() < MIN_WORD_LENGTH || TextAnalyzer.isStopWord(word)
+                || wordCounts.containsKey(word) || stemCounts.containsKey(TextAnalyzer.stem(word));
+    }
+
+    // the word's prefix with every combination of up to MAX_EDIT_DISTANCE characters deleted, the prefix included
+    static Set<String> variants(String word)
+    {
+        String prefix = word.length() > PREFIX_LENGTH ? word.substring(0, PREFIX_LENGTH) : word;
+        Set<String> variants = new HashSet<>();
+        variants.add(prefix);
+        Set<String> current = Set.of(prefix);
+        for (int distance = 1; distance <= MAX_EDIT_DISTANCE; distance++) {
+            Set<String> next = new HashSet<>();
+            for (String variant : current) {
+                for (int i = 0; i < variant.length(); i++) {
+                    String deleted = variant.substring(0, i) + variant.substring(i + 1);
+                    if (variants.add(deleted)) {
+                        next.add(deleted);
+                    }
+                }
+            }
+            current = next;
+        }
+        return variants;
+    }
+
+    // Damerau-Levenshtein distance (optimal string alignment), so a swapped pair of letters is one edit.
+    static int distance(String a, String b)
+    {
+        if (Math.abs(a.length() - b.length()) > MAX_EDIT_DISTANCE) {
+            return MAX_EDIT_DISTANCE + 1;
+        }
+        int[][] d = new int[a.length() + 1][b.length() + 1];
+        for (int i = 0; i <= a.length(); i++) {
+            d[i][0] = i;
+        }
+        for (int j = 0; j <= b.length(); j++) {
+            d[0][j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                d[i][j] = Math.min(Math.min(d[i - 1][j] + 1, d[i][j - 1] + 1), d[i - 1][j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    d[i][j] = Math.min(d[i][j], d[i - 2][j - 2] + 1);
+                }
+            }
+        }
+        return d[a.length()][b.length()];
+    }
+
+    private static List<String> words(String text)
+    {
+        List<String> words = new ArrayList<>();
+        if (text == null) {
+            return words;
+        }
+        for (String word : TextAnalyzer.fold(text).replace("'", "").split("[^\\p{L}\\p{N}]+")) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    private static String join(List<List<String>> options, int swapped, int rank)
+    {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < options.size(); i++) {
+            if (i > 0) {
+                text.append(' ');
+            }
+            text.append(options.get(i).get(i == swapped ? rank : 0));
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,91 @@
+package org.yearup.data.catalog;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Turns product text and search queries into index terms.
+ * Text is lower-cased, accents are removed, possessives and plurals are reduced
+ * ("Men's Sneakers" becomes men, sneaker) and very common English words are dropped.
+ */
+final class TextAnalyzer
+{
+    private static final Set<String> STOP_WORDS = Set.of(
+            "a", "an", "and", "are", "as", "at", "be", "by", "for", "from", "in", "into", "is", "it",
+            "of", "on", "or", "our", "that", "the", "these", "this", "to", "with", "you", "your");
+
+    private TextAnalyzer()
+    {
+    }
+
+    /**
+     * Returns one entry per word of the text, in order. Stop words are kept as null
+     * entries so that positions still reflect where words were, which phrase matching relies on.
+     */
+    static List<String> analyze(String text)
+    {
+        List<String> terms = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return terms;
+        }
+
+        String folded = fold(text)
+                .replace("'s", "")
+                .replace("'", "");
+
+        for (String word : folded.split("[^\\p{L}\\p{N}]+")) {
+            if (word.isEmpty()) {
+                continue;
+            }
+            terms.add(STOP_WORDS.contains(word) ? null : stem(word));
+        }
+        return terms;
+    }
+
+    /**
+     * Returns the distinct terms of a query, in the order they were typed.
+     */
+    static List<String> queryTerms(String query)
+    {
+        List<String> terms = new ArrayList<>();
+        for (String term : analyze(query)) {
+            if (term != null && !terms.contains(term)) {
+                terms.add(term);
+            }
+        }
+        return terms;
+    }
+
+    static boolean isStopWord(String word)
+    {
+        return STOP_WORDS.contains(word);
+    }
+
+    /**
+     * Lower-cases the text and removes accents, so "Café" and "cafe" compare equal.
+     */
+    static String fold(String text)
+    {
+        return Normalizer.normalize(text, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}", "")
+                .toLowerCase(Locale.ROOT);
+    }
+
+    // A deliberately small plural stemmer: enough to make "headphone" find "Headphones".
+    static String stem(String word)
+    {
+        if (word.length() <= 3 || !word.endsWith("s") || word.endsWith("ss") || word.endsWith("us")) {
+            return word;
+        }
+        if (word.endsWith("ies") && word.length() > 4) {
+            return word.substring(0, word.length() - 3) + "y";
+        }
+        if (word.endsWith("ches") || word.endsWith("shes") || word.endsWith("xes") || word.endsWith("sses")) {
+            return word.substring(0, word.length() - 2);
+        }
+        return word.substring(0, word.length() - 1);
+    }
+}
@@ -18,6 +18,7 @@ public class CategoryRowMapper implements RowMapper<Category> {
         category.setCategoryId(rs.getInt("category_id"));
         category.setName(rs.getString("name"));
         category.setDescription(rs.getString("description"));
+        category.setParentId(rs.getObject("parent_id", Integer.class));
 
         // Return the populated Category object
         return category;
@@ -0,0 +1,66 @@
+package org.yearup.data.mysql;
+
+import org.springframework.stereotype.Component;
+import org.yearup.data.CategoryStats;
+import org.yearup.models.Category;
+import org.yearup.models.Product;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Reads the whole catalog in one pass so the in-memory catalog can be (re)built.
+// It only needs the DataSource, which keeps it out of the ProductDao/CategoryDao wiring.
+@Component
+public class MySqlCatalogLoader extends MySqlDaoBase
+{
+    public MySqlCatalogLoader(DataSource dataSource)
+    {
+        super(dataSource);
+    }
+
+    public List<Category> loadCategories()
+    {
+        String sql = "SELECT category_id, name, description, parent_id FROM categories ORDER BY category_id";
+        return jdbcTemplate.query(sql, new CategoryRowMapper());
+    }
+
+    public List<Product> loadProducts()
+    {
+        String sql = "SELECT * FROM products ORDER BY product_id";
+        return jdbcTemplate.query(sql, (row, index) -> MySqlProductDao.mapRow(row));
+    }
+
+    /**
+     * Returns how many units of each product have been ordered, by product id. Products never ordered are left out.
+     */
+    public Map<Integer, Long> loadUnitsSold()
+    {
+        String sql = "SELECT product_id, SUM(quantity) AS units FROM order_line_items GROUP BY product_id";
+        Map<Integer, Long> unitsSold = new HashMap<>();
+        jdbcTemplate.query(sql, row -> {
+            unitsSold.put(row.getInt("product_id"), row.getLong("units"));
+        });
+        return unitsSold;
+    }
+
+    /**
+     * Returns the product count, price range and in-stock count of every category with products, straight from MySQL.
+     */
+    public Map<Integer, CategoryStats> loadCategoryStats()
+    {
+        Map<Integer, CategoryStats> stats = new HashMap<>();
+        jdbcTemplate.query(MySqlCategoryDao.STATS_SQL, row -> {
+            CategoryStats category = MySqlCategoryDao.mapStats(row);
+            stats.put(category.getCategoryId(), category);
+        });
+        return stats;
+    }
+
+    public List<Product> loadProductsByCategory(int categoryId)
+    {
+        String sql = "SELECT * FROM products WHERE category_id = ? ORDER BY product_id";
+        return jdbcTemplate.query(sql, (row, index) -> MySqlProductDao.mapRow(row), categoryId);
+    }
+}
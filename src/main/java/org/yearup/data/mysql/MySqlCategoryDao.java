@@ -1,32 +1,48 @@
 package org.yearup.data.mysql;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.stereotype.Component;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.support.GeneratedKeyHolder; // ✅ NEW: Import for generated keys
-import org.springframework.jdbc.support.KeyHolder;       // ✅ NEW: Import for generated keys
 import org.yearup.data.CategoryDao;
-import org.yearup.data.ProductDao;
+import org.yearup.data.CategoryDeleteProgress;
+import org.yearup.data.CategoryStats;
 import org.yearup.models.Category;
 
 import javax.sql.DataSource;
+import java.sql.Connection;
 import java.sql.PreparedStatement; // ✅ NEW: Import for PreparedStatement
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement; // ✅ NEW: Import for Statement
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 @Component
 public class MySqlCategoryDao extends MySqlDaoBase implements CategoryDao
 {
+    static final String STATS_SQL = "SELECT category_id, COUNT(*) AS product_count, MIN(price) AS min_price, " +
+            " MAX(price) AS max_price, SUM(stock > 0) AS in_stock_count " +
+            " FROM products GROUP BY category_id";
+
     private JdbcTemplate jdbcTemplate;
-    private ProductDao productDao;
+    private final int deleteChunkSize;
+
+    // the latest deletion of each category, so an admin can follow a long one from another request
+    private final Map<Integer, CategoryDeleteProgress> deletions = new ConcurrentHashMap<>();
 
-    public MySqlCategoryDao(DataSource dataSource, JdbcTemplate jdbcTemplate, ProductDao productDao)
+    public MySqlCategoryDao(DataSource dataSource, JdbcTemplate jdbcTemplate,
+                            @Value("${catalog.category-delete.chunk-size:1000}") int deleteChunkSize)
     {
         super(dataSource);
         this.jdbcTemplate = jdbcTemplate;
-        this.productDao = productDao;
+        this.deleteChunkSize = deleteChunkSize;
     }
 
     @Override
@@ -38,7 +54,7 @@ public class MySqlCategoryDao extends MySqlDaoBase implements CategoryDao
 
     @Override
     public Category getById(int categoryId) {
-        String sql = "SELECT category_id, name, description FROM categories WHERE category_id = ?";
+        String sql = "SELECT category_id, name, description, parent_id FROM categories WHERE category_id = ?";
         try {
             return jdbcTemplate.queryForObject(sql, new CategoryRowMapper(), categoryId);
         } catch (EmptyResultDataAccessException e) {
@@ -47,24 +63,68 @@ public class MySqlCategoryDao extends MySqlDaoBase implements CategoryDao
         }
     }
 
+    @Override
+    public Map<Integer, CategoryStats> getStats()
+    {
+        Map<Integer, CategoryStats> stats = new HashMap<>();
+        jdbcTemplate.query(STATS_SQL, row -> {
+            CategoryStats category = mapStats(row);
+            stats.put(category.getCategoryId(), category);
+        });
+        return stats;
+    }
+
     @Override
     public Category create(Category category)
     {
-        String sql = "INSERT INTO categories (name, description) VALUES (?, ?)";
+        String sql = "INSERT INTO categories (name, description, parent_id) VALUES (?, ?, ?)";
+
+        try (Connection connection = getConnection())
+        {
+            connection.setAutoCommit(false);
+            try
+            {
+                if (category.getParentId() != null && !exists(connection, category.getParentId())) {
+                    throw new IllegalArgumentException("Parent category " + category.getParentId() + " does not exist.");
+                }
 
-        KeyHolder keyHolder = new GeneratedKeyHolder(); // Create a KeyHolder to get the generated ID
+                PreparedStatement statement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+                statement.setString(1, category.getName());
+                statement.setString(2, category.getDescription());
+                statement.setObject(3, category.getParentId());
+                statement.executeUpdate();
 
-        jdbcTemplate.update(connection -> {
-            PreparedStatement ps = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
-            ps.setString(1, category.getName());
-            ps.setString(2, category.getDescription());
-            return ps;
-        }, keyHolder); // Pass the KeyHolder to the update method
+                ResultSet generatedKeys = statement.getGeneratedKeys();
+                if (generatedKeys.next()) {
+                    category.setCategoryId(generatedKeys.getInt(1));
+                }
 
-        // ✅ IMPORTANT: Retrieve the generated ID and set it on the category object
-        if (keyHolder.getKey() != null) {
-            int newCategoryId = keyHolder.getKey().intValue();
-            category.setCategoryId(newCategoryId);
+                // the new category is a descendant of each of its parent's ancestors, one level deeper, and of itself
+                PreparedStatement closure = connection.prepareStatement(
+                        "INSERT INTO category_closure (ancestor_id, descendant_id, depth) " +
+                        " SELECT ancestor_id, ?, depth + 1 FROM category_closure WHERE descendant_id = ? " +
+                        " UNION ALL SELECT ?, ?, 0");
+                closure.setInt(1, category.getCategoryId());
+                closure.setObject(2, category.getParentId());
+                closure.setInt(3, category.getCategoryId());
+                closure.setInt(4, category.getCategoryId());
+                closure.executeUpdate();
+
+                connection.commit();
+            }
+            catch (SQLException | RuntimeException e)
+            {
+                connection.rollback();
+                throw e;
+            }
+            finally
+            {
+                connection.setAutoCommit(true);
+            }
+        }
+        catch (SQLException e)
+        {
+            throw new RuntimeException("Error creating category: " + e.getMessage(), e);
         }
 
         return category; // Return the category object, now with the correct ID
@@ -73,39 +133,222 @@ public class MySqlCategoryDao extends MySqlDaoBase implements CategoryDao
     @Override
     public void update(int categoryId, Category category)
     {
-        String sql = "UPDATE categories SET name = ?, description = ? WHERE category_id = ?";
-        jdbcTemplate.update(sql, category.getName(), category.getDescription(), categoryId);
+        String sql = "UPDATE categories SET name = ?, description = ?, parent_id = ? WHERE category_id = ?";
+
+        try (Connection connection = getConnection())
+        {
+            connection.setAutoCommit(false);
+            try
+            {
+                Integer parentId = category.getParentId();
+                boolean moved = !Objects.equals(parentOf(connection, categoryId), parentId);
+                if (moved && parentId != null) {
+                    if (!exists(connection, parentId)) {
+                        throw new IllegalArgumentException("Parent category " + parentId + " does not exist.");
+                    }
+                    if (isInSubtree(connection, categoryId, parentId)) {
+                        throw new IllegalArgumentException("Category " + categoryId + " cannot be moved under its own subcategory " + parentId + ".");
+                    }
+                }
+
+                PreparedStatement statement = connection.prepareStatement(sql);
+                statement.setString(1, category.getName());
+                statement.setString(2, category.getDescription());
+                statement.setObject(3, parentId);
+                statement.setInt(4, categoryId);
+                statement.executeUpdate();
+
+                if (moved) {
+                    moveSubtree(connection, categoryId, parentId);
+                }
+
+                connection.commit();
+            }
+            catch (SQLException | RuntimeException e)
+            {
+                connection.rollback();
+                throw e;
+            }
+            finally
+            {
+                connection.setAutoCommit(true);
+            }
+        }
+        catch (SQLException e)
+        {
+            throw new RuntimeException("Error updating category: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public CategoryDeleteProgress getDeleteProgress(int categoryId)
+    {
+        return deletions.get(categoryId);
     }
 
     @Override
     public void delete(int categoryId)
+    {
+        delete(categoryId, productIds -> { });
+    }
+
+    // The category's products and their cart rows go a chunk at a time, each chunk in its own short transaction,
+    // so checkout never waits on locks held for the whole category. Every chunk removes cart rows together with
+    // their products, and the category row goes with the last (empty) chunk; if a chunk fails, what was committed
+    // is a consistent, smaller category and deleting it again carries on from there.
+    // chunkDeleted is given the product IDs of each chunk once it is committed, so caches can drop them right away.
+    public void delete(int categoryId, Consumer<List<Integer>> chunkDeleted)
     {
         System.out.println("DEBUG: MySqlCategoryDao.delete called for categoryId: " + categoryId);
 
-        try {
-            System.out.println("DEBUG: Attempting to delete products associated with categoryId: " + categoryId);
-            productDao.deleteProductsByCategoryId(categoryId);
-            System.out.println("DEBUG: Finished calling productDao.deleteProductsByCategoryId for categoryId: " + categoryId);
-        } catch (Exception e) {
-            System.err.println("ERROR: Failed to delete associated products for categoryId " + categoryId + ". Error: " + e.getMessage());
-            e.printStackTrace();
-            throw new RuntimeException("Failed to delete associated products.", e);
+        Integer subcategories = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM categories WHERE parent_id = ?", Integer.class, categoryId);
+        if (subcategories != null && subcategories > 0) {
+            throw new IllegalStateException("Category " + categoryId + " still has " + subcategories + " subcategories.");
+        }
+        // order lines keep their products, so checking first avoids failing halfway through
+        Boolean ordered = jdbcTemplate.queryForObject("SELECT EXISTS (SELECT 1 FROM order_line_items oli " +
+                " JOIN products p ON p.product_id = oli.product_id WHERE p.category_id = ?)", Boolean.class, categoryId);
+        if (Boolean.TRUE.equals(ordered)) {
+            throw new IllegalStateException("Category " + categoryId + " has products that appear in orders.");
         }
 
-        String sql = "DELETE FROM categories WHERE category_id = ?";
-        try {
-            int rowsAffected = jdbcTemplate.update(sql, categoryId);
-            System.out.println("DEBUG: Deleted " + rowsAffected + " category rows for ID: " + categoryId);
-        } catch (org.springframework.dao.DataIntegrityViolationException e) {
-            System.err.println("ERROR: DataIntegrityViolationException during category deletion for ID " + categoryId + ". This means products might still be linked. Error: " + e.getMessage());
-            throw new RuntimeException("Cannot delete category due to associated products.", e);
-        } catch (Exception e) {
-            System.err.println("ERROR: Unexpected error during category deletion for ID " + categoryId + ". Error: " + e.getMessage());
-            e.printStackTrace();
+        Integer total = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM products WHERE category_id = ?", Integer.class, categoryId);
+        CategoryDeleteProgress progress = CategoryDeleteProgress.started(categoryId, total == null ? 0 : total);
+        deletions.put(categoryId, progress);
+
+        try (Connection connection = getConnection())
+        {
+            boolean done = false;
+            while (!done)
+            {
+                connection.setAutoCommit(false);
+                List<Integer> productIds;
+                try
+                {
+                    productIds = lockChunk(connection, categoryId);
+                    if (productIds.isEmpty()) {
+                        PreparedStatement statement = connection.prepareStatement("DELETE FROM categories WHERE category_id = ?");
+                        statement.setInt(1, categoryId);
+                        int rowsAffected = statement.executeUpdate();
+                        System.out.println("DEBUG: Deleted " + rowsAffected + " category rows for ID: " + categoryId);
+                        done = true;
+                    } else {
+                        int cartItems = deleteIn(connection, "DELETE FROM shopping_cart WHERE product_id IN ", productIds);
+                        int products = deleteIn(connection, "DELETE FROM products WHERE product_id IN ", productIds);
+                        progress = progress.withChunk(products, cartItems);
+                    }
+                    connection.commit();
+                }
+                catch (SQLException | RuntimeException e)
+                {
+                    connection.rollback();
+                    throw e;
+                }
+                finally
+                {
+                    connection.setAutoCommit(true);
+                }
+
+                deletions.put(categoryId, progress);
+                if (!done) {
+                    chunkDeleted.accept(productIds);
+                    System.out.println("DEBUG: Category " + categoryId + " delete: " + progress.getDeletedProducts() + " of " +
+                            progress.getTotalProducts() + " products and " + progress.getDeletedCartItems() + " cart items deleted.");
+                }
+            }
+            deletions.put(categoryId, progress.completed());
+        }
+        catch (SQLException | RuntimeException e)
+        {
+            System.err.println("ERROR: Deleting category " + categoryId + " stopped after " + progress.getDeletedProducts() +
+                    " products. Error: " + e.getMessage());
+            deletions.put(categoryId, progress.failed(e.getMessage()));
             throw new RuntimeException("Error deleting category with ID: " + categoryId, e);
         }
     }
 
+    // Locks the next chunk of the category's products; the category_id index returns them in product_id order.
+    private List<Integer> lockChunk(Connection connection, int categoryId) throws SQLException
+    {
+        PreparedStatement statement = connection.prepareStatement(
+                "SELECT product_id FROM products WHERE category_id = ? ORDER BY product_id LIMIT ? FOR UPDATE");
+        statement.setInt(1, categoryId);
+        statement.setInt(2, deleteChunkSize);
+
+        List<Integer> productIds = new ArrayList<>();
+        ResultSet row = statement.executeQuery();
+        while (row.next()) {
+            productIds.add(row.getInt("product_id"));
+        }
+        return productIds;
+    }
+
+    private static int deleteIn(Connection connection, String sql, List<Integer> productIds) throws SQLException
+    {
+        PreparedStatement statement = connection.prepareStatement(
+                sql + "(" + String.join(", ", Collections.nCopies(productIds.size(), "?")) + ")");
+        for (int i = 0; i < productIds.size(); i++) {
+            statement.setInt(i + 1, productIds.get(i));
+        }
+        return statement.executeUpdate();
+    }
+
+    // Re-links the category's subtree under its new parent: the paths from its old ancestors are removed,
+    // then every new ancestor is joined to every member of the subtree.
+    private void moveSubtree(Connection connection, int categoryId, Integer parentId) throws SQLException
+    {
+        PreparedStatement detach = connection.prepareStatement(
+                "DELETE cc FROM category_closure cc " +
+                " JOIN category_closure sub ON sub.descendant_id = cc.descendant_id AND sub.ancestor_id = ? " +
+                " JOIN category_closure sup ON sup.ancestor_id = cc.ancestor_id AND sup.descendant_id = ? AND sup.depth > 0");
+        detach.setInt(1, categoryId);
+        detach.setInt(2, categoryId);
+        detach.executeUpdate();
+
+        if (parentId == null) {
+            return;
+        }
+
+        PreparedStatement attach = connection.prepareStatement(
+                "INSERT INTO category_closure (ancestor_id, descendant_id, depth) " +
+                " SELECT sup.ancestor_id, sub.descendant_id, sup.depth + sub.depth + 1 " +
+                " FROM category_closure sup JOIN category_closure sub " +
+                " WHERE sup.descendant_id = ? AND sub.ancestor_id = ?");
+        attach.setInt(1, parentId);
+        attach.setInt(2, categoryId);
+        attach.executeUpdate();
+    }
+
+    private boolean exists(Connection connection, int categoryId) throws SQLException
+    {
+        PreparedStatement statement = connection.prepareStatement("SELECT 1 FROM categories WHERE category_id = ?");
+        statement.setInt(1, categoryId);
+        return statement.executeQuery().next();
+    }
+
+    private Integer parentOf(Connection connection, int categoryId) throws SQLException
+    {
+        PreparedStatement statement = connection.prepareStatement("SELECT parent_id FROM categories WHERE category_id = ?");
+        statement.setInt(1, categoryId);
+        ResultSet row = statement.executeQuery();
+        return row.next() ? row.getObject("parent_id", Integer.class) : null;
+    }
+
+    private boolean isInSubtree(Connection connection, int ancestorId, int categoryId) throws SQLException
+    {
+        PreparedStatement statement = connection.prepareStatement(
+                "SELECT 1 FROM category_closure WHERE ancestor_id = ? AND descendant_id = ?");
+        statement.setInt(1, ancestorId);
+        statement.setInt(2, categoryId);
+        return statement.executeQuery().next();
+    }
+
+    static CategoryStats mapStats(ResultSet row) throws SQLException
+    {
+        return new CategoryStats(row.getInt("category_id"), row.getInt("product_count"),
+                row.getBigDecimal("min_price"), row.getBigDecimal("max_price"), row.getInt("in_stock_count"));
+    }
+
     private Category mapRow(ResultSet row) throws SQLException
     {
         int categoryId = row.getInt("category_id");
@@ -116,6 +359,7 @@ public class MySqlCategoryDao extends MySqlDaoBase implements CategoryDao
         category.setCategoryId(categoryId);
         category.setName(name);
         category.setDescription(description);
+        category.setParentId(row.getObject("parent_id", Integer.class));
 
         return category;
     }
@@ -3,17 +3,38 @@ package org.yearup.data.mysql;
 import org.springframework.stereotype.Component;
 import org.yearup.models.Product;
 import org.yearup.data.ProductDao;
+import org.yearup.data.ProductFacets;
+import org.yearup.data.ProductFilter;
+import org.yearup.data.ProductPage;
+import org.yearup.data.ProductPageRequest;
+import org.yearup.data.PriceAdjustment;
 import org.yearup.data.ShoppingCartDao;
 
 import javax.sql.DataSource;
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
 
 @Component
 public class MySqlProductDao extends MySqlDaoBase implements ProductDao
 {
+    // uses the FULLTEXT index on (name, description)
+    private static final String RELEVANCE = "MATCH(name, description) AGAINST (? IN NATURAL LANGUAGE MODE)";
+
+    // rows per multi-row INSERT statement in createAll; 8 parameters each stays far below MySQL's placeholder limit
+    private static final int ROWS_PER_INSERT = 500;
+
     private ShoppingCartDao shoppingCartDao;
 
     public MySqlProductDao(DataSource dataSource,ShoppingCartDao shoppingCartDao)
@@ -25,53 +46,254 @@ public class MySqlProductDao extends MySqlDaoBase implements ProductDao
     @Override
     public List<Product> search(Integer categoryId, BigDecimal minPrice, BigDecimal maxPrice, String color)
     {
-        List<Product> products = new ArrayList<>();
+        return search(new ProductFilter(categoryId, minPrice, maxPrice, color));
+    }
+
+    @Override
+    public List<Product> search(ProductFilter filter)
+    {
         StringBuilder sqlBuilder = new StringBuilder("SELECT * FROM products WHERE 1=1 "); // Start with 1=1 for easy appending
         List<Object> params = new ArrayList<>();
+        appendFilter(sqlBuilder, params, filter);
 
-        // Add Category ID condition if provided and valid
-        if (categoryId != null && categoryId > 0) { // Assuming categoryId > 0 is valid
-            sqlBuilder.append(" AND category_id = ? ");
-            params.add(categoryId);
+        if (filter.getQuery() != null) {
+            sqlBuilder.append(" ORDER BY ").append(RELEVANCE).append(" DESC, product_id ");
+            params.add(filter.getQuery());
         }
 
-        // Add Min Price condition if provided and valid
-        // Using compareTo for BigDecimal: 0 if equal, >0 if this is greater, <0 if this is less
-        if (minPrice != null && minPrice.compareTo(BigDecimal.ZERO) >= 0) { // Ensure minPrice is 0 or positive
-            sqlBuilder.append(" AND price >= ? ");
-            params.add(minPrice);
+        try
+        {
+            return query(sqlBuilder.toString(), params, null);
+        }
+        catch (SQLException e)
+        {
+            throw new RuntimeException("Error searching products: " + e.getMessage(), e);
         }
+    }
 
-        // Add Max Price condition if provided and valid
-        if (maxPrice != null && maxPrice.compareTo(BigDecimal.ZERO) >= 0) { // Ensure maxPrice is 0 or positive
-            sqlBuilder.append(" AND price <= ? ");
-            params.add(maxPrice);
+    @Override
+    public ProductPage search(ProductFilter filter, ProductPageRequest page)
+    {
+        if (page.getSort() == ProductPageRequest.Sort.RELEVANCE) {
+            return searchByRelevance(filter, page);
         }
 
-        // Add Color condition if provided and not empty
-        if (color != null && !color.trim().isEmpty()) {
-            sqlBuilder.append(" AND color = ? ");
-            params.add(color.trim()); // Trim to handle accidental spaces
+        StringBuilder sqlBuilder = new StringBuilder("SELECT * FROM products WHERE 1=1 ");
+        List<Object> params = new ArrayList<>();
+        appendFilter(sqlBuilder, params, filter);
+
+        String column = switch (page.getSort()) {
+            case ID -> "product_id";
+            case NAME -> "name";
+            case PRICE -> "price";
+            case RELEVANCE -> throw new IllegalStateException();
+        };
+        String comparison = page.isDescending() ? "<" : ">";
+        String direction = page.isDescending() ? " DESC" : " ASC";
+
+        // Seek past the last row of the previous page instead of using OFFSET,
+        // so every page costs the same no matter how deep the client has scrolled.
+        ProductPageRequest.Cursor after = page.getAfter();
+        if (after != null) {
+            if (page.getSort() == ProductPageRequest.Sort.ID) {
+                sqlBuilder.append(" AND product_id ").append(comparison).append(" ? ");
+                params.add(after.getProductId());
+            } else {
+                Object value = page.getSort() == ProductPageRequest.Sort.PRICE ? after.getPrice() : after.getValue();
+                sqlBuilder.append(" AND (").append(column).append(" ").append(comparison).append(" ? ")
+                        .append(" OR (").append(column).append(" = ? AND product_id ").append(comparison).append(" ?)) ");
+                params.add(value);
+                params.add(value);
+                params.add(after.getProductId());
+            }
+        }
+
+        sqlBuilder.append(" ORDER BY ").append(column).append(direction);
+        if (page.getSort() != ProductPageRequest.Sort.ID) {
+            sqlBuilder.append(", product_id").append(direction);
         }
 
+        // Read one extra row to find out whether there is a next page.
+        if (page.getLimit() != null) {
+            sqlBuilder.append(" LIMIT ?");
+            params.add(page.getLimit() + 1);
+        }
+
+        try
+        {
+            List<Product> products = query(sqlBuilder.toString(), params, null);
+            if (page.getLimit() == null || products.size() <= page.getLimit()) {
+                return new ProductPage(products, null);
+            }
+
+            List<Product> pageRows = new ArrayList<>(products.subList(0, page.getLimit()));
+            Product last = pageRows.get(pageRows.size() - 1);
+            return new ProductPage(pageRows, page.cursorAfter(last).encode());
+        }
+        catch (SQLException e)
+        {
+            throw new RuntimeException("Error searching products: " + e.getMessage(), e);
+        }
+    }
+
+    // Best match first, ties by product id; the score is selected so the seek can compare against it.
+    private ProductPage searchByRelevance(ProductFilter filter, ProductPageRequest page)
+    {
+        if (filter.getQuery() == null) {
+            throw new IllegalArgumentException("Sorting by relevance needs a text query.");
+        }
+
+        StringBuilder sqlBuilder = new StringBuilder("SELECT *, " + RELEVANCE + " AS relevance FROM products WHERE 1=1 ");
+        List<Object> params = new ArrayList<>();
+        params.add(filter.getQuery());
+        appendFilter(sqlBuilder, params, filter);
+
+        ProductPageRequest.Cursor after = page.getAfter();
+        if (after != null) {
+            sqlBuilder.append(" HAVING relevance < ? OR (relevance = ? AND product_id > ?) ");
+            params.add(after.getScore());
+            params.add(after.getScore());
+            params.add(after.getProductId());
+        }
+
+        sqlBuilder.append(" ORDER BY relevance DESC, product_id ASC");
+
+        if (page.getLimit() != null) {
+            sqlBuilder.append(" LIMIT ?");
+            params.add(page.getLimit() + 1);
+        }
+
+        try
+        {
+            List<Double> scores = new ArrayList<>();
+            List<Product> products = query(sqlBuilder.toString(), params, scores);
+            if (page.getLimit() == null || products.size() <= page.getLimit()) {
+                return new ProductPage(products, null);
+            }
+
+            List<Product> pageRows = new ArrayList<>(products.subList(0, page.getLimit()));
+            int last = pageRows.size() - 1;
+            return new ProductPage(pageRows, page.cursorAfter(pageRows.get(last), scores.get(last)).encode());
+        }
+        catch (SQLException e)
+        {
+            throw new RuntimeException("Error searching products: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public ProductFacets facets(ProductFilter filter, List<BigDecimal> priceEdges)
+    {
+        // One scan of the three facet columns instead of a GROUP BY query per facet.
+        StringBuilder sqlBuilder = new StringBuilder("SELECT category_id, color, price FROM products WHERE 1=1 ");
+        List<Object> params = new ArrayList<>();
+        appendFilter(sqlBuilder, params, filter);
+
+        int total = 0;
+        Map<Integer, Integer> categories = new TreeMap<>();
+        Map<String, String> colorNames = new LinkedHashMap<>();
+        Map<String, Integer> colorCounts = new LinkedHashMap<>();
+        int[] priceCounts = new int[priceEdges.size()];
+
         try (Connection connection = getConnection())
         {
             PreparedStatement statement = connection.prepareStatement(sqlBuilder.toString());
+            bind(statement, params);
+
+            ResultSet row = statement.executeQuery();
+            while (row.next())
+            {
+                total++;
+                categories.merge(row.getInt("category_id"), 1, Integer::sum);
+
+                String color = row.getString("color");
+                if (color != null && !color.trim().isEmpty()) {
+                    String key = color.trim().toLowerCase(Locale.ROOT);
+                    colorNames.putIfAbsent(key, color.trim());
+                    colorCounts.merge(key, 1, Integer::sum);
+                }
 
-            // Set parameters dynamically based on what was added to the list
-            for (int i = 0; i < params.size(); i++) {
-                Object param = params.get(i);
-                if (param instanceof Integer) {
-                    statement.setInt(i + 1, (Integer) param);
-                } else if (param instanceof BigDecimal) {
-                    statement.setBigDecimal(i + 1, (BigDecimal) param);
-                } else if (param instanceof String) {
-                    statement.setString(i + 1, (String) param);
-                } else {
-                    // Handle unexpected parameter types if necessary
-                    throw new RuntimeException("Unexpected parameter type: " + param.getClass().getName());
+                BigDecimal price = row.getBigDecimal("price");
+                if (price != null) {
+                    for (int bucket = priceEdges.size() - 1; bucket >= 0; bucket--) {
+                        if (price.compareTo(priceEdges.get(bucket)) >= 0) {
+                            priceCounts[bucket]++;
+                            break;
+                        }
+                    }
                 }
             }
+        }
+        catch (SQLException e)
+        {
+            throw new RuntimeException("Error counting product facets: " + e.getMessage(), e);
+        }
+
+        Map<String, Integer> colors = new LinkedHashMap<>();
+        colorCounts.entrySet().stream()
+                .sorted(Map.Entry.<String, Integer>comparingByValue(Comparator.reverseOrder()).thenComparing(Map.Entry.comparingByKey()))
+                .forEach(entry -> colors.put(colorNames.get(entry.getKey()), entry.getValue()));
+
+        List<ProductFacets.PriceBucket> prices = new ArrayList<>();
+        for (int bucket = 0; bucket < priceEdges.size(); bucket++) {
+            BigDecimal max = bucket + 1 < priceEdges.size() ? priceEdges.get(bucket + 1) : null;
+            prices.add(new ProductFacets.PriceBucket(priceEdges.get(bucket), max, priceCounts[bucket]));
+        }
+
+        return new ProductFacets(total, categories, colors, prices);
+    }
+
+    // ProductFilter has already dropped invalid values (category <= 0, negative prices, blank color)
+    private void appendFilter(StringBuilder sqlBuilder, List<Object> params, ProductFilter filter)
+    {
+        if (filter.getCategoryId() != null && filter.isDescendants()) {
+            // the closure table lists every (ancestor, descendant) pair, so the whole subtree is one index range
+            sqlBuilder.append(" AND category_id IN (SELECT descendant_id FROM category_closure WHERE ancestor_id = ?) ");
+            params.add(filter.getCategoryId());
+        } else if (filter.getCategoryId() != null) {
+            sqlBuilder.append(" AND category_id = ? ");
+            params.add(filter.getCategoryId());
+        }
+
+        if (filter.getMinPrice() != null) {
+            sqlBuilder.append(" AND price >= ? ");
+            params.add(filter.getMinPrice());
+        }
+
+        if (filter.getMaxPrice() != null) {
+            sqlBuilder.append(" AND price <= ? ");
+            params.add(filter.getMaxPrice());
+        }
+
+        if (filter.getColor() != null) {
+            sqlBuilder.append(" AND color = ? ");
+            params.add(filter.getColor());
+        }
+
+        if (filter.getInStock() != null) {
+            sqlBuilder.append(filter.getInStock() ? " AND stock > 0 " : " AND stock <= 0 ");
+        }
+
+        if (filter.getFeatured() != null) {
+            sqlBuilder.append(" AND featured = ? ");
+            params.add(filter.getFeatured());
+        }
+
+        if (filter.getQuery() != null) {
+            sqlBuilder.append(" AND ").append(RELEVANCE).append(" ");
+            params.add(filter.getQuery());
+        }
+    }
+
+    // scores, when given, receives the relevance column of every row
+    private List<Product> query(String sql, List<Object> params, List<Double> scores) throws SQLException
+    {
+        List<Product> products = new ArrayList<>();
+
+        try (Connection connection = getConnection())
+        {
+            PreparedStatement statement = connection.prepareStatement(sql);
+            bind(statement, params);
 
             ResultSet row = statement.executeQuery();
 
@@ -79,14 +301,61 @@ public class MySqlProductDao extends MySqlDaoBase implements ProductDao
             {
                 Product product = mapRow(row);
                 products.add(product);
+                if (scores != null) {
+                    scores.add(row.getDouble("relevance"));
+                }
+            }
+        }
+
+        return products;
+    }
+
+    private static void bind(PreparedStatement statement, List<Object> params) throws SQLException
+    {
+        // Set parameters dynamically based on what was added to the list
+        for (int i = 0; i < params.size(); i++) {
+            Object param = params.get(i);
+            if (param instanceof Integer) {
+                statement.setInt(i + 1, (Integer) param);
+            } else if (param instanceof BigDecimal) {
+                statement.setBigDecimal(i + 1, (BigDecimal) param);
+            } else if (param instanceof String) {
+                statement.setString(i + 1, (String) param);
+            } else if (param instanceof Boolean) {
+                statement.setBoolean(i + 1, (Boolean) param);
+            } else if (param instanceof Double) {
+                statement.setDouble(i + 1, (Double) param);
+            } else {
+                // Handle unexpected parameter types if necessary
+                throw new RuntimeException("Unexpected parameter type: " + param.getClass().getName());
+            }
+        }
+    }
+
+    @Override
+    public void streamAll(Consumer<Product> consumer)
+    {
+        String sql = "SELECT * FROM products ORDER BY product_id";
+
+        try (Connection connection = getConnection())
+        {
+            // A forward-only, read-only statement with a fetch size of Integer.MIN_VALUE makes
+            // MySQL Connector/J stream rows one at a time instead of buffering the whole result.
+            PreparedStatement statement = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(Integer.MIN_VALUE);
+
+            try (ResultSet row = statement.executeQuery())
+            {
+                while (row.next())
+                {
+                    consumer.accept(mapRow(row));
+                }
             }
         }
         catch (SQLException e)
         {
-            throw new RuntimeException("Error searching products: " + e.getMessage(), e);
+            throw new RuntimeException("Error exporting products: " + e.getMessage(), e);
         }
-
-        return products;
     }
 
     @Override
@@ -118,6 +387,38 @@ public class MySqlProductDao extends MySqlDaoBase implements ProductDao
         return products;
     }
 
+    @Override
+    public List<Product> listFeatured(Integer categoryId)
+    {
+        List<Product> products = new ArrayList<>();
+
+        String sql = "SELECT * FROM products WHERE featured = 1 " +
+                (categoryId == null ? "" : " AND category_id = ? ") +
+                " ORDER BY product_id";
+
+        try (Connection connection = getConnection())
+        {
+            PreparedStatement statement = connection.prepareStatement(sql);
+            if (categoryId != null)
+            {
+                statement.setInt(1, categoryId);
+            }
+
+            ResultSet row = statement.executeQuery();
+
+            while (row.next())
+            {
+                products.add(mapRow(row));
+            }
+        }
+        catch (SQLException e)
+        {
+            throw new RuntimeException(e);
+        }
+
+        return products;
+    }
+
 
     @Override
     public Product getById(int productId)
@@ -142,6 +443,53 @@ public class MySqlProductDao extends MySqlDaoBase implements ProductDao
         return null; // Return null if no product is found
     }
 
+    // One round trip for the whole list; the rows come back in any order and are put in the requested one here.
+    @Override
+    public List<Product> getByIds(List<Integer> productIds)
+    {
+        List<Integer> ids = new ArrayList<>(new LinkedHashSet<>(productIds));
+        if (ids.isEmpty())
+        {
+            return new ArrayList<>();
+        }
+
+        String sql = "SELECT * FROM products WHERE product_id IN (" +
+                String.join(", ", Collections.nCopies(ids.size(), "?")) + ")";
+
+        Map<Integer, Product> found = new HashMap<>();
+        try (Connection connection = getConnection())
+        {
+            PreparedStatement statement = connection.prepareStatement(sql);
+            for (int i = 0; i < ids.size(); i++)
+            {
+                statement.setInt(i + 1, ids.get(i));
+            }
+
+            ResultSet row = statement.executeQuery();
+
+            while (row.next())
+            {
+                Product product = mapRow(row);
+                found.put(product.getProductId(), product);
+            }
+        }
+        catch (SQLException e)
+        {
+            throw new RuntimeException(e);
+        }
+
+        List<Product> products = new ArrayList<>(found.size());
+        for (int productId : ids)
+        {
+            Product product = found.get(productId);
+            if (product != null)
+            {
+                products.add(product);
+            }
+        }
+        return products;
+    }
+
     @Override
     public Product create(Product product)
     {
@@ -183,6 +531,175 @@ public class MySqlProductDao extends MySqlDaoBase implements ProductDao
         return null; // Return null if creation failed or no ID generated
     }
 
+    @Override
+    public List<Product> createAll(List<Product> products)
+    {
+        try (Connection connection = getConnection())
+        {
+            connection.setAutoCommit(false);
+            try
+            {
+                for (int from = 0; from < products.size(); from += ROWS_PER_INSERT) {
+                    insertRows(connection, products.subList(from, Math.min(products.size(), from + ROWS_PER_INSERT)));
+                }
+                connection.commit();
+            }
+            catch (SQLException | RuntimeException e)
+            {
+                connection.rollback();
+                throw e;
+            }
+            finally
+            {
+                connection.setAutoCommit(true);
+            }
+        }
+        catch (SQLException e)
+        {
+            throw new RuntimeException("Error creating products: " + e.getMessage(), e);
+        }
+        return products;
+    }
+
+    // Each chunk locks the next chunkSize matching products in product_id order and reprices exactly those ids with
+    // one UPDATE, then commits, so no lock is held for longer than one chunk. A product moved into the filter
+    // meanwhile is repriced only if a later chunk's SELECT finds it, and is then in the list returned.
+    @Override
+    public List<Integer> adjustPrices(PriceAdjustment adjustment, int chunkSize)
+    {
+        ProductFilter filter = adjustment.getFilter();
+        BigDecimal change = adjustment.getPercent() != null ? adjustment.getPercent() : adjustment.getAmount();
+        // the floor is part of the UPDATE, so a product repriced after the check below still cannot reach 0.00
+        String newPrice = "GREATEST(" + (adjustment.getPercent() != null ? "ROUND(price * (100 + ?) / 100, 2)" : "ROUND(price + ?, 2)") +
+                ", 0.01)";
+
+        if (change.signum() < 0) {
+            // refuse before the first chunk rather than stop halfway through
+            BigDecimal lowest = lowestPrice(filter);
+            if (lowest != null) {
+                BigDecimal lowestAdjusted = adjustment.getPercent() != null
+                        ? lowest.multiply(new BigDecimal(100).add(change)).divide(new BigDecimal(100), 2, RoundingMode.HALF_UP)
+                        : lowest.add(change);
+                if (lowestAdjusted.compareTo(new BigDecimal("0.01")) < 0) {
+                    throw new IllegalArgumentException("The cheapest matching product costs " + lowest + "; " +
+                            adjustment + " would take it below 0.01.");
+                }
+            }
+        }
+
+        List<Integer> adjusted = new ArrayList<>();
+        try (Connection connection = getConnection())
+        {
+            int lastProductId = 0;
+            while (true)
+            {
+                List<Integer> chunk = new ArrayList<>();
+                connection.setAutoCommit(false);
+                try
+                {
+                    StringBuilder select = new StringBuilder("SELECT product_id FROM products WHERE product_id > ? ");
+                    List<Object> params = new ArrayList<>(List.of(lastProductId));
+                    appendFilter(select, params, filter);
+                    select.append(" ORDER BY product_id LIMIT ? FOR UPDATE ");
+                    params.add(chunkSize);
+
+                    PreparedStatement statement = connection.prepareStatement(select.toString());
+                    bind(statement, params);
+                    ResultSet row = statement.executeQuery();
+                    while (row.next()) {
+                        chunk.add(row.getInt("product_id"));
+                    }
+
+                    if (!chunk.isEmpty()) {
+                        String update = "UPDATE products SET price = " + newPrice +
+                                " WHERE product_id IN (" + String.join(", ", Collections.nCopies(chunk.size(), "?")) + ")";
+                        List<Object> updateParams = new ArrayList<>(List.of(change));
+                        updateParams.addAll(chunk);
+
+                        PreparedStatement updateStatement = connection.prepareStatement(update);
+                        bind(updateStatement, updateParams);
+                        updateStatement.executeUpdate();
+                    }
+                    connection.commit();
+                }
+                catch (SQLException | RuntimeException e)
+                {
+                    connection.rollback();
+                    throw e;
+                }
+                finally
+                {
+                    connection.setAutoCommit(true);
+                }
+
+                if (chunk.isEmpty()) {
+                    break;
+                }
+                adjusted.addAll(chunk);
+                lastProductId = chunk.get(chunk.size() - 1);
+                System.out.println("DEBUG: Repriced " + adjusted.size() + " products so far (" + adjustment + ").");
+            }
+        }
+        catch (SQLException e)
+        {
+            throw new RuntimeException("Error adjusting prices after " + adjusted.size() + " products: " + e.getMessage(), e);
+        }
+        return adjusted;
+    }
+
+    private BigDecimal lowestPrice(ProductFilter filter)
+    {
+        StringBuilder sql = new StringBuilder("SELECT MIN(price) AS lowest FROM products WHERE 1=1 ");
+        List<Object> params = new ArrayList<>();
+        appendFilter(sql, params, filter);
+
+        try (Connection connection = getConnection())
+        {
+            PreparedStatement statement = connection.prepareStatement(sql.toString());
+            bind(statement, params);
+            ResultSet row = statement.executeQuery();
+            return row.next() ? row.getBigDecimal("lowest") : null;
+        }
+        catch (SQLException e)
+        {
+            throw new RuntimeException("Error reading the lowest price: " + e.getMessage(), e);
+        }
+    }
+
+    // One INSERT ... VALUES (...), (...), ... for the whole slice: a single round trip instead of one per product.
+    private void insertRows(Connection connection, List<Product> rows) throws SQLException
+    {
+        StringBuilder sql = new StringBuilder("INSERT INTO products(name, price, category_id, description, color, image_url, stock, featured) VALUES ");
+        for (int i = 0; i < rows.size(); i++) {
+            sql.append(i == 0 ? "" : ", ").append("(?, ?, ?, ?, ?, ?, ?, ?)");
+        }
+
+        try (PreparedStatement statement = connection.prepareStatement(sql.toString(), PreparedStatement.RETURN_GENERATED_KEYS))
+        {
+            int parameter = 1;
+            for (Product product : rows) {
+                statement.setString(parameter++, product.getName());
+                statement.setBigDecimal(parameter++, product.getPrice());
+                statement.setInt(parameter++, product.getCategoryId());
+                statement.setString(parameter++, product.getDescription());
+                statement.setString(parameter++, product.getColor());
+                statement.setString(parameter++, product.getImageUrl());
+                statement.setInt(parameter++, product.getStock());
+                statement.setBoolean(parameter++, product.isFeatured());
+            }
+            statement.executeUpdate();
+
+            // MySQL hands out the ids of a multi-row insert in row order.
+            ResultSet generatedKeys = statement.getGeneratedKeys();
+            for (Product product : rows) {
+                if (!generatedKeys.next()) {
+                    throw new SQLException("MySQL returned fewer generated ids than inserted rows.");
+                }
+                product.setProductId(generatedKeys.getInt(1));
+            }
+        }
+    }
+
     @Override
     public void update(int productId, Product product)
     {
@@ -4,18 +4,30 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 // import org.yearup.data.ProductDao; // <-- REMOVE THIS IMPORT
 import org.yearup.data.ShoppingCartDao;
+import org.yearup.models.CartOperation;
 import org.yearup.models.Product;
 import org.yearup.models.ShoppingCart;
 import org.yearup.models.ShoppingCartItem;
 
 import javax.sql.DataSource;
 import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 @Component
 public class MySqlShoppingCartDao extends MySqlDaoBase implements ShoppingCartDao
 {
+    // rows per multi-row statement in saveQuantities
+    private static final int ROWS_PER_STATEMENT = 500;
+
     // private final ProductDao productDao; // <-- REMOVE THIS FIELD
     private final ShoppingCartItemRowMapper rowMapper;
 
@@ -29,20 +41,20 @@ public class MySqlShoppingCartDao extends MySqlDaoBase implements ShoppingCartDa
     }
 
     @Override
-    public void deleteShoppingCartItemsByCategoryId(int categoryId) {
-        System.out.println("DEBUG: MySqlShoppingCartDao.deleteShoppingCartItemsByCategoryId called for categoryId: " + categoryId);
-
-        String sql = "DELETE sc FROM shopping_cart sc " +
-                "JOIN products p ON sc.product_id = p.product_id " +
-                "WHERE p.category_id = ?";
+    public void deleteShoppingCartItemsByProductIds(List<Integer> productIds) {
+        if (productIds.isEmpty()) {
+            return;
+        }
+        String sql = "DELETE FROM shopping_cart WHERE product_id IN (" +
+                String.join(", ", Collections.nCopies(productIds.size(), "?")) + ")";
 
         try {
-            int rowsAffected = jdbcTemplate.update(sql, categoryId);
-            System.out.println("DEBUG: Deleted " + rowsAffected + " shopping cart items for products in category ID: " + categoryId);
+            int rowsAffected = jdbcTemplate.update(sql, productIds.toArray());
+            System.out.println("DEBUG: Deleted " + rowsAffected + " shopping cart items for " + productIds.size() + " products.");
         } catch (Exception e) {
-            System.err.println("ERROR: SQL Exception during shopping cart item deletion for category ID " + categoryId + ". Error: " + e.getMessage());
+            System.err.println("ERROR: SQL Exception during shopping cart item deletion for products " + productIds + ". Error: " + e.getMessage());
             e.printStackTrace();
-            throw new RuntimeException("Error deleting shopping cart items for category ID: " + categoryId, e);
+            throw new RuntimeException("Error deleting shopping cart items for products: " + productIds, e);
         }
     }
 
@@ -67,7 +79,6 @@ public class MySqlShoppingCartDao extends MySqlDaoBase implements ShoppingCartDa
             e.printStackTrace();
             throw new RuntimeException("Error getting shopping cart for user ID: " + userId, e);
         }
-        cart.calculateTotal();
         return cart;
     }
 
@@ -88,24 +99,26 @@ public class MySqlShoppingCartDao extends MySqlDaoBase implements ShoppingCartDa
         }
     }
 
+    // One statement: the line is inserted with quantity 1 or incremented, clamped to the product's stock, so
+    // concurrent adds cannot lose an increment. A product out of stock is not added, and is removed if it was in the cart.
     @Override
     public void addProductToCart(int userId, int productId) {
-        ShoppingCartItem existingItem = getCartItemByUserIdAndProductId(userId, productId);
-
-        if (existingItem != null) {
-            updateProductQuantity(userId, productId, existingItem.getQuantity() + 1);
-        } else {
-            String sql = "INSERT INTO shopping_cart (user_id, product_id, quantity) VALUES (?, ?, 1);";
-            try {
-                jdbcTemplate.update(sql, userId, productId);
-            } catch (Exception e) {
-                System.err.println("ERROR: SQL Exception adding product " + productId + " to cart for user " + userId + ": " + e.getMessage());
-                e.printStackTrace();
-                throw new RuntimeException("Error adding product to cart: " + e.getMessage(), e);
+        String sql = "INSERT INTO shopping_cart (user_id, product_id, quantity) " +
+                "SELECT ?, p.product_id, 1 FROM products p WHERE p.product_id = ? AND p.stock > 0 " +
+                "ON DUPLICATE KEY UPDATE quantity = LEAST(shopping_cart.quantity + 1, p.stock);";
+        try {
+            if (jdbcTemplate.update(sql, userId, productId) == 0 && deleteIfOutOfStock(userId, productId) == 0) {
+                System.out.println("WARN: Product " + productId + " is out of stock; not added to cart for user " + userId);
             }
+        } catch (Exception e) {
+            System.err.println("ERROR: SQL Exception adding product " + productId + " to cart for user " + userId + ": " + e.getMessage());
+            e.printStackTrace();
+            throw new RuntimeException("Error adding product to cart: " + e.getMessage(), e);
         }
     }
 
+    // The quantity is clamped to the product's stock in the same statement; a line whose stock has run out is
+    // removed, like a quantity of 0.
     @Override
     public void updateProductQuantity(int userId, int productId, int quantity) {
         if (quantity <= 0) {
@@ -113,10 +126,12 @@ public class MySqlShoppingCartDao extends MySqlDaoBase implements ShoppingCartDa
             return;
         }
 
-        String sql = "UPDATE shopping_cart SET quantity = ? WHERE user_id = ? AND product_id = ?;";
+        String sql = "UPDATE shopping_cart sc JOIN products p ON p.product_id = sc.product_id " +
+                "SET sc.quantity = LEAST(?, p.stock) " +
+                "WHERE sc.user_id = ? AND sc.product_id = ? AND p.stock > 0;";
         try {
             int rowsAffected = jdbcTemplate.update(sql, quantity, userId, productId);
-            if (rowsAffected == 0) {
+            if (rowsAffected == 0 && deleteIfOutOfStock(userId, productId) == 0) {
                 System.out.println("WARN: Attempted to update non-existent cart item for user " + userId + ", product " + productId);
             }
         } catch (Exception e) {
@@ -126,6 +141,11 @@ public class MySqlShoppingCartDao extends MySqlDaoBase implements ShoppingCartDa
         }
     }
 
+    private int deleteIfOutOfStock(int userId, int productId) {
+        return jdbcTemplate.update("DELETE sc FROM shopping_cart sc JOIN products p ON p.product_id = sc.product_id " +
+                "WHERE sc.user_id = ? AND sc.product_id = ? AND p.stock <= 0;", userId, productId);
+    }
+
     @Override
     public void clearShoppingCart(int userId) {
         String sql = "DELETE FROM shopping_cart WHERE user_id = ?;";
@@ -153,4 +173,158 @@ public class MySqlShoppingCartDao extends MySqlDaoBase implements ShoppingCartDa
             throw new RuntimeException("Error deleting product from cart: " + e.getMessage(), e);
         }
     }
+
+    // The operations are folded into one net change per product first (a later set or remove overrides what came
+    // before it for that product), so the whole batch is at most three statements in one transaction:
+    // absolute quantities, increments, and one delete for the removed lines and those clamped to 0 by the stock.
+    @Override
+    public ShoppingCart applyOperations(int userId, List<CartOperation> operations) {
+        Map<Integer, Integer> absolute = new LinkedHashMap<>();
+        Map<Integer, Integer> increments = new LinkedHashMap<>();
+        for (CartOperation operation : operations) {
+            int productId = operation.getProductId();
+            int quantity = operation.quantityOrDefault();
+            switch (operation.getOp()) {
+                case ADD:
+                    if (absolute.containsKey(productId)) {
+                        absolute.merge(productId, quantity, Integer::sum);
+                    } else {
+                        increments.merge(productId, quantity, Integer::sum);
+                    }
+                    break;
+                case SET:
+                    increments.remove(productId);
+                    absolute.put(productId, quantity);
+                    break;
+                default:
+                    increments.remove(productId);
+                    absolute.put(productId, 0);
+            }
+        }
+
+        List<int[]> sets = new ArrayList<>();
+        List<int[]> deletes = new ArrayList<>();
+        absolute.forEach((productId, quantity) -> {
+            if (quantity > 0) {
+                sets.add(new int[] { userId, productId, quantity });
+            } else {
+                deletes.add(new int[] { productId });
+            }
+        });
+        List<int[]> adds = new ArrayList<>();
+        increments.forEach((productId, quantity) -> adds.add(new int[] { userId, productId, quantity }));
+
+        try (Connection connection = getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                if (!sets.isEmpty()) {
+                    execute(connection, upsertClampedToStock(sets.size(), "v.quantity"), sets);
+                }
+                if (!adds.isEmpty()) {
+                    execute(connection, upsertClampedToStock(adds.size(), "shopping_cart.quantity + v.quantity"), adds);
+                }
+                if (!sets.isEmpty() || !adds.isEmpty() || !deletes.isEmpty()) {
+                    List<int[]> rows = new ArrayList<>();
+                    rows.add(new int[] { userId });
+                    rows.addAll(deletes);
+                    execute(connection, "DELETE FROM shopping_cart WHERE user_id = ? AND (quantity <= 0" +
+                            (deletes.isEmpty() ? "" : " OR product_id IN (" +
+                                    String.join(", ", Collections.nCopies(deletes.size(), "?")) + ")") + ");", rows);
+                }
+                connection.commit();
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            System.err.println("ERROR: SQL Exception applying cart operations for user " + userId + ": " + e.getMessage());
+            throw new RuntimeException("Error applying cart operations: " + e.getMessage(), e);
+        }
+        return getByUserId(userId);
+    }
+
+    /**
+     * Reads a user's cart as product id to quantity, without the product details.
+     */
+    public Map<Integer, Integer> getQuantities(int userId) {
+        Map<Integer, Integer> quantities = new HashMap<>();
+        jdbcTemplate.query("SELECT product_id, quantity FROM shopping_cart WHERE user_id = ?;",
+                row -> { quantities.put(row.getInt("product_id"), row.getInt("quantity")); }, userId);
+        return quantities;
+    }
+
+    /**
+     * Writes the given cart lines of many users in one transaction: user id to product id to quantity,
+     * where a quantity of 0 or less deletes the line.
+     * Lines are written with multi-row INSERT ... SELECT ... ON DUPLICATE KEY UPDATE and DELETE statements.
+     * A line whose user or product no longer exists is skipped rather than failing the whole batch on a foreign key.
+     */
+    public void saveQuantities(Map<Integer, Map<Integer, Integer>> quantitiesByUser) {
+        List<int[]> upserts = new ArrayList<>();
+        List<int[]> deletes = new ArrayList<>();
+        quantitiesByUser.forEach((userId, quantities) -> quantities.forEach((productId, quantity) -> {
+            if (quantity > 0) {
+                upserts.add(new int[] { userId, productId, quantity });
+            } else {
+                deletes.add(new int[] { userId, productId });
+            }
+        }));
+        if (upserts.isEmpty() && deletes.isEmpty()) {
+            return;
+        }
+
+        try (Connection connection = getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                for (int from = 0; from < upserts.size(); from += ROWS_PER_STATEMENT) {
+                    List<int[]> rows = upserts.subList(from, Math.min(upserts.size(), from + ROWS_PER_STATEMENT));
+                    execute(connection, "INSERT INTO shopping_cart (user_id, product_id, quantity) " +
+                            "SELECT v.user_id, v.product_id, v.quantity FROM (" + lineRows(rows.size()) + ") v " +
+                            "JOIN users u ON u.user_id = v.user_id JOIN products p ON p.product_id = v.product_id " +
+                            "ON DUPLICATE KEY UPDATE quantity = v.quantity;", rows);
+                }
+                for (int from = 0; from < deletes.size(); from += ROWS_PER_STATEMENT) {
+                    List<int[]> rows = deletes.subList(from, Math.min(deletes.size(), from + ROWS_PER_STATEMENT));
+                    execute(connection, "DELETE FROM shopping_cart WHERE (user_id, product_id) IN (" +
+                            String.join(", ", Collections.nCopies(rows.size(), "(?, ?)")) + ");", rows);
+                }
+                connection.commit();
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Error saving shopping cart lines: " + e.getMessage(), e);
+        }
+    }
+
+    // INSERT ... SELECT of (user_id, product_id, quantity) rows joined to their products, so a new line and an
+    // existing one are both clamped to the stock in the same statement. Products that do not exist are skipped.
+    private static String upsertClampedToStock(int rows, String updatedQuantity) {
+        return "INSERT INTO shopping_cart (user_id, product_id, quantity) " +
+                "SELECT v.user_id, p.product_id, LEAST(v.quantity, p.stock) FROM (" + lineRows(rows) + ") " +
+                "v JOIN products p ON p.product_id = v.product_id " +
+                "ON DUPLICATE KEY UPDATE quantity = LEAST(" + updatedQuantity + ", p.stock);";
+    }
+
+    // A derived table of (user_id, product_id, quantity) parameter rows.
+    private static String lineRows(int rows) {
+        return "SELECT ? AS user_id, ? AS product_id, ? AS quantity" +
+                String.join("", Collections.nCopies(rows - 1, " UNION ALL SELECT ?, ?, ?"));
+    }
+
+    private static void execute(Connection connection, String sql, List<int[]> rows) throws SQLException {
+        PreparedStatement statement = connection.prepareStatement(sql);
+        int index = 1;
+        for (int[] row : rows) {
+            for (int value : row) {
+                statement.setInt(index++, value);
+            }
+        }
+        statement.executeUpdate();
+    }
 }
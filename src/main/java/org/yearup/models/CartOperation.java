@@ -0,0 +1,85 @@
+package org.yearup.models;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * One change in a PATCH /cart request: add quantity (default 1) of a product, set its quantity (0 removes it),
+ * or remove it.
+ */
+public class CartOperation
+{
+    public enum Type
+    {
+        @JsonProperty("add") ADD,
+        @JsonProperty("set") SET,
+        @JsonProperty("remove") REMOVE
+    }
+
+    private Type op;
+    private int productId;
+    private Integer quantity;
+
+    public CartOperation()
+    {
+    }
+
+    public CartOperation(Type op, int productId, Integer quantity)
+    {
+        this.op = op;
+        this.productId = productId;
+        this.quantity = quantity;
+    }
+
+    public static CartOperation add(int productId, int quantity)
+    {
+        return new CartOperation(Type.ADD, productId, quantity);
+    }
+
+    public static CartOperation set(int productId, int quantity)
+    {
+        return new CartOperation(Type.SET, productId, quantity);
+    }
+
+    public static CartOperation remove(int productId)
+    {
+        return new CartOperation(Type.REMOVE, productId, null);
+    }
+
+    public Type getOp()
+    {
+        return op;
+    }
+
+    public void setOp(Type op)
+    {
+        this.op = op;
+    }
+
+    public int getProductId()
+    {
+        return productId;
+    }
+
+    public void setProductId(int productId)
+    {
+        this.productId = productId;
+    }
+
+    public Integer getQuantity()
+    {
+        return quantity;
+    }
+
+    public void setQuantity(Integer quantity)
+    {
+        this.quantity = quantity;
+    }
+
+    /**
+     * @return how many to add or set to: the given quantity, or 1 for an add without one.
+     */
+    public int quantityOrDefault()
+    {
+        return quantity != null ? quantity : (op == Type.ADD ? 1 : 0);
+    }
+}
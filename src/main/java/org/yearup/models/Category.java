@@ -5,6 +5,7 @@ public class Category
     private int categoryId;
     private String name;
     private String description;
+    private Integer parentId;
 
     public Category()
     {
@@ -17,6 +18,12 @@ public class Category
         this.description = description;
     }
 
+    public Category(int categoryId, String name, String description, Integer parentId)
+    {
+        this(categoryId, name, description);
+        this.parentId = parentId;
+    }
+
     public int getCategoryId()
     {
         return categoryId;
@@ -46,4 +53,17 @@ public class Category
     {
         this.description = description;
     }
+
+    /**
+     * @return the id of the category this one is a subcategory of, or null for a top-level category.
+     */
+    public Integer getParentId()
+    {
+        return parentId;
+    }
+
+    public void setParentId(Integer parentId)
+    {
+        this.parentId = parentId;
+    }
 }
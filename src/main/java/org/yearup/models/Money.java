@@ -0,0 +1,124 @@
+package org.yearup.models;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * An amount of money held as a whole number of cents, for prices, discounts and totals.
+ * Arithmetic is exact long arithmetic and throws ArithmeticException on overflow; amounts become BigDecimal only
+ * where they leave the application, in JSON and JDBC.
+ * Rounding rules: a decimal amount is rounded to the cent half up (away from zero on a tie, like MySQL's ROUND),
+ * a discount rate to the basis point half up, and a discount once per line, on price times quantity, half up.
+ */
+public final class Money implements Comparable<Money>
+{
+    public static final Money ZERO = new Money(0);
+
+    // basis points in 100%
+    public static final int WHOLE = 10000;
+
+    private final long cents;
+
+    private Money(long cents)
+    {
+        this.cents = cents;
+    }
+
+    public static Money ofCents(long cents)
+    {
+        return cents == 0 ? ZERO : new Money(cents);
+    }
+
+    /**
+     * @return the amount rounded to the cent, half up.
+     */
+    public static Money of(BigDecimal amount)
+    {
+        return ofCents(amount.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact());
+    }
+
+    /**
+     * @param rate a fraction, 0.15 for 15%.
+     * @return the rate in basis points (1/100 of a percent), rounded half up.
+     */
+    public static int basisPoints(BigDecimal rate)
+    {
+        return rate.movePointRight(4).setScale(0, RoundingMode.HALF_UP).intValueExact();
+    }
+
+    public long getCents()
+    {
+        return cents;
+    }
+
+    public boolean isZero()
+    {
+        return cents == 0;
+    }
+
+    public Money plus(Money other)
+    {
+        return other.cents == 0 ? this : ofCents(Math.addExact(cents, other.cents));
+    }
+
+    public Money minus(Money other)
+    {
+        return other.cents == 0 ? this : ofCents(Math.subtractExact(cents, other.cents));
+    }
+
+    public Money times(int quantity)
+    {
+        return quantity == 1 ? this : ofCents(Math.multiplyExact(cents, (long) quantity));
+    }
+
+    /**
+     * @return this price times quantity, less discountBasisPoints of that, with the discount rounded to the cent once.
+     */
+    public Money lineTotal(int quantity, int discountBasisPoints)
+    {
+        long gross = Math.multiplyExact(cents, (long) quantity);
+        if (discountBasisPoints == 0) {
+            return quantity == 1 ? this : ofCents(gross);
+        }
+        return ofCents(gross - divideHalfUp(Math.multiplyExact(gross, (long) discountBasisPoints), WHOLE));
+    }
+
+    public BigDecimal toBigDecimal()
+    {
+        return BigDecimal.valueOf(cents, 2);
+    }
+
+    private static long divideHalfUp(long dividend, long divisor)
+    {
+        long quotient = dividend / divisor;
+        long remainder = dividend % divisor;
+        if (Math.abs(remainder) * 2 >= divisor) {
+            quotient += Long.signum(dividend);
+        }
+        return quotient;
+    }
+
+    @Override
+    public int compareTo(Money other)
+    {
+        return Long.compare(cents, other.cents);
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        return o instanceof Money && ((Money) o).cents == cents;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Long.hashCode(cents);
+    }
+
+    @Override
+    public String toString()
+    {
+        return toBigDecimal().toPlainString();
+    }
+}
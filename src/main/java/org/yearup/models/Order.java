@@ -13,15 +13,17 @@ public class Order {
     private String city;
     private String state;
     private String zip;
-    private BigDecimal shippingAmount; // Optional: could be 0 or calculated
-    private BigDecimal total; // Total amount of the order
+    private Money shippingAmount; // Optional: could be 0 or calculated
+    private Money total; // Total amount of the order
+    private Money lineItemsTotal; // Sum of the line items, kept up to date as they are added
     private List<OrderLineItem> lineItems; // List of items in this order
 
     public Order() {
         this.lineItems = new ArrayList<>();
         this.date = LocalDateTime.now(); // Default to current time
-        this.shippingAmount = BigDecimal.ZERO; // Default to no shipping cost
-        this.total = BigDecimal.ZERO; // Will be calculated
+        this.shippingAmount = Money.ZERO; // Default to no shipping cost
+        this.total = Money.ZERO; // Will be calculated
+        this.lineItemsTotal = Money.ZERO;
     }
 
     public Order(int orderId, int userId, LocalDateTime date, String address, String city, String state, String zip, BigDecimal shippingAmount, BigDecimal total) {
@@ -33,8 +35,8 @@ public class Order {
         this.city = city;
         this.state = state;
         this.zip = zip;
-        this.shippingAmount = shippingAmount;
-        this.total = total;
+        setShippingAmount(shippingAmount);
+        setTotal(total);
     }
 
     // Getters and Setters
@@ -94,20 +96,21 @@ public class Order {
         this.zip = zip;
     }
 
+    // Amounts are held as Money and are decimals only in JSON and JDBC; a missing amount counts as zero.
     public BigDecimal getShippingAmount() {
-        return shippingAmount;
+        return shippingAmount.toBigDecimal();
     }
 
     public void setShippingAmount(BigDecimal shippingAmount) {
-        this.shippingAmount = shippingAmount;
+        this.shippingAmount = shippingAmount == null ? Money.ZERO : Money.of(shippingAmount);
     }
 
     public BigDecimal getTotal() {
-        return total;
+        return total.toBigDecimal();
     }
 
     public void setTotal(BigDecimal total) {
-        this.total = total;
+        this.total = total == null ? Money.ZERO : Money.of(total);
     }
 
     public List<OrderLineItem> getLineItems() {
@@ -121,19 +124,20 @@ public class Order {
         calculateTotalFromLineItems();
     }
 
+    // Adds the item's line total to the running sum instead of adding up every line again
     public void addLineItem(OrderLineItem item) {
         this.lineItems.add(item);
-        calculateTotalFromLineItems();
+        this.lineItemsTotal = this.lineItemsTotal.plus(item.getLineTotalAsMoney());
+        this.total = this.lineItemsTotal.plus(this.shippingAmount); // Include shipping in total
     }
 
     // Helper to calculate total based on line items
     public void calculateTotalFromLineItems() {
-        BigDecimal calculatedTotal = BigDecimal.ZERO;
+        Money calculatedTotal = Money.ZERO;
         for (OrderLineItem item : lineItems) {
-            if (item.getLineTotal() != null) {
-                calculatedTotal = calculatedTotal.add(item.getLineTotal());
-            }
+            calculatedTotal = calculatedTotal.plus(item.getLineTotalAsMoney());
         }
-        this.total = calculatedTotal.add(this.shippingAmount); // Include shipping in total
+        this.lineItemsTotal = calculatedTotal;
+        this.total = calculatedTotal.plus(this.shippingAmount); // Include shipping in total
     }
 }
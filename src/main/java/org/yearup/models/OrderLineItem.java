@@ -1,5 +1,7 @@
 package org.yearup.models;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import java.math.BigDecimal;
 
 public class OrderLineItem {
@@ -10,11 +12,11 @@ public class OrderLineItem {
     private int quantity;
     private BigDecimal salesPrice; // Price at the time of purchase
     private BigDecimal discount;   // Discount at the time of purchase (can be 0)
-    private BigDecimal lineTotal;  // Calculated total for this line item
+    private Money lineTotal;       // Calculated total for this line item
 
     public OrderLineItem() {
         this.discount = BigDecimal.ZERO;
-        this.lineTotal = BigDecimal.ZERO;
+        this.lineTotal = Money.ZERO;
     }
 
     // Constructor typically used when creating a new line item from a shopping cart item
@@ -102,26 +104,24 @@ public class OrderLineItem {
     }
 
     public BigDecimal getLineTotal() {
-        return lineTotal;
+        return lineTotal.toBigDecimal();
     }
 
-    // Private setter for lineTotal, as it should be calculated
-    private void setLineTotal(BigDecimal lineTotal) {
-        this.lineTotal = lineTotal;
+    @JsonIgnore
+    public Money getLineTotalAsMoney() {
+        return lineTotal;
     }
 
     /**
-     * Calculates and updates the lineTotal based on sales price, quantity, and discount.
+     * Calculates and updates the lineTotal based on sales price, quantity, and discount,
+     * with the same rounding as a cart line (see Money).
      */
     public void calculateLineTotal() {
         if (this.salesPrice != null) {
-            BigDecimal quantityDecimal = BigDecimal.valueOf(this.quantity);
-            BigDecimal subtotal = this.salesPrice.multiply(quantityDecimal);
-            BigDecimal discountAmount = subtotal.multiply(this.discount);
-
-            this.lineTotal = subtotal.subtract(discountAmount);
+            int discountBasisPoints = this.discount == null ? 0 : Money.basisPoints(this.discount);
+            this.lineTotal = Money.of(this.salesPrice).lineTotal(this.quantity, discountBasisPoints);
         } else {
-            this.lineTotal = BigDecimal.ZERO;
+            this.lineTotal = Money.ZERO;
         }
     }
 }
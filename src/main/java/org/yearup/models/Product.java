@@ -1,5 +1,7 @@
 package org.yearup.models;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import java.math.BigDecimal;
 
 public class Product
@@ -13,6 +15,7 @@ public class Product
     private int stock;
     private boolean isFeatured;
     private String imageUrl;
+    private Money priceAsMoney; // price in cents, made on first use; products are shared by many carts
 
     public Product()
     {
@@ -59,6 +62,18 @@ public class Product
     public void setPrice(BigDecimal price)
     {
         this.price = price;
+        this.priceAsMoney = null;
+    }
+
+    @JsonIgnore
+    public Money getPriceAsMoney()
+    {
+        Money money = priceAsMoney;
+        if (money == null) {
+            money = price == null ? Money.ZERO : Money.of(price);
+            priceAsMoney = money;
+        }
+        return money;
     }
 
     public int getCategoryId()
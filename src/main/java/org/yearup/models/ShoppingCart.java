@@ -1,40 +1,52 @@
 package org.yearup.models;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import java.math.BigDecimal;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
 public class ShoppingCart
 {
     private Map<Integer, ShoppingCartItem> items; // Map of productId to ShoppingCartItem
-    private BigDecimal total; // Added to match JSON output format
+    private Money total; // Kept up to date as items are added, changed and removed; a decimal only in JSON
 
     public ShoppingCart()
     {
         this.items = new HashMap<>();
-        this.total = BigDecimal.ZERO; // Initialize total
+        this.total = Money.ZERO; // Initialize total
     }
 
+    // Read-only, so every change goes through the methods below and the total follows it
     public Map<Integer, ShoppingCartItem> getItems()
     {
-        return items;
+        return Collections.unmodifiableMap(items);
     }
 
     public void setItems(Map<Integer, ShoppingCartItem> items)
     {
-        this.items = items;
+        this.items.values().forEach(item -> item.setCart(null));
+        this.items = new HashMap<>(items);
+        this.items.values().forEach(item -> item.setCart(this));
         calculateTotal(); // Recalculate total if the items map is directly replaced
     }
 
     // This getTotal will now return the stored calculated total
     public BigDecimal getTotal()
     {
-        return total;
+        return total.toBigDecimal();
     }
 
     // Setter for total (mostly for internal use by calculateTotal)
     public void setTotal(BigDecimal total) {
-        this.total = total;
+        this.total = Money.of(total);
+    }
+
+    @JsonIgnore
+    public Money getTotalAsMoney()
+    {
+        return total;
     }
 
     public boolean contains(int productId)
@@ -50,8 +62,14 @@ public class ShoppingCart
     public void addOrUpdateItem(ShoppingCartItem item) // Renamed from 'add' for clarity with upsert behavior
     {
         if (item != null && item.getProduct() != null) {
-            items.put(item.getProduct().getProductId(), item); // Use product's ID as the key
-            calculateTotal(); // Recalculate total after item change
+            ShoppingCartItem replaced = items.put(item.getProduct().getProductId(), item); // Use product's ID as the key
+            // Adjust the total by this line only, so loading a cart line by line stays linear
+            total = total.plus(item.getLineTotalAsMoney());
+            if (replaced != null) {
+                replaced.setCart(null);
+                total = total.minus(replaced.getLineTotalAsMoney());
+            }
+            item.setCart(this); // From now on a change to the item adjusts the total too
         }
     }
 
@@ -60,8 +78,17 @@ public class ShoppingCart
      * @param productId The ID of the product to remove.
      */
     public void removeItem(int productId) {
-        items.remove(productId);
-        calculateTotal(); // Recalculate total after item removal
+        ShoppingCartItem removed = items.remove(productId);
+        if (removed != null) {
+            removed.setCart(null);
+            total = total.minus(removed.getLineTotalAsMoney()); // Adjust the total by the removed line only
+        }
+    }
+
+    // Called by an item in this cart when its line total changes
+    void lineTotalChanged(Money previous, Money current)
+    {
+        total = total.minus(previous).plus(current);
     }
 
     public ShoppingCartItem get(int productId)
@@ -75,11 +102,9 @@ public class ShoppingCart
      */
     public void calculateTotal()
     {
-        BigDecimal cartTotal = BigDecimal.ZERO;
+        Money cartTotal = Money.ZERO;
         for (ShoppingCartItem item : items.values()) {
-            if (item.getLineTotal() != null) {
-                cartTotal = cartTotal.add(item.getLineTotal());
-            }
+            cartTotal = cartTotal.plus(item.getLineTotalAsMoney());
         }
         this.total = cartTotal;
     }
@@ -88,7 +113,8 @@ public class ShoppingCart
      * Clears all items from the shopping cart and resets the total to zero.
      */
     public void clear() {
+        this.items.values().forEach(item -> item.setCart(null));
         this.items.clear();
-        this.total = BigDecimal.ZERO;
+        this.total = Money.ZERO;
     }
 }
@@ -8,14 +8,16 @@ public class ShoppingCartItem
     private Product product;           // Stores the associated Product object
     private int quantity;              // Stores the quantity of this product in the cart
     private BigDecimal discountPercent; // Stores any discount percentage for this item
-    private BigDecimal lineTotal;       // Stores the calculated total for this specific line item
+    private int discountBasisPoints;    // The same discount in basis points, used for the calculation
+    private Money lineTotal;            // Stores the calculated total for this specific line item
+    private ShoppingCart cart;          // The cart holding this item, told when the line total changes
 
     // Default constructor: Initializes an empty shopping cart item
     public ShoppingCartItem()
     {
         this.quantity = 0;             // Default quantity to 0 for a newly created empty item
         this.discountPercent = BigDecimal.ZERO; // Default discount to 0
-        this.lineTotal = BigDecimal.ZERO;      // Default line total to 0
+        this.lineTotal = Money.ZERO;           // Default line total to 0
     }
 
     // Parameterized constructor: For creating an item with a product and initial quantity
@@ -59,18 +61,21 @@ public class ShoppingCartItem
     public void setDiscountPercent(BigDecimal discountPercent)
     {
         this.discountPercent = discountPercent;
+        this.discountBasisPoints = discountPercent == null ? 0 : Money.basisPoints(discountPercent);
         calculateLineTotal(); // Recalculate lineTotal whenever the discount changes
     }
 
-    // Getter for Line Total (returns the stored calculated value)
+    // Getter for Line Total (returns the stored calculated value, as a decimal for JSON)
     public BigDecimal getLineTotal()
     {
-        return lineTotal;
+        return lineTotal.toBigDecimal();
     }
 
-    // Private setter for lineTotal - it should be calculated, not set directly from outside
-    private void setLineTotal(BigDecimal lineTotal) {
-        this.lineTotal = lineTotal;
+    // The line total in cents, for adding up totals without converting to decimal
+    @JsonIgnore
+    public Money getLineTotalAsMoney()
+    {
+        return lineTotal;
     }
 
     // Provides the Product ID, ignoring it during JSON serialization
@@ -88,20 +93,26 @@ public class ShoppingCartItem
      * Calculates the line total for this shopping cart item based on
      * product price, quantity, and discount. Updates the 'lineTotal' field.
      * This method should be called whenever product, quantity, or discountPercent changes.
+     * The discount is rounded to the cent once for the whole line (see Money).
+     * The cart holding the item, if any, adjusts its total by the difference.
      */
     public void calculateLineTotal()
     {
+        Money previous = this.lineTotal;
         // Ensure product and its price are available before calculating
         if (this.product != null && this.product.getPrice() != null) {
-            BigDecimal basePrice = this.product.getPrice();
-            BigDecimal currentQuantity = BigDecimal.valueOf(this.quantity); // Convert int quantity to BigDecimal
-
-            BigDecimal subTotal = basePrice.multiply(currentQuantity);
-            BigDecimal discountAmount = subTotal.multiply(this.discountPercent); // Use this.discountPercent
-
-            this.lineTotal = subTotal.subtract(discountAmount);
+            this.lineTotal = this.product.getPriceAsMoney().lineTotal(this.quantity, this.discountBasisPoints);
         } else {
-            this.lineTotal = BigDecimal.ZERO; // Set to zero if product or price is not available
+            this.lineTotal = Money.ZERO; // Set to zero if product or price is not available
+        }
+        if (this.cart != null) {
+            this.cart.lineTotalChanged(previous, this.lineTotal);
         }
     }
+
+    // Called by ShoppingCart as the item is added to it (cart) or taken out of it (null)
+    void setCart(ShoppingCart cart)
+    {
+        this.cart = cart;
+    }
 }
@@ -0,0 +1,130 @@
+package org.yearup.controllers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.yearup.data.catalog.CatalogEngine;
+import org.yearup.data.catalog.CatalogListener;
+import org.yearup.data.mysql.MySqlCatalogLoader;
+import org.yearup.models.Category;
+import org.yearup.models.Product;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.yearup.models.TestProducts.product;
+
+class CatalogResponseCacheTest
+{
+    private CatalogResponseCache cache;
+    private final AtomicInteger builds = new AtomicInteger();
+    private final List<CatalogListener> listeners = new ArrayList<>();
+    private CatalogEngine catalog;
+
+    @BeforeEach
+    public void setup()
+    {
+        MySqlCatalogLoader loader = mock(MySqlCatalogLoader.class);
+        when(loader.loadCategories()).thenReturn(List.of(new Category(1, "Electronics", "Gadgets")));
+        when(loader.loadProducts()).thenReturn(List.of());
+
+        catalog = new CatalogEngine(loader, listeners);
+        cache = new CatalogResponseCache(catalog, new ObjectMapper());
+    }
+
+    @Test
+    public void respond_shouldNotCache_whileListenersAreStillApplyingAChange()
+    {
+        // arrange: a request arrives after the new snapshot is published, before the listeners have caught up
+        MockHttpServletResponse during = new MockHttpServletResponse();
+        listeners.add(new CatalogListener()
+        {
+            @Override
+            public void productChanged(Product before, Product after)
+            {
+                cache.respond("categories", new ServletWebRequest(new MockHttpServletRequest("GET", "/categories"), during),
+                        CatalogResponseCacheTest.this::body);
+            }
+        });
+        catalog.snapshot();
+
+        // act
+        catalog.productSaved(product(1).name("Smartphone").price("499.99").stock(5).build());
+        MockHttpServletResponse after = new MockHttpServletResponse();
+        cache.respond("categories", new ServletWebRequest(new MockHttpServletRequest("GET", "/categories"), after), this::body);
+
+        // assert
+        assertNull(during.getHeader("ETag"), "Because the body may hold listener data older than the version.");
+        assertNotNull(after.getHeader("ETag"));
+        assertEquals(2, builds.get(), "Because the body built before the listeners finished was not cached.");
+    }
+
+    @Test
+    public void respond_shouldSerializeOncePerVersion_andServeBothEncodings() throws Exception
+    {
+        // act
+        ResponseEntity<byte[]> plain = cache.respond("categories", request(null), this::body);
+        ResponseEntity<byte[]> gzipped = cache.respond("categories", request("gzip, deflate, br"), this::body);
+
+        // assert
+        assertEquals(1, builds.get(), "Because the second request should be served from the cache.");
+        assertEquals("gzip", gzipped.getHeaders().getFirst("Content-Encoding"));
+        byte[] unzipped = new GZIPInputStream(new ByteArrayInputStream(gzipped.getBody())).readAllBytes();
+        assertArrayEquals(plain.getBody(), unzipped, "Because both variants hold the same JSON.");
+    }
+
+    @Test
+    public void respond_shouldReturnNull_whenTheClientHasTheCurrentVersion()
+    {
+        // arrange
+        MockHttpServletResponse first = new MockHttpServletResponse();
+        cache.respond("categories", new ServletWebRequest(new MockHttpServletRequest("GET", "/categories"), first), this::body);
+        String etag = first.getHeader("ETag");
+
+        // act
+        MockHttpServletResponse second = new MockHttpServletResponse();
+        ResponseEntity<byte[]> response = cache.respond("categories",
+                new ServletWebRequest(get(null, etag), second), this::body);
+
+        // assert
+        assertNull(response);
+        assertEquals(304, second.getStatus());
+    }
+
+    @Test
+    public void acceptsGzip_shouldHonourQualityValues()
+    {
+        assertTrue(CatalogResponseCache.acceptsGzip("br;q=1.0, gzip;q=0.8"));
+        assertFalse(CatalogResponseCache.acceptsGzip("gzip;q=0"));
+        assertFalse(CatalogResponseCache.acceptsGzip("identity"));
+    }
+
+    private Object body()
+    {
+        builds.incrementAndGet();
+        return List.of(new Category(1, "Electronics", "Gadgets"));
+    }
+
+    private static ServletWebRequest request(String acceptEncoding)
+    {
+        return new ServletWebRequest(get(acceptEncoding, null), new MockHttpServletResponse());
+    }
+
+    private static MockHttpServletRequest get(String acceptEncoding, String ifNoneMatch)
+    {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/categories");
+        if (acceptEncoding != null) request.addHeader("Accept-Encoding", acceptEncoding);
+        if (ifNoneMatch != null) request.addHeader("If-None-Match", ifNoneMatch);
+        return request;
+    }
+}
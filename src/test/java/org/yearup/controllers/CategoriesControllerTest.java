@@ -0,0 +1,139 @@
+package org.yearup.controllers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.WebRequest;
+import org.yearup.data.CategoryDao;
+import org.yearup.data.CategoryStats;
+import org.yearup.data.catalog.CatalogEngine;
+import org.yearup.data.catalog.CatalogProductDao;
+import org.yearup.data.catalog.ProductSearchCache;
+import org.yearup.data.catalog.ProductTextIndex;
+import org.yearup.data.mysql.MySqlCatalogLoader;
+import org.yearup.data.mysql.MySqlProductDao;
+import org.yearup.models.Category;
+import org.yearup.models.Product;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.yearup.models.TestProducts.product;
+
+class CategoriesControllerTest
+{
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Category electronics = new Category(1, "Electronics", "Gadgets");
+    private final Category fashion = new Category(2, "Fashion", "Clothes");
+    private CategoriesController controller;
+
+    @BeforeEach
+    public void setup()
+    {
+        // 150 products in Electronics, more than one default page, and 2 in Fashion
+        List<Product> products = new ArrayList<>();
+        for (int id = 1; id <= 150; id++) {
+            products.add(product(id).build());
+        }
+        products.add(product(151).category(2).build());
+        products.add(product(152).category(2).build());
+
+        MySqlCatalogLoader loader = mock(MySqlCatalogLoader.class);
+        when(loader.loadCategories()).thenReturn(List.of(electronics, fashion));
+        when(loader.loadProducts()).thenReturn(products);
+        CatalogEngine catalog = new CatalogEngine(loader, List.of());
+
+        CategoryDao categoryDao = mock(CategoryDao.class);
+        when(categoryDao.getAllCategories()).thenReturn(List.of(electronics, fashion));
+        when(categoryDao.getById(1)).thenReturn(electronics);
+        when(categoryDao.getStats()).thenReturn(Map.of(1, CategoryStats.empty(1), 2, CategoryStats.empty(2)));
+
+        CatalogProductDao productDao = new CatalogProductDao(mock(MySqlProductDao.class), catalog, new ProductTextIndex(),
+                new ProductSearchCache(1000));
+        controller = new CategoriesController(categoryDao, productDao, catalog, new CatalogResponseCache(catalog, objectMapper));
+    }
+
+    @Test
+    public void withoutExpand_shouldReturnTheCategoryFieldsOnly() throws IOException
+    {
+        // arrange: the category as plain JSON, plus the figures every category response carries
+        Set<String> expected = new HashSet<>();
+        objectMapper.valueToTree(electronics).fieldNames().forEachRemaining(expected::add);
+        expected.addAll(List.of("categoryId", "name", "description", "parentId", "productCount", "minPrice", "maxPrice",
+                "inStockCount"));
+
+        // act
+        Map<String, Object> category = body(controller.getById(1, null, null, null, null, null, null, request()));
+        List<Map<String, Object>> all = body(controller.getAll(null, null, null, null, null, request()));
+
+        // assert
+        assertEquals(expected, category.keySet(), "Because without expand the body must not change.");
+        assertEquals(2, all.size());
+        all.forEach(body -> assertEquals(expected, body.keySet(), "Because without expand no products are embedded."));
+    }
+
+    @Test
+    public void getById_withExpand_shouldEmbed100Products_andContinueAfterTheCursor() throws IOException
+    {
+        // act
+        Map<String, Object> first = body(controller.getById(1, "products", null, null, null, null, null, request()));
+        String cursor = (String) first.get("nextCursor");
+        Map<String, Object> second = body(controller.getById(1, "products", null, null, cursor, null, null, request()));
+
+        // assert
+        assertEquals(100, products(first).size(), "Because an expanded category holds 100 products unless limit says otherwise.");
+        assertEquals(1, productIds(first).get(0));
+        assertEquals(50, products(second).size(), "Because the second page holds the remaining 50.");
+        assertEquals(101, productIds(second).get(0), "Because the next page starts right after the cursor.");
+        assertNull(second.get("nextCursor"), "Because there is nothing after the last page.");
+    }
+
+    @Test
+    public void getAll_withExpandAndLimit_shouldEmbedThatManyProducts_perCategory() throws IOException
+    {
+        // act
+        List<Map<String, Object>> all = body(controller.getAll("products", null, 10, null, null, request()));
+
+        // assert
+        assertEquals(10, products(all.get(0)).size());
+        assertFalse(((String) all.get(0).get("nextCursor")).isEmpty(), "Because Electronics has more than 10 products.");
+        assertEquals(2, products(all.get(1)).size());
+        assertNull(all.get(1).get("nextCursor"), "Because both Fashion products fit in the page.");
+    }
+
+    private static WebRequest request()
+    {
+        return new ServletWebRequest(new MockHttpServletRequest("GET", "/categories"), new MockHttpServletResponse());
+    }
+
+    // a JSON object reads as a Map, an array as a List
+    @SuppressWarnings("unchecked")
+    private <T> T body(ResponseEntity<byte[]> response) throws IOException
+    {
+        return (T) objectMapper.readValue(response.getBody(), Object.class);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> products(Map<String, Object> category)
+    {
+        return (List<Map<String, Object>>) category.get("products");
+    }
+
+    private static List<Integer> productIds(Map<String, Object> category)
+    {
+        return products(category).stream().map(product -> (Integer) product.get("productId")).toList();
+    }
+}
@@ -0,0 +1,111 @@
+package org.yearup.controllers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.yearup.data.CategoryDao;
+import org.yearup.data.ProductDao;
+import org.yearup.data.catalog.CatalogEngine;
+import org.yearup.data.catalog.ProductSearchCache;
+import org.yearup.data.catalog.ProductSuggester;
+import org.yearup.data.catalog.SpellingSuggester;
+import org.yearup.models.Product;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.yearup.models.TestProducts.product;
+
+class ProductExportTest
+{
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    // CSV cannot tell an empty field from a missing one, and the import reads both as null, so the text fields
+    // compared below are either filled in or null
+    private final List<Product> products = List.of(
+            product(1).name("Lamp, \"Deluxe\"").price("19.99").description("Bright,\nwarm light").color("Brass").imageUrl("lamp.jpg").build(),
+            product(2).name("Desk").price("199.00").description("Oak top\r\nsteel legs, \"as new\"").stock(0).featured(true)
+                    .imageUrl("desk.jpg").build(),
+            product(3).name("Rug").price("49.5").description(null).imageUrl("rug.jpg").build());
+    private ProductDao productDao;
+    private ProductsController controller;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setup()
+    {
+        productDao = mock(ProductDao.class);
+        doAnswer(invocation -> {
+            products.forEach(invocation.getArgument(0, Consumer.class));
+            return null;
+        }).when(productDao).streamAll(any());
+        controller = new ProductsController(productDao, mock(CategoryDao.class), mock(CatalogEngine.class),
+                mock(CatalogResponseCache.class), mock(ProductSearchCache.class), mock(ProductSuggester.class),
+                mock(SpellingSuggester.class), objectMapper, new BigDecimal[] { BigDecimal.ZERO, new BigDecimal("100") }, 3);
+    }
+
+    @Test
+    public void csvExport_shouldReadBackThroughTheImport_withCommasQuotesAndLineBreaks() throws Exception
+    {
+        // arrange
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        List<Product> imported = new ArrayList<>();
+        when(productDao.createAll(anyList())).thenAnswer(invocation -> {
+            List<Product> chunk = invocation.getArgument(0);
+            imported.addAll(chunk);
+            return chunk;
+        });
+
+        // act
+        controller.exportProducts("csv", response);
+        new ProductImport(productDao, objectMapper, Set.of(1), 100, new ByteArrayOutputStream())
+                .readCsv(new BufferedReader(new StringReader(response.getContentAsString())));
+
+        // assert
+        assertEquals("text/csv;charset=UTF-8", response.getContentType());
+        assertEquals(products.size(), imported.size(), "Because every exported product should be imported again.");
+        for (int i = 0; i < products.size(); i++) {
+            Product expected = products.get(i);
+            Product actual = imported.get(i);
+            assertEquals(expected.getName(), actual.getName());
+            assertEquals(0, expected.getPrice().compareTo(actual.getPrice()));
+            assertEquals(expected.getCategoryId(), actual.getCategoryId());
+            assertEquals(expected.getDescription(), actual.getDescription(), "Because quoted fields keep their commas, quotes and line breaks.");
+            assertEquals(expected.getColor(), actual.getColor());
+            assertEquals(expected.getStock(), actual.getStock());
+            assertEquals(expected.isFeatured(), actual.isFeatured());
+            assertEquals(expected.getImageUrl(), actual.getImageUrl());
+        }
+    }
+
+    @Test
+    public void ndjsonExport_shouldWriteOneLinePerProduct() throws Exception
+    {
+        // arrange
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // act
+        controller.exportProducts("ndjson", response);
+
+        // assert
+        String[] lines = response.getContentAsString().split("\n");
+        assertEquals(products.size(), lines.length, "Because line breaks inside a field are escaped in JSON.");
+        for (int i = 0; i < products.size(); i++) {
+            Product actual = objectMapper.readValue(lines[i], Product.class);
+            assertEquals(products.get(i).getProductId(), actual.getProductId());
+            assertEquals(products.get(i).getDescription(), actual.getDescription());
+        }
+    }
+}
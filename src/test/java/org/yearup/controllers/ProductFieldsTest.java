@@ -0,0 +1,31 @@
+package org.yearup.controllers;
+
+import org.junit.jupiter.api.Test;
+import org.yearup.models.Product;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductFieldsTest
+{
+    @Test
+    public void parse_shouldKeepTheModelOrder_andRejectUnknownFields()
+    {
+        // arrange
+        Product product = new Product(7, "Desk Lamp", new BigDecimal("19.99"), 1, "A long description", "Black", 3, true, "lamp.jpg");
+
+        // act
+        Map<String, Object> projected = ProductFields.parse("price, NAME,productId", null).project(product);
+
+        // assert
+        assertEquals(List.of("productId", "name", "price"), List.copyOf(projected.keySet()));
+        assertEquals(new BigDecimal("19.99"), projected.get("price"));
+        assertFalse(ProductFields.parse(null, "list").project(product).containsKey("description"),
+                "Because the list view leaves out the description.");
+        assertNull(ProductFields.parse(null, null), "Because no parameter means the whole product.");
+        assertThrows(IllegalArgumentException.class, () -> ProductFields.parse("name,secret", null));
+    }
+}
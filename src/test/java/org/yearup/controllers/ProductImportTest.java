@@ -0,0 +1,56 @@
+package org.yearup.controllers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.yearup.data.ProductDao;
+import org.yearup.models.Product;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ProductImportTest
+{
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void readCsv_shouldInsertValidRowsInChunks_andReportInvalidOnes() throws Exception
+    {
+        // arrange
+        ProductDao productDao = mock(ProductDao.class);
+        List<Integer> chunkSizes = new ArrayList<>();
+        when(productDao.createAll(anyList())).thenAnswer(invocation -> {
+            List<Product> chunk = invocation.getArgument(0);
+            chunkSizes.add(chunk.size());
+            return chunk;
+        });
+
+        String csv = "name,price,category_id,description\n" +
+                "Desk Lamp,19.99,1,\"Bright, \"\"warm\"\" light\"\n" +
+                "Chair,not a price,1,\n" +
+                "Desk,199.00,1,\"Oak top\nsteel legs\"\n" +
+                "Rug,49.50,9,\n" +
+                "Shelf,89.00,2,\n";
+        ByteArrayOutputStream events = new ByteArrayOutputStream();
+
+        // act
+        new ProductImport(productDao, objectMapper, Set.of(1, 2), 2, events).readCsv(new BufferedReader(new StringReader(csv)));
+
+        // assert
+        assertEquals(List.of(2, 1), chunkSizes, "Because the three valid rows should be inserted two at a time.");
+        String output = events.toString(StandardCharsets.UTF_8);
+        assertTrue(output.contains("{\"type\":\"error\",\"row\":2,"), "Because row 2 has an invalid price.");
+        assertTrue(output.contains("{\"type\":\"error\",\"row\":4,\"message\":\"category 9 does not exist\"}"));
+        assertTrue(output.endsWith("{\"type\":\"summary\",\"rowsRead\":5,\"inserted\":3,\"failed\":2}\n"));
+    }
+}
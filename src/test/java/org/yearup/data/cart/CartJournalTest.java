@@ -0,0 +1,99 @@
+package org.yearup.data.cart;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CartJournalTest
+{
+    @TempDir
+    Path directory;
+
+    @Test
+    public void reopen_shouldRecoverTheRecords_inOrder_acrossSegmentsAndGrowth()
+    {
+        // arrange: more records than the 4 KB segment holds, then a flush that never completed
+        CartJournal journal = new CartJournal(directory.toString(), 4096, true);
+        for (int i = 1; i <= 200; i++) {
+            journal.set(7, i, i);
+        }
+        journal.seal();
+        journal.clear(7);
+        journal.set(7, 1, 3);
+        journal.sync();
+
+        // act
+        List<CartJournal.Record> records = new CartJournal(directory.toString(), 4096, true).recovered();
+
+        // assert
+        assertEquals(202, records.size());
+        assertEquals(200, records.get(199).getQuantity());
+        assertTrue(records.get(200).isClear(), "Because records come back in the order they were written.");
+        assertEquals(3, records.get(201).getQuantity());
+    }
+
+    @Test
+    public void reopen_shouldDropABatch_cutShortByACrash() throws IOException
+    {
+        // arrange: a whole batch, then one whose last record never made it to disk
+        Map<Integer, Integer> lines = new LinkedHashMap<>();
+        lines.put(2, 1);
+        lines.put(3, 1);
+        lines.put(4, 1);
+        CartJournal journal = new CartJournal(directory.toString(), 4096, true);
+        journal.setAll(7, Map.of(1, 5));
+        journal.setAll(7, lines);
+        journal.close();
+        try (RandomAccessFile file = new RandomAccessFile(directory.resolve("cart-journal-0.log").toFile(), "rw")) {
+            file.seek(CartJournal.HEADER_SIZE + 3L * CartJournal.RECORD_SIZE + 24);
+            file.writeInt(0);
+        }
+
+        // act
+        CartJournal reopened = new CartJournal(directory.toString(), 4096, true);
+        reopened.set(7, 9, 1);
+        reopened.close();
+
+        // assert
+        assertEquals(List.of(5), quantities(reopened.recovered()), "Because none of the unfinished batch may be replayed.");
+        assertEquals(List.of(1, 9), new CartJournal(directory.toString(), 4096, true).recovered().stream()
+                .map(CartJournal.Record::getProductId)
+                .collect(Collectors.toList()), "Because the next record is written over the unfinished batch.");
+    }
+
+    @Test
+    public void release_shouldEmptyOnlyTheSealedSegment()
+    {
+        // arrange
+        CartJournal journal = new CartJournal(directory.toString(), 4096, true);
+        journal.set(7, 1, 1);
+        journal.set(7, 2, 1);
+        journal.seal();
+        journal.set(7, 1, 2); // written while the flush runs
+
+        // act
+        journal.release();
+        journal.sync();
+
+        // assert
+        List<Integer> quantities = quantities(new CartJournal(directory.toString(), 4096, true).recovered());
+        assertEquals(List.of(2), quantities, "Because only the change made after the seal may still be missing from MySQL.");
+    }
+
+    private static List<Integer> quantities(List<CartJournal.Record> records)
+    {
+        return records.stream()
+                .map(CartJournal.Record::getQuantity)
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,236 @@
+package org.yearup.data.cart;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.yearup.data.catalog.CatalogEngine;
+import org.yearup.data.mysql.MySqlCatalogLoader;
+import org.yearup.data.mysql.MySqlShoppingCartDao;
+import org.yearup.models.CartOperation;
+import org.yearup.models.ShoppingCart;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+import static org.yearup.models.TestProducts.product;
+
+class WriteBehindShoppingCartDaoTest
+{
+    @TempDir
+    Path journalDirectory;
+
+    private CatalogEngine catalog;
+    private MySqlShoppingCartDao delegate;
+    private WriteBehindShoppingCartDao cartDao;
+
+    @BeforeEach
+    public void setup()
+    {
+        MySqlCatalogLoader loader = mock(MySqlCatalogLoader.class);
+        when(loader.loadCategories()).thenReturn(List.of());
+        when(loader.loadProducts()).thenReturn(List.of(product(1).price("9.99").build(), product(2).price("20.00").build(),
+                product(3).price("1.00").stock(100000).build(), product(4).price("5.00").stock(0).build()));
+
+        delegate = mock(MySqlShoppingCartDao.class);
+        when(delegate.getQuantities(7)).thenReturn(new HashMap<>(Map.of(2, 1)));
+        catalog = new CatalogEngine(loader, List.of());
+        cartDao = new WriteBehindShoppingCartDao(delegate, catalog, journal(), 1800000);
+    }
+
+    @Test
+    public void changes_shouldBeServedFromMemory_andFlushedAsOneBatch()
+    {
+        // act
+        cartDao.addProductToCart(7, 1);
+        cartDao.addProductToCart(7, 1);
+        cartDao.deleteProductFromCart(7, 2);
+        ShoppingCart cart = cartDao.getByUserId(7);
+
+        // assert
+        assertEquals(2, cart.get(1).getQuantity());
+        assertEquals(new BigDecimal("19.98"), cart.getTotal());
+        verify(delegate, times(1)).getQuantities(7);
+        verify(delegate, never()).saveQuantities(any());
+
+        cartDao.flush();
+        verify(delegate).saveQuantities(Map.of(7, Map.of(1, 2, 2, 0)));
+
+        cartDao.flush();
+        verify(delegate, times(1)).saveQuantities(any()); // "Because nothing changed since the last flush."
+    }
+
+    @Test
+    public void flush_shouldKeepTheChanges_whenMySqlFails()
+    {
+        // arrange: the batch and the retry on its own both fail, then MySQL is back
+        cartDao.addProductToCart(7, 1);
+        doThrow(new RuntimeException("connection refused")).doThrow(new RuntimeException("connection refused"))
+                .doNothing().when(delegate).saveQuantities(any());
+
+        // act
+        cartDao.flush();
+        cartDao.flush();
+
+        // assert
+        verify(delegate, times(3)).saveQuantities(Map.of(7, Map.of(1, 1)));
+    }
+
+    @Test
+    public void flush_shouldWriteTheOtherCarts_whenOneCartFails()
+    {
+        // arrange: user 8's line cannot be written, for example because the user is gone
+        when(delegate.getQuantities(8)).thenReturn(new HashMap<>());
+        cartDao.addProductToCart(7, 1);
+        cartDao.addProductToCart(8, 1);
+        doThrow(new RuntimeException("foreign key")).when(delegate).saveQuantities(Map.of(7, Map.of(1, 1), 8, Map.of(1, 1)));
+        doThrow(new RuntimeException("foreign key")).when(delegate).saveQuantities(Map.of(8, Map.of(1, 1)));
+
+        // act
+        cartDao.flush();
+
+        // assert
+        verify(delegate).saveQuantities(Map.of(7, Map.of(1, 1)));
+
+        // the flush emptied the journal, but user 8's line was journaled again and survives a restart
+        doNothing().when(delegate).saveQuantities(any());
+        WriteBehindShoppingCartDao restarted = new WriteBehindShoppingCartDao(delegate, catalog, journal(), 1800000);
+        restarted.recover();
+        restarted.flushRecovered();
+        verify(delegate, times(2)).saveQuantities(Map.of(8, Map.of(1, 1)));
+        verify(delegate, times(1)).saveQuantities(Map.of(7, Map.of(1, 1))); // "Because user 7's line was written."
+    }
+
+    @Test
+    public void recover_shouldReplayTheChangesThatNeverReachedMySql()
+    {
+        // arrange: two changes, then the node dies before flushing
+        cartDao.addProductToCart(7, 1);
+        cartDao.updateProductQuantity(7, 2, 4);
+
+        // act
+        WriteBehindShoppingCartDao restarted = new WriteBehindShoppingCartDao(delegate, catalog, journal(), 1800000);
+        restarted.recover();
+        restarted.flushRecovered();
+
+        // assert
+        verify(delegate).saveQuantities(Map.of(7, Map.of(1, 1, 2, 4)));
+        assertEquals(4, restarted.getByUserId(7).get(2).getQuantity());
+
+        WriteBehindShoppingCartDao restartedAgain = new WriteBehindShoppingCartDao(delegate, catalog, journal(), 1800000);
+        restartedAgain.recover();
+        restartedAgain.flushRecovered();
+        verify(delegate, times(1)).saveQuantities(any()); // "Because the flush emptied the journal."
+    }
+
+    @Test
+    public void recover_shouldStartWithoutMySql_andKeepTheJournalUntilTheFlushSucceeds()
+    {
+        // arrange: a change that never reached MySQL, then a restart while MySQL is down
+        cartDao.addProductToCart(7, 1);
+        MySqlShoppingCartDao unreachable = mock(MySqlShoppingCartDao.class);
+        when(unreachable.getQuantities(7)).thenThrow(new RuntimeException("connection refused"));
+        WriteBehindShoppingCartDao restarted = new WriteBehindShoppingCartDao(unreachable, catalog, journal(), 1800000);
+
+        // act
+        restarted.recover();
+        restarted.flushRecovered();
+
+        // assert
+        verify(unreachable, never()).saveQuantities(any());
+        WriteBehindShoppingCartDao restartedAgain = new WriteBehindShoppingCartDao(delegate, catalog, journal(), 1800000);
+        restartedAgain.recover();
+        restartedAgain.flushRecovered();
+        verify(delegate).saveQuantities(Map.of(7, Map.of(1, 1))); // "Because the failed flush kept the journal."
+    }
+
+    @Test
+    public void applyOperations_shouldApplyEveryOperationInOrder_andReturnTheResultingCart()
+    {
+        // act
+        ShoppingCart cart = cartDao.applyOperations(7, List.of(
+                CartOperation.add(1, 2),
+                CartOperation.set(2, 0),
+                CartOperation.add(1, 1),
+                CartOperation.set(2, 5),
+                CartOperation.remove(2)));
+
+        // assert
+        assertEquals(3, cart.get(1).getQuantity());
+        assertFalse(cart.contains(2), "Because the last operation on product 2 removed it.");
+        cartDao.flush();
+        verify(delegate).saveQuantities(Map.of(7, Map.of(1, 3, 2, 0)));
+    }
+
+    @Test
+    public void addProductToCart_shouldNotLoseIncrements_underParallelClients() throws Exception
+    {
+        // arrange: several clients adding the same product to the same cart, released at the same moment
+        int clients = 8;
+        int addsPerClient = 250;
+        ExecutorService executor = Executors.newFixedThreadPool(clients);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                for (int j = 0; j < addsPerClient; j++) {
+                    cartDao.addProductToCart(7, 3);
+                }
+                return null;
+            }));
+        }
+
+        // act
+        start.countDown();
+        for (Future<?> result : results) {
+            result.get();
+        }
+        executor.shutdown();
+        cartDao.flush();
+
+        // assert
+        assertEquals(clients * addsPerClient, cartDao.getByUserId(7).get(3).getQuantity(), "Because every add must be counted.");
+        verify(delegate).saveQuantities(Map.of(7, Map.of(3, clients * addsPerClient)));
+    }
+
+    @Test
+    public void quantities_shouldBeClampedToStock_andRemovedAtZero()
+    {
+        // act
+        for (int i = 0; i < 12; i++) {
+            cartDao.addProductToCart(7, 1);
+        }
+        cartDao.updateProductQuantity(7, 2, 50);
+        cartDao.addProductToCart(7, 4);
+        ShoppingCart cart = cartDao.applyOperations(7, List.of(CartOperation.set(4, 3), CartOperation.add(1, 5)));
+
+        // assert
+        assertEquals(10, cart.get(1).getQuantity(), "Because only 10 are in stock.");
+        assertEquals(10, cart.get(2).getQuantity(), "Because only 10 are in stock.");
+        assertFalse(cart.contains(4), "Because product 4 is out of stock.");
+
+        // act: the stock runs out while the product is in the cart
+        catalog.productsSaved(List.of(product(2).price("20.00").stock(0).build()));
+        cartDao.updateProductQuantity(7, 2, 1);
+
+        // assert
+        assertFalse(cartDao.getByUserId(7).contains(2), "Because a line clamped to 0 is removed.");
+    }
+
+    private CartJournal journal()
+    {
+        return new CartJournal(journalDirectory.toString(), 4096, true);
+    }
+}
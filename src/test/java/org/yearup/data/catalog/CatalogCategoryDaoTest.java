@@ -0,0 +1,83 @@
+package org.yearup.data.catalog;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.yearup.data.ShoppingCartDao;
+import org.yearup.data.mysql.MySqlCategoryDao;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class CatalogCategoryDaoTest
+{
+    private MySqlCategoryDao delegate;
+    private CatalogEngine catalog;
+    private ShoppingCartDao shoppingCartDao;
+    private CatalogCategoryDao categoryDao;
+
+    @BeforeEach
+    public void setup()
+    {
+        delegate = mock(MySqlCategoryDao.class);
+        catalog = mock(CatalogEngine.class);
+        shoppingCartDao = mock(ShoppingCartDao.class);
+        categoryDao = new CatalogCategoryDao(delegate, catalog, mock(CategoryAggregates.class), shoppingCartDao);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void delete_shouldDropEveryChunkFromTheCatalogAndCarts_asItCommits()
+    {
+        // arrange: two chunks are committed, then the third fails
+        doAnswer(invocation -> {
+            Consumer<List<Integer>> chunkDeleted = invocation.getArgument(1);
+            chunkDeleted.accept(List.of(1, 2));
+            chunkDeleted.accept(List.of(3));
+            throw new RuntimeException("lock wait timeout");
+        }).when(delegate).delete(eq(1), any(Consumer.class));
+
+        // act
+        assertThrows(RuntimeException.class, () -> categoryDao.delete(1));
+
+        // assert
+        verify(catalog).productsDeleted(List.of(1, 2));
+        verify(catalog).productsDeleted(List.of(3));
+        verify(shoppingCartDao).deleteShoppingCartItemsByProductIds(List.of(1, 2));
+        verify(shoppingCartDao).deleteShoppingCartItemsByProductIds(List.of(3));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void delete_shouldReloadTheCatalog_whenAChunkFails()
+    {
+        // arrange
+        doThrow(new RuntimeException("lock wait timeout")).when(delegate).delete(eq(1), any(Consumer.class));
+
+        // act
+        assertThrows(RuntimeException.class, () -> categoryDao.delete(1));
+
+        // assert
+        verify(catalog).reload();
+        verify(catalog, never()).categoryDeleted(1);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void delete_shouldLeaveTheCatalog_whenTheDeleteIsRefused()
+    {
+        // arrange
+        doThrow(new IllegalStateException("Category 1 still has 2 subcategories.")).when(delegate).delete(eq(1), any(Consumer.class));
+
+        // act
+        assertThrows(IllegalStateException.class, () -> categoryDao.delete(1));
+
+        // assert
+        verify(catalog, never()).reload();
+        verify(catalog, never()).categoryDeleted(1);
+    }
+}
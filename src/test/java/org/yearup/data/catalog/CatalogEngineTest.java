@@ -0,0 +1,202 @@
+package org.yearup.data.catalog;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.yearup.data.ProductFilter;
+import org.yearup.data.mysql.MySqlCatalogLoader;
+import org.yearup.models.Category;
+import org.yearup.models.Product;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+import static org.yearup.models.TestProducts.product;
+
+class CatalogEngineTest
+{
+    private MySqlCatalogLoader loader;
+    private CatalogEngine engine;
+
+    @BeforeEach
+    public void setup()
+    {
+        loader = mock(MySqlCatalogLoader.class);
+        when(loader.loadCategories()).thenReturn(List.of(
+                new Category(1, "Electronics", "Gadgets"),
+                new Category(2, "Fashion", "Clothes")));
+        when(loader.loadProducts()).thenReturn(List.of(
+                product(2).name("Laptop").price("899.99").category(1).build(),
+                product(1).name("Smartphone").price("499.99").category(1).build(),
+                product(3).name("Men's Jeans").price("59.99").category(2).build()));
+
+        engine = new CatalogEngine(loader, List.of());
+    }
+
+    @Test
+    public void snapshot_shouldLoadOnce_andIndexByCategory()
+    {
+        // act
+        CatalogSnapshot first = engine.snapshot();
+        CatalogSnapshot second = engine.snapshot();
+
+        // assert
+        assertSame(first, second, "Because the snapshot should only be loaded on first use.");
+        verify(loader, times(1)).loadProducts();
+        assertEquals(List.of(1, 2), first.getProductsByCategory(1).stream().map(Product::getProductId).toList());
+        assertEquals("Men's Jeans", first.getProduct(3).getName());
+        assertEquals("Fashion", first.getCategory(2).getName());
+    }
+
+    @Test
+    public void categoryStatsCorrected_shouldMoveTheVersionOn_withoutReloading()
+    {
+        // arrange
+        CatalogSnapshot before = engine.snapshot();
+
+        // act
+        engine.categoryStatsCorrected(new CategoryStatsCorrectedEvent(List.of(1)));
+
+        // assert
+        CatalogSnapshot after = engine.snapshot();
+        assertTrue(after.getVersion() > before.getVersion(), "Because responses cached for the old version hold the old figures.");
+        assertSame(before.getProduct(1), after.getProduct(1));
+        verify(loader, times(1)).loadProducts();
+    }
+
+    @Test
+    public void productSaved_shouldSwapSnapshot_withoutChangingThePreviousOne()
+    {
+        // arrange
+        CatalogSnapshot before = engine.snapshot();
+        Product moved = product(3).name("Men's Jeans").price("49.99").category(1).build();
+
+        // act
+        engine.productSaved(moved);
+        moved.setName("changed after save");
+
+        // assert
+        CatalogSnapshot after = engine.snapshot();
+        assertNotSame(before, after);
+        assertEquals(1, before.getProductsByCategory(2).size(), "Because published snapshots are immutable.");
+        assertTrue(after.getProductsByCategory(2).isEmpty());
+        assertEquals(3, after.getProductsByCategory(1).size());
+        assertEquals("Men's Jeans", after.getProduct(3).getName(), "Because the catalog keeps its own copy.");
+    }
+
+    @Test
+    public void categoryDeleted_shouldRemoveItsProducts()
+    {
+        // act
+        engine.categoryDeleted(1);
+
+        // assert
+        CatalogSnapshot snapshot = engine.snapshot();
+        assertNull(snapshot.getCategory(1));
+        assertNull(snapshot.getProduct(1));
+        assertEquals(1, snapshot.getProducts().size());
+    }
+
+    @Test
+    public void version_shouldIncreaseWithEveryWrite_andEveryReload()
+    {
+        // arrange
+        long loaded = engine.snapshot().getVersion();
+
+        // act
+        engine.productDeleted(1);
+        long afterWrite = engine.snapshot().getVersion();
+        engine.reload();
+        long afterReload = engine.snapshot().getVersion();
+
+        // assert
+        assertTrue(afterWrite > loaded, "Because a write changes the catalog.");
+        assertTrue(afterReload > afterWrite, "Because a reload may bring in other nodes' writes.");
+        assertNotEquals(engine.snapshot().getETag(), "\"" + afterWrite + "\"");
+    }
+
+    @Test
+    public void reload_shouldKeepTheSnapshotAndVersion_whenNothingChanged()
+    {
+        // arrange
+        CatalogListener listener = mock(CatalogListener.class);
+        engine = new CatalogEngine(loader, List.of(listener));
+        CatalogSnapshot loaded = engine.snapshot();
+
+        // act: the same rows, in another order and with the price at another scale
+        when(loader.loadProducts()).thenReturn(List.of(
+                product(1).name("Smartphone").price("499.990").category(1).build(),
+                product(3).name("Men's Jeans").price("59.99").category(2).build(),
+                product(2).name("Laptop").price("899.99").category(1).build()));
+        engine.reload();
+
+        // assert
+        assertSame(loaded, engine.snapshot(), "Because the database still holds the catalog the snapshot was built from.");
+        verify(listener, times(1)).catalogLoaded(any());
+        assertTrue(engine.isSettled(engine.snapshot()));
+    }
+
+    @Test
+    public void reload_shouldPublishANewVersion_whenAnotherNodeChangedAProduct()
+    {
+        // arrange
+        long loaded = engine.snapshot().getVersion();
+
+        // act
+        when(loader.loadProducts()).thenReturn(List.of(
+                product(1).name("Smartphone").price("449.99").category(1).build(),
+                product(2).name("Laptop").price("899.99").category(1).build(),
+                product(3).name("Men's Jeans").price("59.99").category(2).build()));
+        engine.reload();
+
+        // assert
+        assertTrue(engine.snapshot().getVersion() > loaded, "Because the smartphone's price changed in the database.");
+        assertEquals(new BigDecimal("449.99"), engine.snapshot().getProduct(1).getPrice());
+    }
+
+    @Test
+    public void featured_shouldFollowProductWrites()
+    {
+        // arrange
+        Product laptop = product(2).name("Laptop").price("899.99").category(1).build();
+        laptop.setFeatured(true);
+        Product jeans = product(3).name("Men's Jeans").price("59.99").category(2).build();
+        jeans.setFeatured(true);
+
+        // act
+        engine.productSaved(laptop);
+        engine.productSaved(jeans);
+        engine.productDeleted(3);
+
+        // assert
+        CatalogSnapshot snapshot = engine.snapshot();
+        assertEquals(List.of(2), snapshot.getFeatured().stream().map(Product::getProductId).toList());
+        assertEquals(1, snapshot.getFeaturedByCategory(1).size());
+        assertTrue(snapshot.getFeaturedByCategory(2).isEmpty(), "Because the only featured product in category 2 was deleted.");
+    }
+
+    @Test
+    public void descendants_shouldSearchTheWholeSubtree_andFollowCategoryMoves()
+    {
+        // arrange: Electronics > Phones > Cases
+        engine.categorySaved(new Category(4, "Phones", "", 1));
+        engine.categorySaved(new Category(5, "Cases", "", 4));
+        engine.productSaved(product(4).name("Leather Case").price("19.99").category(5).build());
+        ProductFilter subtree = new ProductFilter(1, null, null, null).withDescendants(true);
+
+        // act
+        List<Integer> subtreeBefore = engine.snapshot().getSubtree(1);
+        List<Integer> before = engine.snapshot().getSearchIndex().search(subtree).stream().map(Product::getProductId).toList();
+        engine.categorySaved(new Category(5, "Cases", "", 2));
+        List<Integer> after = engine.snapshot().getSearchIndex().search(subtree).stream().map(Product::getProductId).toList();
+
+        // assert
+        assertEquals(List.of(1, 4, 5), subtreeBefore);
+        assertEquals(List.of(1, 2, 4), before, "Because products of subcategories at any depth belong to the subtree.");
+        assertEquals(List.of(1, 2), after, "Because Cases moved under Fashion.");
+        assertEquals(List.of(2, 5), engine.snapshot().getSubtree(2));
+        assertEquals(List.of(1, 2), engine.snapshot().getSearchIndex().search(new ProductFilter(1, null, null, null)).stream()
+                .map(Product::getProductId).toList(), "Because without descendants only the category itself matches.");
+    }
+}
@@ -0,0 +1,71 @@
+package org.yearup.data.catalog;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.yearup.data.PriceAdjustment;
+import org.yearup.data.ProductFilter;
+import org.yearup.data.mysql.MySqlCatalogLoader;
+import org.yearup.data.mysql.MySqlProductDao;
+import org.yearup.models.Product;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.yearup.models.TestProducts.product;
+
+class CatalogProductDaoTest
+{
+    private MySqlProductDao delegate;
+    private CatalogEngine catalog;
+    private CatalogProductDao productDao;
+
+    @BeforeEach
+    public void setup()
+    {
+        MySqlCatalogLoader loader = mock(MySqlCatalogLoader.class);
+        when(loader.loadCategories()).thenReturn(List.of());
+        when(loader.loadProducts()).thenReturn(List.of(product(1).build(), product(2).build(), product(3).build()));
+
+        delegate = mock(MySqlProductDao.class);
+        catalog = new CatalogEngine(loader, List.of());
+        productDao = new CatalogProductDao(delegate, catalog,
+                new ProductTextIndex(), new ProductSearchCache(1000));
+    }
+
+    @Test
+    public void getByIds_shouldKeepTheRequestedOrder_andSkipMissingAndRepeatedIds()
+    {
+        // act
+        List<Product> products = productDao.getByIds(List.of(3, 99, 1, 3));
+
+        // assert
+        assertEquals(List.of(3, 1), products.stream().map(Product::getProductId).toList(),
+                "Because 99 does not exist and 3 was already returned.");
+    }
+
+    @Test
+    public void adjustPrices_shouldSwapInTheRepricedProducts_asOneSnapshot()
+    {
+        // arrange
+        PriceAdjustment adjustment = PriceAdjustment.of(new ProductFilter(1, null, null, null), new BigDecimal("-10"), null);
+        Product first = product(1).build();
+        first.setPrice(new BigDecimal("8.99"));
+        Product third = product(3).build();
+        third.setPrice(new BigDecimal("8.99"));
+        when(delegate.adjustPrices(adjustment, 500)).thenReturn(List.of(1, 3));
+        when(delegate.getByIds(List.of(1, 3))).thenReturn(List.of(first, third));
+        long version = catalog.snapshot().getVersion();
+
+        // act
+        List<Integer> adjusted = productDao.adjustPrices(adjustment, 500);
+
+        // assert
+        assertEquals(List.of(1, 3), adjusted);
+        assertEquals(version + 1, catalog.snapshot().getVersion(), "Because the whole job is published as one catalog change.");
+        assertEquals(new BigDecimal("8.99"), catalog.snapshot().getProduct(3).getPrice());
+        assertEquals(new BigDecimal("9.99"), catalog.snapshot().getProduct(2).getPrice());
+    }
+}
@@ -0,0 +1,72 @@
+package org.yearup.data.catalog;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.yearup.data.CategoryStats;
+import org.yearup.data.mysql.MySqlCatalogLoader;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+import static org.yearup.models.TestProducts.product;
+
+class CategoryAggregatesTest
+{
+    private MySqlCatalogLoader loader;
+    private ApplicationEventPublisher events;
+    private CategoryAggregates aggregates;
+
+    @BeforeEach
+    public void setup()
+    {
+        loader = mock(MySqlCatalogLoader.class);
+        events = mock(ApplicationEventPublisher.class);
+        aggregates = new CategoryAggregates(loader, events);
+        aggregates.catalogLoaded(new CatalogSnapshot(List.of(), List.of(
+                product(1).price("9.99").category(1).stock(0).build(),
+                product(2).price("49.99").category(1).stock(5).build(),
+                product(3).price("19.99").category(1).stock(2).build(),
+                product(4).price("5.00").category(2).stock(1).build()), 1, 0));
+    }
+
+    @Test
+    public void productChanged_shouldKeepTheFiguresExact()
+    {
+        // act: delete the cheapest product of category 1 and move product 4 into it
+        aggregates.productChanged(product(1).price("9.99").category(1).stock(0).build(), null);
+        aggregates.productChanged(product(4).price("5.00").category(2).stock(1).build(), product(4).price("59.00").category(1).stock(1).build());
+
+        // assert
+        CategoryStats stats = aggregates.getStats(1);
+        assertEquals(3, stats.getProductCount());
+        assertEquals(new BigDecimal("19.99"), stats.getMinPrice(), "Because the 9.99 product was deleted.");
+        assertEquals(new BigDecimal("59.00"), stats.getMaxPrice());
+        assertEquals(3, stats.getInStockCount());
+        assertFalse(aggregates.getStats().containsKey(2), "Because category 2 has no products left.");
+        assertEquals(0, aggregates.getStats(2).getProductCount());
+    }
+
+    @Test
+    public void reconcile_shouldRebuildOnlyTheCategoriesThatDrifted()
+    {
+        // arrange: another application added a product to category 2
+        when(loader.loadCategoryStats()).thenReturn(Map.of(
+                1, new CategoryStats(1, 3, new BigDecimal("9.990"), new BigDecimal("49.99"), 2),
+                2, new CategoryStats(2, 2, new BigDecimal("5.00"), new BigDecimal("7.50"), 1)));
+        when(loader.loadProductsByCategory(2)).thenReturn(List.of(product(4).price("5.00").category(2).stock(1).build(), product(5).price("7.50").category(2).stock(0).build()));
+
+        // act
+        aggregates.reconcile();
+
+        // assert
+        assertEquals(2, aggregates.getStats(2).getProductCount());
+        assertEquals(new BigDecimal("7.50"), aggregates.getStats(2).getMaxPrice());
+        verify(loader, never()).loadProductsByCategory(1);
+        verify(events).publishEvent(argThat((Object event) -> event instanceof CategoryStatsCorrectedEvent
+                && ((CategoryStatsCorrectedEvent) event).getCategoryIds().equals(List.of(2))));
+    }
+}
@@ -0,0 +1,81 @@
+package org.yearup.data.catalog;
+
+import org.junit.jupiter.api.Test;
+import org.yearup.data.ProductFilter;
+import org.yearup.models.Product;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.yearup.models.TestProducts.product;
+
+class ProductSearchCacheTest
+{
+    private final ProductSearchCache cache = new ProductSearchCache(1000);
+    private final AtomicInteger searches = new AtomicInteger();
+
+    @Test
+    public void search_shouldShareOneEntry_betweenEquivalentFilters()
+    {
+        // act: a blank color and a category id of 0 are ignored by the search, so these are the same search
+        cache.search(new ProductFilter(1, null, null, null), this::search);
+        cache.search(new ProductFilter(1, null, null, "  "), this::search);
+        cache.search(new ProductFilter(0, null, null, null), this::search);
+        cache.search(new ProductFilter(null, null, null, ""), this::search);
+
+        // assert
+        assertEquals(2, searches.get(), "Because only two distinct searches were made.");
+        assertEquals(2, cache.stats().getHits());
+        assertEquals(2, cache.stats().getMisses());
+    }
+
+    @Test
+    public void productChanged_shouldOnlyInvalidateTheAffectedCategories()
+    {
+        // arrange
+        ProductFilter category1 = new ProductFilter(1, null, null, null);
+        ProductFilter category2 = new ProductFilter(2, null, null, null);
+        ProductFilter everything = new ProductFilter(null, null, null, null);
+        cache.search(category1, this::search);
+        cache.search(category2, this::search);
+        cache.search(everything, this::search);
+
+        // act
+        cache.productChanged(product(7).category(2).build(), product(7).category(2).build());
+        cache.search(category1, this::search);
+        cache.search(category2, this::search);
+        cache.search(everything, this::search);
+
+        // assert
+        assertEquals(5, searches.get(), "Because only the category 2 search and the all-category search had to run again.");
+    }
+
+    @Test
+    public void productsChanged_shouldInvalidateEveryCategoryInTheBatch_andNoOther()
+    {
+        // arrange
+        ProductFilter category1 = new ProductFilter(1, null, null, null);
+        ProductFilter category2 = new ProductFilter(2, null, null, null);
+        ProductFilter category3 = new ProductFilter(3, null, null, null);
+        cache.search(category1, this::search);
+        cache.search(category2, this::search);
+        cache.search(category3, this::search);
+
+        // act: one product moved from 2 to 3, one deleted from 2
+        cache.productsChanged(Arrays.asList(product(7).category(2).build(), product(8).category(2).build()), Arrays.asList(product(7).category(3).build(), null));
+        cache.search(category1, this::search);
+        cache.search(category2, this::search);
+        cache.search(category3, this::search);
+
+        // assert
+        assertEquals(5, searches.get(), "Because only the category 2 and 3 searches had to run again.");
+    }
+
+    private List<Product> search()
+    {
+        searches.incrementAndGet();
+        return List.of();
+    }
+}
@@ -0,0 +1,145 @@
+package org.yearup.data.catalog;
+
+import org.junit.jupiter.api.Test;
+import org.yearup.data.ProductFacets;
+import org.yearup.data.ProductFilter;
+import org.yearup.data.ProductPage;
+import org.yearup.data.ProductPageRequest;
+import org.yearup.models.Product;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.yearup.models.TestProducts.product;
+
+class ProductSearchIndexTest
+{
+    private final ProductSearchIndex index = new ProductSearchIndex(List.of(
+            product(1).price("499.99").category(1).color("Black").stock(50).build(),
+            product(2).price("899.99").category(1).color("Gray").stock(30).build(),
+            product(3).price("99.99").category(1).color("White").stock(0).featured(true).build(),
+            product(4).price("79.99").category(1).color("Black").stock(15).build(),
+            product(5).price("29.99").category(2).color("Charcoal").stock(50).featured(true).build(),
+            product(6).price("89.99").category(2).color("black").stock(25).build()));
+
+    @Test
+    public void search_withNoFilters_shouldReturnEverything_inIdOrder()
+    {
+        assertEquals(List.of(1, 2, 3, 4, 5, 6), ids(index.search(new ProductFilter(null, null, null, null))));
+    }
+
+    @Test
+    public void search_shouldCombineCategoryColorAndPrice()
+    {
+        // arrange
+        ProductFilter filter = new ProductFilter(1, new BigDecimal("80"), new BigDecimal("500"), " black ");
+
+        // act
+        var actual = index.search(filter);
+
+        // assert
+        assertEquals(List.of(1), ids(actual), "Because only product 1 is a black category 1 product between 80 and 500.");
+    }
+
+    @Test
+    public void search_shouldMatchColorIgnoringCase_likeMySql()
+    {
+        assertEquals(List.of(1, 4, 6), ids(index.search(new ProductFilter(null, null, null, "BLACK"))));
+    }
+
+    @Test
+    public void search_priceBounds_shouldBeInclusive()
+    {
+        assertEquals(List.of(4, 6), ids(index.search(new ProductFilter(null, new BigDecimal("79.99"), new BigDecimal("89.99"), null))));
+        assertEquals(List.of(), ids(index.search(new ProductFilter(null, new BigDecimal("79.991"), new BigDecimal("79.999"), null))));
+    }
+
+    @Test
+    public void search_shouldFilterOnStockAndFeatured()
+    {
+        assertEquals(List.of(5), ids(index.search(new ProductFilter(null, null, null, null, true, true))));
+        assertEquals(List.of(3), ids(index.search(new ProductFilter(null, null, null, null, false, null))));
+    }
+
+    @Test
+    public void search_shouldIgnoreInvalidFilterValues()
+    {
+        // a category id of 0 and negative prices were always ignored by the SQL search
+        assertEquals(6, index.search(new ProductFilter(0, new BigDecimal("-1"), new BigDecimal("-1"), "  ")).size());
+    }
+
+    @Test
+    public void page_shouldWalkEveryMatch_onceAndInOrder()
+    {
+        // arrange
+        ProductFilter filter = new ProductFilter(null, null, null, null);
+        List<Integer> seen = new ArrayList<>();
+        String after = null;
+
+        // act
+        do {
+            ProductPage page = index.page(filter, ProductPageRequest.parse("price,desc", 4, after));
+            seen.addAll(ids(page.getProducts()));
+            after = page.getNextCursor();
+        } while (after != null);
+
+        // assert
+        assertEquals(List.of(2, 1, 3, 6, 4, 5), seen, "Because pages should follow price descending with no gaps or repeats.");
+    }
+
+    @Test
+    public void page_shouldBreakTiesById_andRespectTheFilter()
+    {
+        // arrange: products 1 and 4 are both black category 1 products
+        ProductFilter filter = new ProductFilter(1, null, null, "Black");
+
+        // act
+        ProductPage first = index.page(filter, ProductPageRequest.parse("name", 1, null));
+        ProductPage second = index.page(filter, ProductPageRequest.parse("name", 1, first.getNextCursor()));
+
+        // assert
+        assertEquals(List.of(1), ids(first.getProducts()));
+        assertEquals(List.of(4), ids(second.getProducts()));
+        assertNull(second.getNextCursor(), "Because product 4 is the last match.");
+    }
+
+    @Test
+    public void page_shouldRejectCursorFromAnotherSort()
+    {
+        String cursor = index.page(new ProductFilter(null, null, null, null), ProductPageRequest.parse("id", 1, null)).getNextCursor();
+
+        assertThrows(IllegalArgumentException.class, () -> ProductPageRequest.parse("price", 1, cursor));
+        assertThrows(IllegalArgumentException.class, () -> ProductPageRequest.parse("id", 1, "not a cursor"));
+    }
+
+    @Test
+    public void facets_shouldCountCategoriesColorsAndPriceBuckets_ofTheMatches()
+    {
+        // arrange
+        BitSet matches = index.match(new ProductFilter(null, null, new BigDecimal("500"), null));
+        List<BigDecimal> edges = List.of(new BigDecimal("0"), new BigDecimal("50"), new BigDecimal("100"));
+
+        // act
+        ProductFacets facets = index.facets(matches, edges);
+
+        // assert
+        assertEquals(5, facets.getTotal(), "Because every product but product 2 costs 500 or less.");
+        assertEquals(Map.of(1, 3, 2, 2), facets.getCategories());
+        assertEquals(List.of("Black", "Charcoal", "White"), List.copyOf(facets.getColors().keySet()),
+                "Because colors are grouped ignoring case and listed most common first, then by name.");
+        assertEquals(3, facets.getColors().get("Black"));
+        assertEquals(List.of(1, 3, 1), facets.getPrices().stream().map(ProductFacets.PriceBucket::getCount).toList());
+        assertNull(facets.getPrices().get(2).getMax(), "Because the last bucket is open-ended.");
+    }
+
+    private static List<Integer> ids(List<Product> products)
+    {
+        return products.stream().map(Product::getProductId).toList();
+    }
+}
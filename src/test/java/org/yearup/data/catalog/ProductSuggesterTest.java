@@ -0,0 +1,68 @@
+package org.yearup.data.catalog;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.yearup.data.mysql.MySqlCatalogLoader;
+import org.yearup.models.Category;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.yearup.models.TestProducts.product;
+
+class ProductSuggesterTest
+{
+    private ProductSuggester suggester;
+
+    @BeforeEach
+    public void setup()
+    {
+        MySqlCatalogLoader loader = mock(MySqlCatalogLoader.class);
+        when(loader.loadUnitsSold()).thenReturn(Map.of(1, 5L, 2, 40L, 3, 12L));
+
+        suggester = new ProductSuggester(loader);
+        suggester.catalogLoaded(new CatalogSnapshot(
+                List.of(new Category(1, "Lighting", ""), new Category(2, "Furniture", "")),
+                List.of(product(1).name("Desk Lamp").category(1).build(),
+                        product(2).name("Floor Lamp").category(1).build(),
+                        product(3).name("Lamp Shade").category(1).build(),
+                        product(4).name("Standing Desk").category(2).build()), 1, 0));
+    }
+
+    @Test
+    public void suggest_shouldCompleteAnyWord_mostPopularFirst()
+    {
+        // act
+        List<String> suggestions = texts(suggester.suggest("LAM", 10));
+
+        // assert
+        assertEquals(List.of("Floor Lamp", "Lamp Shade", "Desk Lamp"), suggestions, "Because they are ranked by units sold.");
+        assertEquals(List.of("Floor Lamp"), texts(suggester.suggest("lam", 1)));
+        assertEquals(List.of("Lighting"), texts(suggester.suggest("li", 10)), "Because categories are suggested too.");
+    }
+
+    @Test
+    public void productChanged_shouldUpdateTheTrieIncrementally()
+    {
+        // act: rename product 2, move product 3 (and its 12 sales) to Furniture, delete product 1
+        suggester.productChanged(product(2).name("Floor Lamp").category(1).build(), product(2).name("Floor Light").category(1).build());
+        suggester.productChanged(product(3).name("Lamp Shade").category(1).build(), product(3).name("Lamp Shade").category(2).build());
+        suggester.productChanged(product(1).name("Desk Lamp").category(1).build(), null);
+
+        // assert
+        assertEquals(List.of("Lamp Shade"), texts(suggester.suggest("lamp", 10)));
+        assertEquals(List.of("Floor Light"), texts(suggester.suggest("floor l", 10)));
+        assertEquals(List.of(), suggester.suggest("desk l", 10), "Because the deleted product must not be suggested.");
+        assertEquals(12, suggester.suggest("furn", 1).get(0).getPopularity(), "Because Furniture now holds the moved product's sales.");
+        assertEquals(40, suggester.suggest("lighting", 1).get(0).getPopularity(), "Because Lighting lost the moved and the deleted product's sales.");
+    }
+
+    private static List<String> texts(List<ProductSuggester.Suggestion> suggestions)
+    {
+        return suggestions.stream().map(ProductSuggester.Suggestion::getText).collect(Collectors.toList());
+    }
+}
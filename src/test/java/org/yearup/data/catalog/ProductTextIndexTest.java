@@ -0,0 +1,78 @@
+package org.yearup.data.catalog;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.yearup.models.Product;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.yearup.models.TestProducts.product;
+
+class ProductTextIndexTest
+{
+    private ProductTextIndex index;
+
+    @BeforeEach
+    public void setup()
+    {
+        index = new ProductTextIndex();
+        index.catalogLoaded(new CatalogSnapshot(List.of(), List.of(
+                product(1).name("Wireless Headphones").description("Over-ear headphones with noise cancelling.").build(),
+                product(2).name("Phone Case").description("A slim case for your phone.").build(),
+                product(3).name("Case Opener").description("Opens any phone case in seconds.").build(),
+                product(4).name("Men's Running Shoes").description("Lightweight shoes for running.").build()), 1, 0));
+    }
+
+    @Test
+    public void search_shouldMatchPluralsAndPossessives()
+    {
+        assertEquals(List.of(1), ids(index.search("headphone")));
+        assertEquals(List.of(4), ids(index.search("mens shoe")));
+    }
+
+    @Test
+    public void search_shouldRankNameHitsAboveDescriptionHits()
+    {
+        // act: both products mention phones, but only product 2 in its name
+        List<ProductTextIndex.Match> matches = index.search("phone");
+
+        // assert
+        assertEquals(List.of(2, 3), ids(matches), "Because a name hit is worth more than a description hit.");
+        assertTrue(matches.get(0).getScore() > matches.get(1).getScore());
+    }
+
+    @Test
+    public void search_shouldBoostProductsContainingThePhrase()
+    {
+        // act: products 2 and 3 contain both words, only product 2 has "phone case" in its name
+        List<ProductTextIndex.Match> matches = index.search("phone case");
+
+        // assert
+        assertEquals(2, matches.get(0).getProductId(), "Because product 2 has the exact phrase in its name.");
+        assertEquals(3, matches.get(1).getProductId(), "Because product 3 has the exact phrase in its description.");
+    }
+
+    @Test
+    public void productChanged_shouldUpdateTheIndexIncrementally()
+    {
+        // arrange
+        Product before = product(2).name("Phone Case").description("A slim case for your phone.").build();
+        Product after = product(2).name("Laptop Sleeve").description("A padded sleeve.").build();
+
+        // act
+        index.productChanged(before, after);
+        index.productChanged(product(5).name("Tablet Sleeve").description("").build(), null);
+        index.productChanged(null, product(6).name("Sleeve Bundle").description("").build());
+
+        // assert
+        assertEquals(List.of(3), ids(index.search("phone case")), "Because product 2 no longer mentions phones or cases.");
+        assertEquals(List.of(2, 6), ids(index.search("sleeve")), "Because product 2 was renamed and product 6 was added.");
+    }
+
+    private static List<Integer> ids(List<ProductTextIndex.Match> matches)
+    {
+        return matches.stream().map(ProductTextIndex.Match::getProductId).toList();
+    }
+}
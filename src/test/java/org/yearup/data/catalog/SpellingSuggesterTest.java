@@ -0,0 +1,46 @@
+package org.yearup.data.catalog;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.yearup.models.TestProducts.product;
+
+class SpellingSuggesterTest
+{
+    private SpellingSuggester spelling;
+
+    @BeforeEach
+    public void setup()
+    {
+        spelling = new SpellingSuggester();
+        spelling.catalogLoaded(new CatalogSnapshot(List.of(), List.of(
+                product(1).name("Wireless Headphones").color("Black").build(),
+                product(2).name("Wired Headphones").color("Black").build(),
+                product(3).name("Wireless Charger").color("Blue").build(),
+                product(4).name("Leather Belt").color("Brown").build()), 1, 0));
+    }
+
+    @Test
+    public void correct_shouldFixUnknownWords_andKeepKnownOnes()
+    {
+        assertEquals(List.of("wireless headphone"), spelling.correct("wirless headphone", 3),
+                "Because headphone is a known word once stemmed, only wirless needs fixing.");
+        assertEquals(List.of("black"), spelling.correct("blakc", 3), "Because a swapped pair of letters is one edit.");
+        assertEquals(List.of(), spelling.correct("wireless charger", 3), "Because every word is known.");
+        assertEquals(List.of(), spelling.correct("zzzzzz", 3), "Because nothing is close enough to suggest.");
+    }
+
+    @Test
+    public void productChanged_shouldUpdateTheVocabulary()
+    {
+        // act
+        spelling.productChanged(product(4).name("Leather Belt").color("Brown").build(), product(4).name("Leather Wallet").color("Brown").build());
+
+        // assert
+        assertEquals(List.of("leather wallet"), spelling.correct("leather walet", 3));
+        assertEquals(List.of(), spelling.lookup("bellt", 3), "Because no product uses belt any more.");
+    }
+}
@@ -0,0 +1,195 @@
+package org.yearup.data.mysql;
+
+import org.apache.ibatis.jdbc.ScriptRunner;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.yearup.models.CartOperation;
+import org.yearup.models.ShoppingCart;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+// Runs without the Spring context: the concurrent adds need a connection each, committed as they go, rather than
+// the single shared connection of the test context. The schema is its own copy of test-data.sql, so it never
+// collides with the one TestDatabaseConfig builds. Skipped when no MySQL server answers at datasource.url.
+class MySqlShoppingCartDaoTest
+{
+    private static final int USER_ID = 1;
+    // stock 30 and 100 in test-data.sql
+    private static final int LAPTOP = 2;
+    private static final int HEADPHONES = 3;
+
+    private static final int THREADS = 8;
+    private static final int ADDS_PER_THREAD = 10;
+
+    private static String serverUrl;
+    private static String database;
+    private static String username;
+    private static String password;
+    private static boolean created;
+
+    private MySqlShoppingCartDao dao;
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeAll
+    public static void createDatabase() throws IOException
+    {
+        Properties settings = new Properties();
+        try (InputStream in = new ClassPathResource("application.properties").getInputStream()) {
+            settings.load(in);
+        }
+        serverUrl = settings.getProperty("datasource.url").replaceAll("/+$", ""); // it ends in a slash
+        database = settings.getProperty("datasource.testdb") + "_cart";
+        username = settings.getProperty("datasource.username");
+        password = settings.getProperty("datasource.password");
+
+        try (Connection connection = DriverManager.getConnection(serverUrl + "/sys", username, password);
+             Statement statement = connection.createStatement()) {
+            statement.execute("DROP DATABASE IF EXISTS " + database);
+            statement.execute("CREATE DATABASE " + database);
+            created = true;
+        } catch (SQLException e) {
+            System.out.println("WARN: No MySQL server at " + serverUrl + ", skipping MySqlShoppingCartDaoTest: " + e.getMessage());
+        }
+        assumeTrue(created, "Because these tests need a MySQL server.");
+
+        try (Connection connection = DriverManager.getConnection(serverUrl + "/" + database, username, password);
+             Reader script = new InputStreamReader(new ClassPathResource("test-data.sql").getInputStream(), StandardCharsets.UTF_8)) {
+            ScriptRunner runner = new ScriptRunner(connection);
+            runner.setLogWriter(null);
+            runner.runScript(script);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not load test-data.sql into " + database, e);
+        }
+    }
+
+    @AfterAll
+    public static void dropDatabase() throws SQLException
+    {
+        if (!created) {
+            return;
+        }
+        try (Connection connection = DriverManager.getConnection(serverUrl + "/sys", username, password);
+             Statement statement = connection.createStatement()) {
+            statement.execute("DROP DATABASE IF EXISTS " + database);
+        }
+    }
+
+    @BeforeEach
+    public void setup()
+    {
+        DriverManagerDataSource connections = new DriverManagerDataSource(serverUrl + "/" + database, username, password);
+        dao = new MySqlShoppingCartDao(connections);
+        jdbcTemplate = new JdbcTemplate(connections);
+        jdbcTemplate.update("DELETE FROM shopping_cart WHERE user_id = ?", USER_ID);
+    }
+
+    @AfterEach
+    public void cleanup()
+    {
+        jdbcTemplate.update("DELETE FROM shopping_cart WHERE user_id = ?", USER_ID);
+    }
+
+    @Test
+    public void addProductToCart_shouldCountEveryAdd_whenAddedInParallel()
+    {
+        // act
+        addInParallel(HEADPHONES);
+
+        // assert
+        assertEquals(THREADS * ADDS_PER_THREAD, quantity(HEADPHONES),
+                "Because " + THREADS + " threads each added the headphones " + ADDS_PER_THREAD + " times.");
+    }
+
+    @Test
+    public void addProductToCart_shouldStopAtTheStock_whenAddedInParallel()
+    {
+        // act
+        addInParallel(LAPTOP);
+
+        // assert
+        assertEquals(30, quantity(LAPTOP), "Because only 30 laptops are in stock.");
+    }
+
+    @Test
+    public void applyOperations_shouldApplyTheNetChange_clampedToTheStock()
+    {
+        // arrange
+        dao.addProductToCart(USER_ID, HEADPHONES);
+
+        // act
+        ShoppingCart cart = dao.applyOperations(USER_ID,
+                List.of(CartOperation.add(HEADPHONES, 2), CartOperation.set(LAPTOP, 50), CartOperation.add(HEADPHONES, 1)));
+
+        // assert
+        assertEquals(4, quantity(HEADPHONES), "Because the 3 headphones added come on top of the 1 already in the cart.");
+        assertEquals(30, quantity(LAPTOP), "Because only 30 laptops are in stock.");
+        assertEquals(2, cart.getItems().size());
+    }
+
+    private void addInParallel(int productId)
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try
+        {
+            List<Future<Void>> adds = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++)
+            {
+                adds.add(executor.submit((Callable<Void>) () ->
+                {
+                    start.await();
+                    for (int j = 0; j < ADDS_PER_THREAD; j++)
+                    {
+                        dao.addProductToCart(USER_ID, productId);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<Void> add : adds)
+            {
+                add.get();
+            }
+        }
+        catch (Exception e)
+        {
+            throw new RuntimeException(e);
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    private int quantity(int productId)
+    {
+        List<Integer> quantities = jdbcTemplate.queryForList("SELECT quantity FROM shopping_cart WHERE user_id = ? AND product_id = ?",
+                Integer.class, USER_ID, productId);
+        return quantities.isEmpty() ? 0 : quantities.get(0);
+    }
+}
@@ -0,0 +1,83 @@
+package org.yearup.models;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MoneyTest
+{
+    @Test
+    public void amounts_shouldBeRoundedToTheCent_halfUp()
+    {
+        assertEquals(1999, Money.of(new BigDecimal("19.99")).getCents());
+        assertEquals(1001, Money.of(new BigDecimal("10.005")).getCents(), "Because a tie rounds away from zero.");
+        assertEquals(-1001, Money.of(new BigDecimal("-10.005")).getCents(), "Because a tie rounds away from zero.");
+        assertEquals(new BigDecimal("19.99"), Money.ofCents(1999).toBigDecimal());
+    }
+
+    @Test
+    public void lineTotal_shouldRoundTheDiscountOncePerLine()
+    {
+        // arrange: 3 x 0.99 with 15% off is 2.97 - 0.4455
+        Money price = Money.of(new BigDecimal("0.99"));
+
+        // act
+        Money lineTotal = price.lineTotal(3, Money.basisPoints(new BigDecimal("0.15")));
+
+        // assert
+        assertEquals(new BigDecimal("2.52"), lineTotal.toBigDecimal(), "Because the 0.4455 discount rounds to 0.45.");
+        assertEquals(new BigDecimal("2.97"), price.lineTotal(3, 0).toBigDecimal());
+    }
+
+    @Test
+    public void arithmetic_shouldFail_ratherThanOverflow()
+    {
+        assertThrows(ArithmeticException.class, () -> Money.ofCents(Long.MAX_VALUE).times(2));
+    }
+
+    @Test
+    public void cartTotal_shouldFollowEveryChange()
+    {
+        // arrange
+        Product first = TestProducts.product(1).name("First").price("9.99").build();
+        Product second = TestProducts.product(2).name("Second").price("20.00").build();
+        ShoppingCart cart = new ShoppingCart();
+
+        // act
+        cart.addOrUpdateItem(new ShoppingCartItem(first, 2));
+        cart.addOrUpdateItem(new ShoppingCartItem(second, 1));
+        cart.addOrUpdateItem(new ShoppingCartItem(first, 3));
+        cart.removeItem(2);
+
+        // assert
+        assertEquals(new BigDecimal("29.97"), cart.getTotal(), "Because only the 3 of the first product are left.");
+        cart.calculateTotal();
+        assertEquals(new BigDecimal("29.97"), cart.getTotal(), "Because the running total must match a full recount.");
+    }
+
+    @Test
+    public void cartTotal_shouldFollowChangesToItsItems()
+    {
+        // arrange
+        Product first = TestProducts.product(1).name("First").price("9.99").build();
+        Product second = TestProducts.product(2).name("Second").price("20.00").build();
+        ShoppingCart cart = new ShoppingCart();
+        ShoppingCartItem item = new ShoppingCartItem(first, 2);
+        cart.addOrUpdateItem(item);
+        ShoppingCartItem removed = new ShoppingCartItem(second, 1);
+        cart.addOrUpdateItem(removed);
+        cart.removeItem(2);
+
+        // act
+        item.setQuantity(4);
+        item.setDiscountPercent(new BigDecimal("0.10"));
+        removed.setQuantity(5);
+
+        // assert
+        assertEquals(new BigDecimal("35.96"), cart.getTotal(), "Because 4 x 9.99 less 10% is 35.96, and the removed item no longer counts.");
+        assertThrows(UnsupportedOperationException.class, () -> cart.getItems().remove(1), "Because items only change through the cart.");
+    }
+}
@@ -0,0 +1,137 @@
+package org.yearup.models;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading a cart line by line, as the cart DAOs do: the BigDecimal ShoppingCart and ShoppingCartItem as they were
+ * before Money, copied below, against the current classes. Not run by the build; run main() and compare
+ * gc.alloc.rate.norm (bytes allocated per load) between the two.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShoppingCartBenchmark
+{
+    @Param({ "10", "100" })
+    int lines;
+
+    private Product[] products;
+
+    @Setup
+    public void setup()
+    {
+        products = new Product[lines];
+        for (int i = 0; i < lines; i++) {
+            products[i] = new Product(i + 1, "Product " + i, new BigDecimal("19.99").add(BigDecimal.valueOf(i)), 1, "",
+                    "Black", 100, false, "");
+        }
+    }
+
+    @Benchmark
+    public BigDecimal bigDecimalTotals()
+    {
+        LegacyShoppingCart cart = new LegacyShoppingCart();
+        for (int i = 0; i < products.length; i++) {
+            cart.addOrUpdateItem(new LegacyShoppingCartItem(products[i], i % 5 + 1));
+        }
+        return cart.getTotal();
+    }
+
+    @Benchmark
+    public BigDecimal moneyTotals()
+    {
+        ShoppingCart cart = new ShoppingCart();
+        for (int i = 0; i < products.length; i++) {
+            cart.addOrUpdateItem(new ShoppingCartItem(products[i], i % 5 + 1));
+        }
+        return cart.getTotal();
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        new Runner(new OptionsBuilder()
+                .include(ShoppingCartBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+
+    // ShoppingCart before Money, cut down to what loading a cart uses
+    private static class LegacyShoppingCart
+    {
+        private final Map<Integer, LegacyShoppingCartItem> items = new HashMap<>();
+        private BigDecimal total = BigDecimal.ZERO;
+
+        BigDecimal getTotal()
+        {
+            return total;
+        }
+
+        void addOrUpdateItem(LegacyShoppingCartItem item)
+        {
+            if (item != null && item.product != null) {
+                items.put(item.product.getProductId(), item);
+                calculateTotal();
+            }
+        }
+
+        void calculateTotal()
+        {
+            BigDecimal cartTotal = BigDecimal.ZERO;
+            for (LegacyShoppingCartItem item : items.values()) {
+                if (item.lineTotal != null) {
+                    cartTotal = cartTotal.add(item.lineTotal);
+                }
+            }
+            this.total = cartTotal;
+        }
+    }
+
+    // ShoppingCartItem before Money, cut down to what loading a cart uses
+    private static class LegacyShoppingCartItem
+    {
+        private final Product product;
+        private final int quantity;
+        private final BigDecimal discountPercent = BigDecimal.ZERO;
+        private BigDecimal lineTotal = BigDecimal.ZERO;
+
+        LegacyShoppingCartItem(Product product, int quantity)
+        {
+            this.product = product;
+            this.quantity = quantity;
+            calculateLineTotal();
+        }
+
+        void calculateLineTotal()
+        {
+            if (product != null && product.getPrice() != null) {
+                BigDecimal subTotal = product.getPrice().multiply(BigDecimal.valueOf(quantity));
+                BigDecimal discountAmount = subTotal.multiply(discountPercent);
+                lineTotal = subTotal.subtract(discountAmount);
+            } else {
+                lineTotal = BigDecimal.ZERO;
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package org.yearup.models;
+
+import java.math.BigDecimal;
+
+/**
+ * Builds products for tests. Every field has a default, so a test names only the fields it is about:
+ * product(2).name("Laptop").price("899.99").build().
+ */
+public final class TestProducts
+{
+    private final int productId;
+    private String name;
+    private String price = "9.99";
+    private int categoryId = 1;
+    private String description = "";
+    private String color = "Black";
+    private int stock = 10;
+    private boolean featured;
+    private String imageUrl = "";
+
+    private TestProducts(int productId)
+    {
+        this.productId = productId;
+        this.name = "Product " + productId;
+    }
+
+    public static TestProducts product(int productId)
+    {
+        return new TestProducts(productId);
+    }
+
+    public TestProducts name(String name)
+    {
+        this.name = name;
+        return this;
+    }
+
+    public TestProducts price(String price)
+    {
+        this.price = price;
+        return this;
+    }
+
+    public TestProducts category(int categoryId)
+    {
+        this.categoryId = categoryId;
+        return this;
+    }
+
+    public TestProducts description(String description)
+    {
+        this.description = description;
+        return this;
+    }
+
+    public TestProducts color(String color)
+    {
+        this.color = color;
+        return this;
+    }
+
+    public TestProducts stock(int stock)
+    {
+        this.stock = stock;
+        return this;
+    }
+
+    public TestProducts featured(boolean featured)
+    {
+        this.featured = featured;
+        return this;
+    }
+
+    public TestProducts imageUrl(String imageUrl)
+    {
+        this.imageUrl = imageUrl;
+        return this;
+    }
+
+    public Product build()
+    {
+        return new Product(productId, name, new BigDecimal(price), categoryId, description, color, stock, featured, imageUrl);
+    }
+}